@@ -3,20 +3,50 @@
 package smartfarm.controller;
 
 import smartfarm.exception.GameException;
+import smartfarm.model.ActionResult;
+import smartfarm.model.AutoSave;
+import smartfarm.model.BulkAction;
+import smartfarm.model.BulkResult;
+import smartfarm.model.BulkTarget;
+import smartfarm.model.DayReport;
 import smartfarm.model.GameState;
-import smartfarm.model.plant.*;
+import smartfarm.model.Journal;
+import smartfarm.model.SaveFile;
+import smartfarm.model.SaveReport;
+import smartfarm.model.SkipReport;
+import smartfarm.model.plant.CareSchedule;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.rules.RulePlan;
+import smartfarm.model.rules.RuleReport;
 import smartfarm.util.Constants;
 import smartfarm.view.FarmFrame;
 
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import java.util.function.Supplier;
 
 public class FarmController {
     private GameState gameState; // Contains all game data
     private FarmFrame view;// Main interface
+    private SaveFile saveFile; // Where the game was last saved or loaded from, null before the first save
+    private int savedDay = -1; // Day of the last save
+    private AutoSave autoSave; // Writes the saves after the first one in the background
 
     public FarmController(GameState gameState, FarmFrame view) {
         this.gameState = gameState;
         this.view = view;
+        prepareCareAdvice();
+    }
+
+    private void prepareCareAdvice() {
+        // Solve the care schedules in the background; the cell info shows advice once they are ready
+        Thread solver = new Thread(() -> {
+            CareSchedule.prepareAll();
+            SwingUtilities.invokeLater(view::updateCellInfo);
+        }, "care-schedule");
+        solver.setDaemon(true);
+        solver.setPriority(Thread.MIN_PRIORITY);
+        solver.start();
     }
 
 
@@ -27,122 +57,160 @@ public class FarmController {
             return;
         }
 
-        Plant plant = null;
-        if (cropType.startsWith("Wheat")) plant = new Wheat();
-        else if (cropType.startsWith("Corn")) plant = new Corn();
-        else if (cropType.startsWith("Tomato")) plant = new Tomato();
-        else if (cropType.startsWith("Potato")) plant = new Potato();
-
-        if (plant == null) return;
+        PlantType type = PlantType.byName(cropType);
+        if (type == null) return;
 
-        try {
-            // Execute the seed purchase and plant the crop
-            gameState.buySeed(plant);
-            gameState.getFarm().plantCrop(row, col, plant);
+        // Buy the seed and plant the crop in one action, so a refusal costs nothing
+        ActionResult result = gameState.tryPlant(row, col, type);
+        // Display an error if there is insufficient money or the land already has a plant
+        if (result == ActionResult.SOIL_TOO_LOW) {
+            int soil = gameState.getFarm().cellAt(row, col).getSoilQuality();
+            view.showError("Error", "Soil quality too low (" + soil + "%). Fertilize to >20% first!");
+        } else if (!result.isOk()) {
+            view.showError("Error", result.getMessage());
+        } else {
             updateView("Success!");
-        } catch (GameException e) {
-            // Display an error if there is insufficient money or the land already has a plant
-            view.showError("Error", e.getMessage());
         }
     }
 
     public void waterCrop(int row, int col) {
     // Handle the action of watering the plant at the specified position
     // Use the helper function performAction to reuse error-handling logic
-        performAction(row, col, () -> {
-            gameState.useWater(Constants.WATER_AMOUNT_PER_USE);
-            gameState.getFarm().getCell(row, col).water(Constants.WATER_AMOUNT_PER_USE);
-            return "Success!";
-        });
+        performAction(row, col, () -> gameState.tryWater(row, col), () -> "Success!");
     }
 
     public void fertilizeCrop(int row, int col) {
         // Action of fertilizing the plant
-        performAction(row, col, () -> {
-            gameState.useFertilizer(Constants.FERTILIZER_AMOUNT_PER_USE);
-            gameState.getFarm().getCell(row, col).fertilize(Constants.FERTILIZER_AMOUNT_PER_USE);
-            return "Success!";
-        });
+        performAction(row, col, () -> gameState.tryFertilize(row, col), () -> "Success!");
     }
 
     public void treatPest(int row, int col) {
         // Action of spraying pesticide to treat plant diseases
-        performAction(row, col, () -> {
-            gameState.usePesticide();
-            gameState.getFarm().getCell(row, col).treatPest();
-            return "Success!";
-        });
+        performAction(row, col, () -> gameState.tryTreatPest(row, col), () -> "Success!");
     }
 
     public void harvestCrop(int row, int col) {
         // Handle the action of harvesting the crop when it is mature
-        performAction(row, col, () -> {
-            int value = gameState.getFarm().getCell(row, col).harvest(); // Get the harvest value
-            gameState.earnMoney(value); // Add money
-            return "Harvested successfully! +$" + value;
-        });
+        performAction(row, col, () -> gameState.tryHarvest(row, col),
+                () -> "Harvested successfully! +$" + gameState.getLastHarvestValue());
     }
 
-    public void buyResource(String type, int quantity) {
+    public void bulkAction(BulkAction action, BulkTarget target) {
+        // Tend every matching cell in one pass, with a single refresh at the end
+        BulkResult result = gameState.runBulk(action, target);
+        if (result.getApplied() == 0 && !result.getResult().isOk()) {
+            view.showError("Error", result.getMessage());
+            return;
+        }
+        updateView(result.getMessage());
+    }
+
+    public boolean setRules(String text) {
+        // Replace the standing orders; returns false (keeping the old ones) if any line does not parse
         try {
-            int cost = 0;
-            switch(type) {
-                case "WATER": cost = quantity * Constants.WATER_PRICE; break;
-                case "FERTILIZER": cost = quantity * Constants.FERTILIZER_PRICE; break;
-                case "PESTICIDE": cost = quantity * Constants.PESTICIDE_PRICE; break;
-            }
-            gameState.buyResource(type, quantity, cost);// Deduct money and add to inventory
-            updateView("Success!");
+            RulePlan rules = RulePlan.parse(text);
+            gameState.setRules(rules);
+            updateView(rules.isEmpty() ? "Rules cleared." : rules.getRules().size() + " rules active.");
+            return true;
         } catch (GameException e) {
-            view.showError("Error", e.getMessage());// Report an error if there is not enough money
+            view.showError("Error", e.getMessage());
+            return false;
+        }
+    }
 
+    public void buyResource(String type, int quantity) {
+        int cost = 0;
+        switch(type) {
+            case "WATER": cost = quantity * Constants.WATER_PRICE; break;
+            case "FERTILIZER": cost = quantity * Constants.FERTILIZER_PRICE; break;
+            case "PESTICIDE": cost = quantity * Constants.PESTICIDE_PRICE; break;
+        }
+        ActionResult result = gameState.tryBuyResource(type, quantity, cost);// Deduct money and add to inventory
+        if (result.isOk()) {
+            updateView("Success!");
+        } else {
+            view.showError("Error", result.getMessage());// Report an error if there is not enough money
         }
     }
 
     public void advanceToNextDay() {
-        gameState.advanceDay();
+        DayReport report = gameState.advanceDay();
      
         StringBuilder message = new StringBuilder();
-        message.append("Day ").append(gameState.getDay()).append("\n");
+        message.append("Day ").append(report.getDay()).append("\n");
         // Handle weather
-        if (gameState.getFarm().shouldChangeWeather()) {
-            gameState.getFarm().updateWeatherRandomly();
+        if (report.isWeatherChanged()) {
             message.append("Weather changed!");
-            message.append(" (").append(gameState.getFarm().getCurrentWeather().getName()).append(")\n");
+            message.append(" (").append(report.getWeather().getName()).append(")\n");
         } else {
-            message.append("Weather: ").append(gameState.getFarm().getCurrentWeather().getName()).append("\n");
+            message.append("Weather: ").append(report.getWeather().getName()).append("\n");
+        }
+        // What the standing orders did before the tick
+        RuleReport automation = report.getAutomation();
+        if (automation != null) {
+            message.append("Rules: ").append(automation).append("\n");
         }
         // Handle pests and diseases
-        if (gameState.checkPestAttack()) {
-            int infected = gameState.executePestAttack();
-            if (infected > 0) {
-                message.append("\nWARNING: Pest attack! ").append(infected).append(" crops infected.");
-            }
+        if (report.isPestAttack() && report.getNewlyInfected() > 0) {
+            message.append("\nWARNING: Pest attack! ").append(report.getNewlyInfected()).append(" crops infected.");
         }
         // Check for Game Over
-        if (gameState.getMoney() < 5 && gameState.getFarm().getTotalCrops() == 0) {
+        if (gameState.isGameOver()) {
             message.append("\n\nGAME OVER! No money & no crops left.");
         }
         // Display a notification dialog
         JOptionPane.showMessageDialog(view, message.toString(), "New Day Events", JOptionPane.INFORMATION_MESSAGE);
         updateView(null); // Refresh the interface
+        pollAutoSave();
     }
 
-    @FunctionalInterface
-    interface ActionDelegate {
-        String run() throws GameException;
+    public void skipDays(String input) {
+        // Advance several days with one summary dialog and one UI refresh at the end
+        int days;
+        try {
+            days = Integer.parseInt(input.trim());
+        } catch (NumberFormatException e) {
+            view.showError("Error", "Please enter a whole number of days.");
+            return;
+        }
+        if (days > Constants.MAX_SKIP_DAYS) {
+            view.showError("Error", "You can skip at most " + Constants.MAX_SKIP_DAYS + " days at once.");
+            return;
+        }
+
+        try {
+            SkipReport report = gameState.advanceDays(days);
+            StringBuilder message = new StringBuilder();
+            message.append("Days ").append(report.getFirstDay()).append(" - ").append(report.getLastDay())
+                   .append(" (").append(report.getDaysRun()).append(" days)\n");
+            message.append("Weather: ").append(report.getWeatherSummary(8)).append("\n");
+            message.append("Pest attacks: ").append(report.getPestAttacks())
+                   .append(" (").append(report.getNewlyInfected()).append(" crops infected)\n");
+            message.append("Crops died: ").append(report.getDeaths()).append("\n");
+            message.append("Became ready to harvest: ").append(report.getNewlyHarvestable()).append("\n");
+            message.append("Money: ").append(String.format("%+d", report.getMoneyDelta()));
+            if (report.isGameOver()) {
+                message.append("\n\nGAME OVER! No money & no crops left.");
+            }
+            JOptionPane.showMessageDialog(view, message.toString(), "Skipped Days", JOptionPane.INFORMATION_MESSAGE);
+            updateView(null);
+            pollAutoSave();
+        } catch (GameException e) {
+            view.showError("Error", e.getMessage());
+        }
     }
 
-    private void performAction(int row, int col, ActionDelegate action) {
+    private void performAction(int row, int col, Supplier<ActionResult> action, Supplier<String> success) {
+        // One whole action through GameState (so the journal records it), then its message or the refusal
         if (row < 0 || col < 0) {
             view.setMessage("Please select a cell first!");
             return;
         }
-        try {
-            String result = action.run();
-            updateView(result);
-        } catch (GameException e) {
-            view.showError("Error", e.getMessage());
+        ActionResult result = action.get();
+        if (result.isOk()) {
+            updateView(success.get());
+        } else {
+            view.showError("Error", result.getMessage());
         }
     }
     // Update the entire user interface
@@ -153,15 +221,89 @@ public class FarmController {
         view.updateCellInfo(); 
     }
 
+    public void setSaveFile(SaveFile saveFile) {
+        // A loaded game; its journal (if any) was replayed and attached by the loader
+        this.saveFile = saveFile;
+        if (saveFile != null) {
+            savedDay = gameState.getDay();
+            startAutoSave();
+        }
+    }
+
+    public void saveGame() {
+        // The first save asks for a file and writes it whole, then starts the journal and the autosaves; later
+        // saves are written in the background like the autosaves, and append only the changed chunks
+        if (autoSave != null) {
+            if (autoSave.saveNow()) savedDay = gameState.getDay();
+            else view.setMessage("A save is being written; saving again when it is done.");
+            return;
+        }
+        if (saveFile == null) {
+            java.io.File file = view.chooseSaveFile();
+            if (file == null) return;
+            saveFile = new SaveFile(file.toPath());
+        }
+        try {
+            SaveReport report = saveFile.save(gameState);
+            savedDay = gameState.getDay();
+            // From here on every action is journaled next to the save, and each save takes the journal over
+            if (gameState.getJournal() == null) Journal.start(saveFile, gameState);
+            startAutoSave();
+            updateView("Saved to " + saveFile.getPath().getFileName() + "\n" + report);
+        } catch (GameException e) {
+            view.showError("Save failed", e.getMessage());
+        }
+    }
+
+    private void startAutoSave() {
+        autoSave = new AutoSave(saveFile, gameState, Constants.AUTOSAVE_DAYS, Constants.AUTOSAVE_SECONDS * 1000L);
+        String name = saveFile.getPath().getFileName().toString();
+        autoSave.setListener(new AutoSave.Listener() {
+            @Override
+            public void saved(SaveReport report) {
+                SwingUtilities.invokeLater(() -> view.setMessage("Saved to " + name + "\n" + report));
+            }
+
+            @Override
+            public void failed(GameException e) {
+                SwingUtilities.invokeLater(() -> view.showError("Save failed", e.getMessage()));
+            }
+        });
+    }
+
+    public void pollAutoSave() {
+        // After each day, and on a timer while the player thinks
+        if (autoSave != null && autoSave.poll()) savedDay = gameState.getDay();
+    }
+
     public void backToMenu() {
+        String warning = gameState.getJournal() != null ? "Actions since the last save are kept in its journal."
+                : savedDay == gameState.getDay() ? "Actions since the last save are lost."
+                : savedDay < 0 ? "Progress lost (the game was not saved)." : "Progress since day " + savedDay + " lost.";
         int choice = JOptionPane.showConfirmDialog(view, 
-            "Return to main menu?\nProgress lost.", 
+            "Return to main menu?\n" + warning, 
             "Confirm", 
             JOptionPane.YES_NO_OPTION);
             
         if (choice == JOptionPane.YES_OPTION) {
+            closeSaves();
             view.dispose(); // Close the FarmFrame window
             smartfarm.Main.openMainMenu(); 
         }
     }
-}
\ No newline at end of file
+
+    public void closeSaves() {
+        // Finish the save being written and commit the journal's last records before the game goes away
+        if (autoSave != null) {
+            autoSave.close();
+            autoSave = null;
+        }
+        Journal journal = gameState.getJournal();
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (GameException e) {
+            view.showError("Journal", e.getMessage());
+        }
+    }
+}
@@ -1,8 +1,13 @@
 // Responsibility: Handle screen transition events (enter game, view tutorial) or exit the application
 package smartfarm.controller;
 
+import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 
+import smartfarm.exception.GameException;
+import smartfarm.model.GameState;
+import smartfarm.model.Journal;
+import smartfarm.model.SaveFile;
 import smartfarm.view.FarmFrame;
 import smartfarm.view.HelpFrame;
 import smartfarm.view.MainMenuFrame;
@@ -21,6 +26,26 @@ public class MenuController {
         if (view != null) view.dispose();
     }
 
+    public void loadGame() {
+        // Continue a saved game; the frame keeps the file so its next save is incremental
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(view) != JFileChooser.APPROVE_OPTION) return;
+        SaveFile saveFile = new SaveFile(chooser.getSelectedFile().toPath());
+        try {
+            // Replay the actions journaled since that save (lost if the game was not closed normally)
+            GameState game = saveFile.load();
+            Journal journal = Journal.resume(saveFile, game);
+            FarmFrame farmFrame = new FarmFrame(game, saveFile);
+            farmFrame.setVisible(true);
+            if (view != null) view.dispose();
+            if (journal.getRecovered() > 0) {
+                farmFrame.setMessage("Recovered " + journal.getRecovered() + " actions made after the last save.");
+            }
+        } catch (GameException e) {
+            JOptionPane.showMessageDialog(view, e.getMessage(), "Load failed", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     public void openHelp() {
         // Open the Help screen and close the Menu
         HelpFrame helpFrame = new HelpFrame();
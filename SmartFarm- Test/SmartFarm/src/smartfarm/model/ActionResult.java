@@ -0,0 +1,33 @@
+// Outcome of a player action in the non-throwing API (Cell.tryWater, GameState.tryHarvest, ...)
+// Bots and bulk actions check the returned code instead of catching a GameException, so a refused action
+// costs a comparison rather than a stack trace. The throwing methods the UI uses are wrappers over these
+package smartfarm.model;
+
+import smartfarm.util.Constants;
+
+public enum ActionResult {
+    OK(Constants.SUCCESS),
+    INVALID_POSITION("Invalid position"),
+    CELL_NOT_EMPTY(Constants.CELL_NOT_EMPTY),
+    SOIL_TOO_LOW("Soil quality too low. Fertilize to >20% first!"),
+    NO_PLANT_TO_WATER("No plant to water!"),
+    NO_PLANT_TO_FERTILIZE("No plant to fertilize!"),
+    NO_CROP_TO_HARVEST("No crop to harvest!"),
+    NO_PLANT_TO_TREAT("No plant to treat!"),
+    NOT_READY("Crop is not ready to harvest!"),
+    NOT_INFECTED("Plant is not infected!"),
+    UNKNOWN_CROP("Unknown crop type!"),
+    NOT_ENOUGH_MONEY(Constants.NOT_ENOUGH_MONEY),
+    NOT_ENOUGH_WATER("Not enough water!"),
+    NOT_ENOUGH_FERTILIZER("Not enough fertilizer!"),
+    NOT_ENOUGH_PESTICIDE("Not enough pesticide!");
+
+    private final String message;
+
+    ActionResult(String message) {
+        this.message = message;
+    }
+
+    public boolean isOk() { return this == OK; }
+    public String getMessage() { return message; }
+}
@@ -0,0 +1,172 @@
+// Class AutoSave: Saves a game in the background every N days or T seconds, without stopping play
+// The game's thread (the EDT, or the headless loop) calls poll() between actions; when a save is due it takes
+// the save's snapshot there (SaveFile.capture, a pause of microseconds) and hands it to the "autosave" thread,
+// which writes it while the game plays on. One save is in flight at a time: a save asked for meanwhile is
+// taken by the next poll() after the current one is done. Keeps the pause and write figures of every save
+package smartfarm.model;
+
+import smartfarm.exception.GameException;
+
+public class AutoSave {
+    public interface Listener {
+        // Called on the autosave thread
+        void saved(SaveReport report);
+        void failed(GameException e);
+    }
+
+    private final SaveFile saveFile;
+    private final GameState game;
+    private final int everyDays;        // 0: not by days
+    private final long everyMillis;     // 0: not by time
+    private final Thread writer;
+    private Listener listener;
+
+    // Game thread only: when the last save was taken
+    private int lastDay;
+    private long lastMillis;
+
+    // Shared with the writer, under the lock
+    private SaveFile.Snapshot queued;
+    private boolean busy, requested, closing;
+    private int saves, failures, copiedChunks;
+    private long maxPauseNanos, pauseNanos, writeNanos, bytes;
+    private SaveReport lastReport;
+    private GameException lastFailure;
+
+    public AutoSave(SaveFile saveFile, GameState game, int everyDays, long everyMillis) {
+        if (everyDays < 0 || everyMillis < 0) throw new IllegalArgumentException("Autosave cadence cannot be negative");
+        this.saveFile = saveFile;
+        this.game = game;
+        this.everyDays = everyDays;
+        this.everyMillis = everyMillis;
+        this.lastDay = game.getDay();
+        this.lastMillis = System.currentTimeMillis();
+        this.writer = new Thread(this::writeLoop, "autosave");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public boolean poll() {
+        // On the game's thread: starts a save if one is due and none is being written; returns whether it did
+        boolean due = everyDays > 0 && game.getDay() - lastDay >= everyDays
+                || everyMillis > 0 && System.currentTimeMillis() - lastMillis >= everyMillis;
+        synchronized (this) {
+            if (!due && !requested) return false;
+        }
+        return saveNow();
+    }
+
+    public boolean saveNow() {
+        // On the game's thread: a save now, or as soon as the one being written is done
+        synchronized (this) {
+            if (closing) return false;
+            if (busy) {
+                requested = true;
+                return false;
+            }
+            busy = true;
+            requested = false;
+        }
+        SaveFile.Snapshot snapshot;
+        try {
+            snapshot = saveFile.capture(game);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                busy = false;
+            }
+            throw e;
+        }
+        lastDay = game.getDay();
+        lastMillis = System.currentTimeMillis();
+        synchronized (this) {
+            queued = snapshot;
+            notifyAll();
+        }
+        return true;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            SaveFile.Snapshot snapshot;
+            synchronized (this) {
+                try {
+                    while (queued == null && !closing) wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (queued == null) return;
+                snapshot = queued;
+                queued = null;
+            }
+            SaveReport report = null;
+            GameException failure = null;
+            try {
+                report = saveFile.write(snapshot);
+            } catch (GameException e) {
+                failure = e;
+            }
+            Listener current;
+            synchronized (this) {
+                if (report != null) {
+                    saves++;
+                    maxPauseNanos = Math.max(maxPauseNanos, report.getPauseNanos());
+                    pauseNanos += report.getPauseNanos();
+                    writeNanos += report.getNanos();
+                    bytes += report.getBytes();
+                    copiedChunks += report.getCopiedChunks();
+                    lastReport = report;
+                } else {
+                    failures++;
+                    lastFailure = failure;
+                }
+                busy = false;
+                current = listener;
+                notifyAll();
+            }
+            if (current != null) {
+                if (report != null) current.saved(report);
+                else current.failed(failure);
+            }
+        }
+    }
+
+    public void close() {
+        // Finish the save being written and stop; the game can then be saved or its journal closed
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized boolean isBusy() { return busy; }
+    public synchronized int getSaves() { return saves; }
+    public synchronized int getFailures() { return failures; }
+    public synchronized long getMaxPauseNanos() { return maxPauseNanos; }
+    public synchronized long getPauseNanos() { return pauseNanos; }
+    public synchronized long getWriteNanos() { return writeNanos; }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized int getCopiedChunks() { return copiedChunks; }
+    public synchronized SaveReport getLastReport() { return lastReport; }
+    public synchronized GameException getLastFailure() { return lastFailure; }
+
+    public synchronized double getMegabytesPerSecond() {
+        return writeNanos > 0 ? bytes / 1e6 / (writeNanos / 1e9) : 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d autosaves (%d failed) | pause max %.2f ms, mean %.2f ms | wrote %,d bytes in %.1f ms"
+                        + " (%.1f MB/s) | %d chunks copied for them", saves, failures, maxPauseNanos / 1e6,
+                saves > 0 ? pauseNanos / 1e6 / saves : 0.0, bytes, writeNanos / 1e6, getMegabytesPerSecond(),
+                copiedChunks);
+    }
+}
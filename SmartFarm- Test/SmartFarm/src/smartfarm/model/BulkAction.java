@@ -0,0 +1,23 @@
+// The care actions that can be run over many cells at once (see GameState.runBulk)
+package smartfarm.model;
+
+public enum BulkAction {
+    WATER("Water", "Watered", ActionResult.NOT_ENOUGH_WATER),
+    FERTILIZE("Fertilize", "Fertilized", ActionResult.NOT_ENOUGH_FERTILIZER),
+    TREAT_PEST("Treat Pest", "Treated", ActionResult.NOT_ENOUGH_PESTICIDE),
+    HARVEST("Harvest", "Harvested", ActionResult.OK);
+
+    private final String name;
+    private final String done;
+    private final ActionResult shortage;    // Why the batch stops early when the stock runs out
+
+    BulkAction(String name, String done, ActionResult shortage) {
+        this.name = name;
+        this.done = done;
+        this.shortage = shortage;
+    }
+
+    public String getName() { return name; }
+    public String getDone() { return done; }
+    public ActionResult getShortage() { return shortage; }
+}
@@ -0,0 +1,35 @@
+// Class BulkResult: Outcome of one bulk action (GameState.runBulk)
+// A batch fills what the stock allows in row-major order; the cells it could not reach are counted as missed
+package smartfarm.model;
+
+public class BulkResult {
+    private final BulkAction action;
+    private final ActionResult result;
+    private final int applied;
+    private final int missed;
+    private final int earned;
+
+    BulkResult(BulkAction action, ActionResult result, int applied, int missed, int earned) {
+        this.action = action;
+        this.result = result;
+        this.applied = applied;
+        this.missed = missed;
+        this.earned = earned;
+    }
+
+    public BulkAction getAction() { return action; }
+    public ActionResult getResult() { return result; }
+    public int getApplied() { return applied; }
+    public int getMissed() { return missed; }
+    public int getEarned() { return earned; }
+    public boolean isComplete() { return missed == 0 && result.isOk(); }
+
+    public String getMessage() {
+        if (!result.isOk() && missed == 0) return result.getMessage();
+        StringBuilder sb = new StringBuilder();
+        sb.append(action.getDone()).append(' ').append(applied).append(applied == 1 ? " crop" : " crops");
+        if (earned > 0) sb.append(" (+$").append(earned).append(')');
+        if (missed > 0) sb.append("\n").append(result.getMessage()).append(' ').append(missed).append(" left out.");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,50 @@
+// Class BulkTarget: The cells a bulk action covers, a rectangle of the farm optionally narrowed to one crop type
+// Bounds are inclusive; an unbounded target covers the whole farm whatever its size
+package smartfarm.model;
+
+import smartfarm.model.plant.PlantType;
+
+public class BulkTarget {
+    private final int firstRow, firstCol, lastRow, lastCol;
+    private final PlantType type;     // null for every crop
+
+    private BulkTarget(int firstRow, int firstCol, int lastRow, int lastCol, PlantType type) {
+        this.firstRow = firstRow;
+        this.firstCol = firstCol;
+        this.lastRow = lastRow;
+        this.lastCol = lastCol;
+        this.type = type;
+    }
+
+    public static BulkTarget all() {
+        return new BulkTarget(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, null);
+    }
+
+    public static BulkTarget area(int row1, int col1, int row2, int col2) {
+        // The rectangle spanned by two corner cells, given in any order
+        return new BulkTarget(Math.min(row1, row2), Math.min(col1, col2), Math.max(row1, row2), Math.max(col1, col2),
+                null);
+    }
+
+    public static BulkTarget ofType(PlantType type) {
+        return all().withType(type);
+    }
+
+    public BulkTarget withType(PlantType type) {
+        return new BulkTarget(firstRow, firstCol, lastRow, lastCol, type);
+    }
+
+    public boolean fits(Farm farm) {
+        return firstRow >= 0 && firstCol >= 0 && firstRow < farm.getRows() && firstCol < farm.getCols();
+    }
+
+    public int getFirstRow() { return firstRow; }
+    public int getFirstCol() { return firstCol; }
+    public int getLastRow() { return lastRow; }
+    public int getLastCol() { return lastCol; }
+    public PlantType getType() { return type; }
+
+    public boolean isWholeFarm() {
+        return firstRow == 0 && firstCol == 0 && lastRow == Integer.MAX_VALUE && lastCol == Integer.MAX_VALUE;
+    }
+}
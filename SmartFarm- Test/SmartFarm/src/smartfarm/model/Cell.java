@@ -1,110 +1,130 @@
 // Class representing a specific land cell on the farm grid
 // Each cell manages a plant (if any) and the Soil Quality attribute
 // Soil quality directly affects the harvest yield
+// A Cell is a lightweight view over one slot of the FarmGrid; the state itself lives in the grid
+// Outside the model a cell is read-only: the game changes cells through GameState, which journals every action
 package smartfarm.model;
 
 import smartfarm.exception.GameException;
 import smartfarm.model.plant.Plant;
 
 public class Cell {
+    private FarmGrid grid;
     private int row;
     private int col;
-    private Plant plant;
-    private int soilQuality;
+    private int index;
 
-    public Cell(int row, int col) {
+    Cell(FarmGrid grid, int row, int col) {
+        this.grid = grid;
         this.row = row;
         this.col = col;
-        this.plant = null;
-        this.soilQuality = 80;
+        this.index = grid.index(row, col);
     }
 
-    public void plant(Plant newPlant) throws GameException {
-        if (!isEmpty()) {
-            throw new GameException("Cell already has a crop!");
-        }
-        if (soilQuality < 20) {
-            throw new GameException("Soil quality too low (" + soilQuality + "%). Fertilize to >20% first!");
-        }
-        
-        this.plant = newPlant;
+    // Non-throwing actions: each returns OK after doing the action, or the reason it was refused (nothing changed)
+
+    ActionResult tryPlant(Plant newPlant) {
+        if (!isEmpty()) return ActionResult.CELL_NOT_EMPTY;
+        if (grid.getSoil(index) < 20) return ActionResult.SOIL_TOO_LOW;
         // Planting a crop immediately reduces soil fertility
-        this.soilQuality = Math.max(0, soilQuality - 10);
+        grid.plant(index, newPlant);
+        return ActionResult.OK;
     }
 
-    public void water(int amount) throws GameException {
-        if (isEmpty()) throw new GameException("No plant to water!");
-        plant.water(amount);
+    ActionResult tryWater(int amount) {
+        if (isEmpty()) return ActionResult.NO_PLANT_TO_WATER;
+        grid.water(index, amount);
+        return ActionResult.OK;
     }
 
-    public void fertilize(int amount) throws GameException {
+    ActionResult tryFertilize(int amount) {
         // Fertilize the plant AND improve the soil
-        if (isEmpty()) throw new GameException("No plant to fertilize!");
-        plant.fertilize(amount);
-        this.soilQuality = Math.min(100, soilQuality + 5);
+        if (isEmpty()) return ActionResult.NO_PLANT_TO_FERTILIZE;
+        grid.fertilize(index, amount);
+        grid.improveSoil(index, 5);
+        return ActionResult.OK;
     }
 
-    public int harvest() throws GameException {
-        if (isEmpty()) throw new GameException("No crop to harvest!");
-        if (plant.getStage() != Plant.Stage.HARVEST) {
-            throw new GameException("Crop is not ready to harvest!");
-        }
-        
-        int value = plant.getHarvestValue();
-        // Bonus/Penalty mechanism based on soil quality
-        if (soilQuality >= 80) {
-            value = (int)(value * 1.2); 
-        } else if (soilQuality < 40) {
-            value = (int)(value * 0.8); 
-        }
-        
-        this.plant = null;
-        return value;
+    public ActionResult canHarvest() {
+        // Harvesting returns money, so it is checked here and done by harvestNow
+        if (isEmpty()) return ActionResult.NO_CROP_TO_HARVEST;
+        if (grid.getStage(index) != Plant.Stage.HARVEST) return ActionResult.NOT_READY;
+        return ActionResult.OK;
     }
 
-    public void treatPest() throws GameException {
-        if (isEmpty()) throw new GameException("No plant to treat!");
-        if (!plant.isPestInfected()) throw new GameException("Plant is not infected!");
-        plant.treatPest();
+    int harvestNow() {
+        // Bonus/Penalty mechanism based on soil quality is applied by the grid
+        return grid.harvest(index);
     }
 
-    public void updateDaily() {
-        if (plant != null) {
-            boolean alive = plant.updateDaily();
-            if (!alive) {
-                // Dead plant contaminates the soil
-                soilQuality = Math.max(0, soilQuality - 15);
-                plant = null;
-            }
-        } else {
-            // Fallow land naturally restores nutrients
-            soilQuality = Math.min(100, soilQuality + 2);
+    ActionResult tryTreatPest() {
+        if (isEmpty()) return ActionResult.NO_PLANT_TO_TREAT;
+        if (!grid.isInfected(index)) return ActionResult.NOT_INFECTED;
+        grid.treatPest(index);
+        return ActionResult.OK;
+    }
+
+    // Throwing versions for the UI, with the messages it shows
+
+    void plant(Plant newPlant) throws GameException {
+        ActionResult result = tryPlant(newPlant);
+        if (result == ActionResult.CELL_NOT_EMPTY) throw new GameException("Cell already has a crop!");
+        if (result == ActionResult.SOIL_TOO_LOW) {
+            throw new GameException("Soil quality too low (" + grid.getSoil(index) + "%). Fertilize to >20% first!");
         }
     }
 
-    public void infectWithPest() {
-        if (plant != null) plant.infectWithPest();
+    void water(int amount) throws GameException {
+        ActionResult result = tryWater(amount);
+        if (!result.isOk()) throw new GameException(result.getMessage());
+    }
+
+    void fertilize(int amount) throws GameException {
+        ActionResult result = tryFertilize(amount);
+        if (!result.isOk()) throw new GameException(result.getMessage());
+    }
+
+    int harvest() throws GameException {
+        ActionResult result = canHarvest();
+        if (!result.isOk()) throw new GameException(result.getMessage());
+        return harvestNow();
+    }
+
+    void treatPest() throws GameException {
+        ActionResult result = tryTreatPest();
+        if (!result.isOk()) throw new GameException(result.getMessage());
+    }
+
+    void updateDaily() {
+        grid.updateCell(index);
+    }
+
+    void infectWithPest() {
+        if (grid.hasCrop(index)) grid.infect(index);
     }
 
     public boolean isEmpty() {
-        return plant == null || plant.getStage() == Plant.Stage.EMPTY;
+        return grid.isEmpty(index);
     }
 
-    public Plant getPlant() { return plant; }
-    public Plant getCrop() { return plant; }
-    
+    public boolean isInfected() { return grid.isInfected(index); }
+
+    public Plant getPlant() { return grid.plantAt(index); }
+    public Plant getCrop() { return grid.plantAt(index); }
+    public int getSoilQuality() { return grid.getSoil(index); }
+
     public String getDisplayEmoji() {
-        if (plant == null || isEmpty()) return "🟫";
-        return plant.getDisplayEmoji();
+        if (isEmpty()) return "🟫";
+        return grid.plantAt(index).getDisplayEmoji();
     }
 
     public String getInfo() {
-        String info = String.format("Cell [%d,%d] - Soil: %d%%", row, col, soilQuality);
-        if (plant != null && !isEmpty()) {
-            info += "\n" + plant.getInfo();
+        String info = String.format("Cell [%d,%d] - Soil: %d%%", row, col, grid.getSoil(index));
+        if (!isEmpty()) {
+            info += "\n" + grid.plantAt(index).getInfo();
         } else {
             info += "\nEmpty";
         }
         return info;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+// Class CellStore: Where FarmGrid keeps its per-cell columns
+// One column per field (soil, crop id, stage, days grown, levels, health, pest flag, stamp) plus the active
+// index and each slot's position in it, read and written by slot. The heap store keeps them in primitive
+// arrays; the mapped store (MappedCellStore) keeps them in a file mapped through the FFM API, so a farm
+// larger than the heap lives in the OS page cache and is made durable with force(). Only one kind is in use
+// in a normal run, so the JIT sees a single implementation and the accessors compile to plain loads
+package smartfarm.model;
+
+import java.util.Arrays;
+
+abstract class CellStore {
+    static CellStore onHeap(int size) {
+        return new HeapStore(size);
+    }
+
+    abstract String getName();
+
+    // A new empty store has crop NO_CROP and everything else zero
+    abstract int soil(int i);
+    abstract void setSoil(int i, int value);
+    abstract int crop(int i);
+    abstract void setCrop(int i, int value);
+    abstract int stage(int i);
+    abstract void setStage(int i, int value);
+    abstract int daysGrown(int i);
+    abstract void setDaysGrown(int i, int value);
+    abstract int water(int i);
+    abstract void setWater(int i, int value);
+    abstract int fertilizer(int i);
+    abstract void setFertilizer(int i, int value);
+    abstract int health(int i);
+    abstract void setHealth(int i, int value);
+    abstract boolean infected(int i);
+    abstract void setInfected(int i, boolean value);
+    abstract int stamp(int i);
+    abstract void setStamp(int i, int value);
+
+    // Active index: slot at each position, and the position of each planted slot
+    abstract int slot(int pos);
+    abstract void setSlot(int pos, int i);
+    abstract int pos(int i);
+    abstract void setPos(int i, int pos);
+    abstract void ensureSlots(int count);
+    abstract void sortSlots(int count);       // Called when the index holds exactly the cells with a crop
+
+    abstract void fillSoil(int value);
+    abstract void clearPositions();     // Every position -1
+
+    // Weather on the levels of the planted cells in [from, to), as WeatherKernel.apply
+    abstract void applyWeather(WeatherKernel kernel, int from, int to, int waterEffect, int fertilizerEffect,
+                               int healthEffect);
+
+    void force(int day, int activeCount) {
+        // Make the cells durable, with the day and index length they belong to; nothing to do on the heap
+    }
+
+    void close() {
+    }
+
+    static CellStore heapCopy(CellStore other, int size, int activeCount) {
+        // A copy on the heap, whatever the original is kept in (forks are small, short-lived searches)
+        return other instanceof HeapStore heap ? new HeapStore(heap) : new HeapStore(other, size, activeCount);
+    }
+
+    static CellStore heapRange(CellStore other, int from, int count) {
+        // Cells [from, from + count) of a store as slots [0, count) of a new heap store, without the active index
+        // (a chunk a save still has to read, see GridSnapshot)
+        HeapStore copy = new HeapStore(count);
+        copy.copyCells(other, from);
+        return copy;
+    }
+
+    private static final class HeapStore extends CellStore {
+        private final byte[] soil;
+        private final byte[] crop;
+        private final byte[] stage;
+        private final short[] daysGrown;
+        private final byte[] water;
+        private final byte[] fertilizer;
+        private final byte[] health;
+        private final boolean[] infected;
+        private final int[] stamp;
+        private int[] active;
+        private final int[] activePos;
+
+        HeapStore(int size) {
+            this.soil = new byte[size];
+            this.crop = new byte[size];
+            this.stage = new byte[size];
+            this.daysGrown = new short[size];
+            this.water = new byte[size];
+            this.fertilizer = new byte[size];
+            this.health = new byte[size];
+            this.infected = new boolean[size];
+            this.stamp = new int[size];
+            this.active = new int[Math.min(size, 1024)];
+            this.activePos = new int[size];
+            Arrays.fill(crop, (byte) FarmGrid.NO_CROP);
+        }
+
+        HeapStore(HeapStore other) {
+            this.soil = other.soil.clone();
+            this.crop = other.crop.clone();
+            this.stage = other.stage.clone();
+            this.daysGrown = other.daysGrown.clone();
+            this.water = other.water.clone();
+            this.fertilizer = other.fertilizer.clone();
+            this.health = other.health.clone();
+            this.infected = other.infected.clone();
+            this.stamp = other.stamp.clone();
+            this.active = other.active.clone();
+            this.activePos = other.activePos.clone();
+        }
+
+        HeapStore(CellStore other, int size, int activeCount) {
+            // Cell by cell from another kind of store
+            this(size);
+            copyCells(other, 0);
+            for (int i = 0; i < size; i++) activePos[i] = other.pos(i);
+            ensureSlots(activeCount);
+            for (int k = 0; k < activeCount; k++) active[k] = other.slot(k);
+        }
+
+        private void copyCells(CellStore other, int from) {
+            // The cell columns from slot `from` of another store on
+            if (other instanceof HeapStore heap) {
+                int n = soil.length;
+                System.arraycopy(heap.soil, from, soil, 0, n);
+                System.arraycopy(heap.crop, from, crop, 0, n);
+                System.arraycopy(heap.stage, from, stage, 0, n);
+                System.arraycopy(heap.daysGrown, from, daysGrown, 0, n);
+                System.arraycopy(heap.water, from, water, 0, n);
+                System.arraycopy(heap.fertilizer, from, fertilizer, 0, n);
+                System.arraycopy(heap.health, from, health, 0, n);
+                System.arraycopy(heap.infected, from, infected, 0, n);
+                System.arraycopy(heap.stamp, from, stamp, 0, n);
+                return;
+            }
+            for (int i = 0; i < soil.length; i++) {
+                int j = from + i;
+                soil[i] = (byte) other.soil(j);
+                crop[i] = (byte) other.crop(j);
+                stage[i] = (byte) other.stage(j);
+                daysGrown[i] = (short) other.daysGrown(j);
+                water[i] = (byte) other.water(j);
+                fertilizer[i] = (byte) other.fertilizer(j);
+                health[i] = (byte) other.health(j);
+                infected[i] = other.infected(j);
+                stamp[i] = other.stamp(j);
+            }
+        }
+
+        @Override
+        String getName() { return "heap"; }
+
+        @Override int soil(int i) { return soil[i]; }
+        @Override void setSoil(int i, int value) { soil[i] = (byte) value; }
+        @Override int crop(int i) { return crop[i]; }
+        @Override void setCrop(int i, int value) { crop[i] = (byte) value; }
+        @Override int stage(int i) { return stage[i]; }
+        @Override void setStage(int i, int value) { stage[i] = (byte) value; }
+        @Override int daysGrown(int i) { return daysGrown[i]; }
+        @Override void setDaysGrown(int i, int value) { daysGrown[i] = (short) value; }
+        @Override int water(int i) { return water[i]; }
+        @Override void setWater(int i, int value) { water[i] = (byte) value; }
+        @Override int fertilizer(int i) { return fertilizer[i]; }
+        @Override void setFertilizer(int i, int value) { fertilizer[i] = (byte) value; }
+        @Override int health(int i) { return health[i]; }
+        @Override void setHealth(int i, int value) { health[i] = (byte) value; }
+        @Override boolean infected(int i) { return infected[i]; }
+        @Override void setInfected(int i, boolean value) { infected[i] = value; }
+        @Override int stamp(int i) { return stamp[i]; }
+        @Override void setStamp(int i, int value) { stamp[i] = value; }
+
+        @Override int slot(int pos) { return active[pos]; }
+        @Override void setSlot(int pos, int i) { active[pos] = i; }
+        @Override int pos(int i) { return activePos[i]; }
+        @Override void setPos(int i, int pos) { activePos[i] = pos; }
+
+        @Override
+        void ensureSlots(int count) {
+            if (count > active.length) {
+                active = Arrays.copyOf(active, Math.max(count, Math.min(activePos.length, active.length * 2)));
+            }
+        }
+
+        @Override
+        void sortSlots(int count) {
+            Arrays.sort(active, 0, count);
+        }
+
+        @Override
+        void fillSoil(int value) {
+            Arrays.fill(soil, (byte) value);
+        }
+
+        @Override
+        void clearPositions() {
+            Arrays.fill(activePos, -1);
+        }
+
+        @Override
+        void applyWeather(WeatherKernel kernel, int from, int to, int waterEffect, int fertilizerEffect,
+                          int healthEffect) {
+            kernel.apply(crop, water, fertilizer, health, from, to, waterEffect, fertilizerEffect, healthEffect);
+        }
+    }
+}
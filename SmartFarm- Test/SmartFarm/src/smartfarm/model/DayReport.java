@@ -0,0 +1,68 @@
+// Class DayReport: Summary of one "Next Day" tick
+// Filled in by the same pass that applies weather, growth, death and pest rolls, so callers
+// (stats bar, game-over check, logging) never need to walk the grid again
+package smartfarm.model;
+
+import smartfarm.model.plant.Plant;
+import smartfarm.model.rules.RuleReport;
+import smartfarm.model.weather.Weather;
+
+import java.util.Arrays;
+
+public class DayReport {
+    int day;
+    Weather weather;
+    boolean weatherChanged;
+    boolean pestAttack;
+    RuleReport automation;      // null when no rules are set
+
+    // Counters accumulated per stripe and merged after the tick
+    int cropsAlive;
+    int deaths;
+    int newlyHarvestable;
+    int newlyInfected;
+    int infectedCount;
+    long soilTotal;
+    final int[] stageCounts = new int[Plant.Stage.values().length];
+    final int[] cropCounts;     // Indexed by the grid's crop type ids
+    int[] deadSlots = new int[8];
+
+    DayReport(int typeCount) {
+        this.cropCounts = new int[typeCount];
+    }
+
+    void recordDeath(int slot) {
+        if (deaths == deadSlots.length) deadSlots = Arrays.copyOf(deadSlots, deaths * 2);
+        deadSlots[deaths++] = slot;
+    }
+
+    void merge(DayReport other) {
+        for (int d = 0; d < other.deaths; d++) recordDeath(other.deadSlots[d]);
+        cropsAlive += other.cropsAlive;
+        newlyHarvestable += other.newlyHarvestable;
+        newlyInfected += other.newlyInfected;
+        infectedCount += other.infectedCount;
+        for (int i = 0; i < stageCounts.length; i++) stageCounts[i] += other.stageCounts[i];
+        for (int i = 0; i < cropCounts.length; i++) cropCounts[i] += other.cropCounts[i];
+    }
+
+    public int getDay() { return day; }
+    public Weather getWeather() { return weather; }
+    public boolean isWeatherChanged() { return weatherChanged; }
+    public boolean isPestAttack() { return pestAttack; }
+    public RuleReport getAutomation() { return automation; }
+    public int getCropsAlive() { return cropsAlive; }
+    public int getDeaths() { return deaths; }
+    public int getNewlyHarvestable() { return newlyHarvestable; }
+    public int getNewlyInfected() { return newlyInfected; }
+    public int getInfectedCount() { return infectedCount; }
+    public long getSoilTotal() { return soilTotal; }
+    public int getStageCount(Plant.Stage stage) { return stageCounts[stage.ordinal()]; }
+
+    @Override
+    public String toString() {
+        return String.format("Day %d | %s%s | Crops: %d | Deaths: %d | Ready: %d | Infected: %d (+%d) | Soil: %d",
+            day, weather.getName(), weatherChanged ? " (changed)" : "", cropsAlive, deaths,
+            newlyHarvestable, infectedCount, newlyInfected, soilTotal);
+    }
+}
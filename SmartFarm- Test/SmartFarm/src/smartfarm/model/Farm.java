@@ -1,126 +1,312 @@
-// Manage the grid of Cell objects
+// Manage the farm grid (a structure-of-arrays FarmGrid, exposed cell by cell through Cell views)
 // Coordinate the weather system and its effects on crops
+// Weather is kept per zone (rectangular tiles of the grid, one zone covering the farm by default). With one
+// zone the weather draws straight from the day's weather stream; with several, each zone draws from its own
+// stream derived from that day's seed and the zone number, so zones advance independently and in parallel
 package smartfarm.model;
 
 import smartfarm.exception.GameException;
 import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
 import smartfarm.model.weather.*;
+import smartfarm.util.Constants;
 
-import java.util.Random;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 public class Farm {
-    private Cell[][] grid;
+    private FarmGrid grid;
     private int rows, cols;
-    private Weather currentWeather;
-    private Random random = new Random(); // Random number generator used for weather and pest/disease events
+    private WeatherZones zones;
+    private final GameRandom random; // Seeded streams used for weather and pest/disease events
+
+    // Parallel tick settings
+    private int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism()); // The common pool by default
+    private int parallelThreshold = Constants.PARALLEL_TICK_THRESHOLD;
+    private ForkJoinPool tickPool;
 
 
     public Farm(int rows, int cols) {
+        this(rows, cols, new GameRandom(GameRandom.newSeed()));
+    }
+
+    public Farm(int rows, int cols, GameRandom random) {
         this.rows = rows;
         this.cols = cols;
-        this.grid = new Cell[rows][cols];
-        this.currentWeather = new Sunny();
+        this.grid = new FarmGrid(rows, cols);
+        this.zones = new WeatherZones(rows, cols, rows, cols, WeatherEngine.SUNNY);
+        this.random = random;
+    }
 
-        // Initialize each specific land cell in the array
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                grid[i][j] = new Cell(i, j);
-            }
+    public Farm(int rows, int cols, GameRandom random, Path storeFile) throws GameException {
+        // The cells live in a memory-mapped file (created, or emptied if it exists) instead of on the heap
+        this(new FarmGrid(rows, cols, MappedCellStore.create(storeFile, rows, cols)),
+                new WeatherZones(rows, cols, rows, cols, WeatherEngine.SUNNY), random);
+    }
+
+    public Farm(Path storeFile, GameRandom random) throws GameException {
+        // Reopen a mapped farm's cells as of its last force(), ticking daily under sunny weather; the file keeps
+        // only the cells, so a whole game (weather, money, stocks, rules) still goes through SaveFile
+        this(reopen(storeFile), random);
+    }
+
+    private Farm(FarmGrid grid, GameRandom random) {
+        this(grid, new WeatherZones(grid.getRows(), grid.getCols(), grid.getRows(), grid.getCols(), WeatherEngine.SUNNY),
+                random);
+    }
+
+    private static FarmGrid reopen(Path storeFile) throws GameException {
+        MappedCellStore cells = MappedCellStore.open(storeFile);
+        try {
+            return FarmGrid.reopen(cells);
+        } catch (IllegalStateException e) {
+            cells.close();
+            throw new GameException("Cannot reopen " + storeFile + ": " + e.getMessage());
         }
     }
 
+    Farm(Farm other, GameRandom random) {
+        // Snapshot for a forked game, in the same tick mode, ticking on the calling thread (forks are for
+        // searching, so they run one per thread rather than splitting their own tick). The source is only read
+        this.grid = new FarmGrid(other.grid);
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.zones = new WeatherZones(other.zones);
+        this.random = random;
+        this.parallelism = 1;
+        this.parallelThreshold = other.parallelThreshold;
+    }
+
+    Farm(FarmGrid grid, WeatherZones zones, GameRandom random) {
+        // A farm read back from a save file (see SaveFile), or on a new mapped grid, ticking daily
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.grid = grid;
+        this.zones = zones;
+        this.random = random;
+        grid.setZoneTiles(zones.getTileRows(), zones.getTileCols());
+    }
 
-    public boolean shouldChangeWeather() {
-        return random.nextDouble() < 0.3;
+    public long stateHash() {
+        return grid.stateHash() * 31 + zones.stateHash();
     }
 
-    public void updateWeatherRandomly() {
-        String currentName = currentWeather.getName();
-        Weather nextWeather;
-        // State transition logic:
-        if (currentName.equals("Rainy")) nextWeather = random.nextDouble() < 0.5 ? new Cloudy() : new Rainy();
-        else if (currentName.equals("Cloudy")) nextWeather = random.nextDouble() < 0.4 ? new Sunny() : new Rainy();
-        else if (currentName.equals("Sunny")) nextWeather = random.nextDouble() < 0.1 ? new Drought() : new Cloudy();
-        else if (currentName.equals("Drought")) nextWeather = random.nextDouble() < 0.6 ? new Sunny() : new Drought();
-        else if (currentName.equals("Storm")) nextWeather = new Rainy(); // Storms usually weaken into normal rain
-        else nextWeather = getRandomWeather();
-        
-        this.currentWeather = nextWeather;
+    private SplittableRandom weatherRandom() {
+        return random.stream(GameRandom.Stream.WEATHER, grid.getDay());
     }
 
-    private Weather getRandomWeather() {
-        int choice = random.nextInt(5);
-        switch (choice) {
-            // Helper function to get a random weather type
-            case 0: return new Sunny();
-            case 1: return new Rainy();
-            case 2: return new Cloudy();
-            case 3: return new Drought();
-            case 4: return new Storm();
-            default: return new Sunny();
+
+    boolean advanceWeather() {
+        // Tomorrow's weather in every zone from the transition table; returns whether any zone's weather differs
+        Weather[] today = zones.getWeathers();
+        SplittableRandom dayRandom = weatherRandom();
+        if (zones.getCount() == 1) {
+            zones.advance(0, dayRandom);
+        } else {
+            long daySeed = dayRandom.nextLong();
+            forEachZone(z -> zones.advance(z, GameRandom.stripe(daySeed, z)), Constants.WEATHER_ZONE_GRAIN);
+        }
+        for (int z = 0; z < today.length; z++) {
+            if (zones.getWeather(z) != today[z]) return true;
         }
+        return false;
     }
 
-    public Cell getCell(int row, int col) throws GameException {
-        if (row < 0 || row >= rows || col < 0 || col >= cols) {
-            // Validate coordinates to prevent IndexOutOfBounds errors
-            throw new GameException("Invalid position");
+    void updateWeatherRandomly() {
+        // Force a weather change event in every zone (which may still land on the same weather)
+        SplittableRandom dayRandom = weatherRandom();
+        if (zones.getCount() == 1) {
+            zones.change(0, dayRandom);
+        } else {
+            long daySeed = dayRandom.nextLong();
+            forEachZone(z -> zones.change(z, GameRandom.stripe(daySeed, z)), Constants.WEATHER_ZONE_GRAIN);
+        }
+    }
+
+    public double[] getWeatherForecast(int days) {
+        // Expected share of the farm under each WeatherEngine state `days` days from now, without simulating
+        // (with one zone: the chance of each state)
+        return WeatherEngine.forecast(zones.getShare(), days);
+    }
+
+    void setWeatherZones(int tileRows, int tileCols) {
+        // Split the farm into weather tiles; every zone starts from today's prevailing weather
+        boolean eventDriven = isEventDriven();
+        setEventDriven(false);
+        zones = new WeatherZones(rows, cols, tileRows, tileCols, zones.getPrevailing());
+        grid.setZoneTiles(zones.getTileRows(), zones.getTileCols());
+        setEventDriven(eventDriven);
+    }
+
+    private void forEachZone(IntConsumer action, int grain) {
+        // Zones share no cells and no random streams, so big farms run them on the tick pool
+        if (parallelism > 1 && zones.getCount() > grain && grid.size() >= parallelThreshold) {
+            tickPool().invoke(new ZoneTask(action, 0, zones.getCount(), grain));
+        } else {
+            for (int z = 0; z < zones.getCount(); z++) action.accept(z);
         }
-        return grid[row][col];
     }
 
-    public void plantCrop(int row, int col, Plant plant) throws GameException {
+    private void applyZoneWeather(int z, WeatherKernel kernel) {
+        Weather weather = zones.getWeather(z);
+        int row = zones.getFirstRow(z), col = zones.getFirstCol(z);
+        grid.applyWeather(row, row + zones.getZoneHeight(z), col, col + zones.getZoneWidth(z),
+                weather.getWaterEffect(), weather.getFertilizerEffect(), weather.getHealthEffect(), kernel);
+    }
+
+    public Cell getCell(int row, int col) throws GameException {
+        // Validate coordinates to prevent IndexOutOfBounds errors
+        if (!contains(row, col)) throw new GameException("Invalid position");
+        return new Cell(grid, row, col);
+    }
+
+    public Cell cellAt(int row, int col) {
+        // Non-throwing getCell: null when the position is outside the farm
+        return contains(row, col) ? new Cell(grid, row, col) : null;
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    void plantCrop(int row, int col, Plant plant) throws GameException {
         // This method delegates the logic handling to the Cell class
         getCell(row, col).plant(plant);
     }
 
-    public void updateDaily() {
-        applyWeatherEffects(); // Weather
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                grid[i][j].updateDaily(); // Growth
-            }
+    DayReport updateDaily() {
+        return updateDaily(0, 0);
+    }
+
+    DayReport updateDaily(double infectionRate, long seed) {
+        if (grid.isEventDriven()) {
+            // Only plants whose stage changes or who die today are touched
+            DayReport report = grid.eventTick(zones.waterEffects(), zones.fertilizerEffects(), zones.healthEffects(),
+                    infectionRate, seed, Constants.TICK_STRIPE_SIZE);
+            report.weather = zones.getPrevailing();
+            return report;
+        }
+
+        // Weather, growth, death, pest rolls (when infectionRate > 0) and counting in one pass over planted cells
+        grid.beginTick();
+        TickTask tick;
+        if (zones.getCount() == 1) {
+            Weather weather = zones.getWeather(0);
+            tick = new TickTask(grid, weather.getWaterEffect(), weather.getFertilizerEffect(),
+                    weather.getHealthEffect(), infectionRate, seed, Constants.TICK_STRIPE_SIZE);
+        } else {
+            // Each tile's weather in bulk first (about one stripe of cells per leaf); the pass then only grows
+            WeatherKernel kernel = WeatherKernel.best();
+            int tileCells = zones.getTileRows() * zones.getTileCols();
+            forEachZone(z -> applyZoneWeather(z, kernel), Math.max(1, Constants.TICK_STRIPE_SIZE / tileCells));
+            tick = new TickTask(grid, 0, 0, 0, infectionRate, seed, Constants.TICK_STRIPE_SIZE);
+        }
+        if (parallelism > 1 && grid.getActiveCount() >= parallelThreshold) {
+            tickPool().invoke(tick); // Stripes of the active index on the fork/join pool
+        } else {
+            tick.runSequentially();
         }
+        DayReport report = tick.finish();
+        report.weather = zones.getPrevailing();
+        return report;
     }
 
-    private void applyWeatherEffects() {
-        // Iterate through each cell; if it contains a plant, apply the effects of the current weather
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                Cell cell = grid[i][j];
-                if (!cell.isEmpty()) {
-                    currentWeather.applyEffect(cell.getPlant());
-                }
-            }
+    private ForkJoinPool tickPool() {
+        if (tickPool == null) {
+            tickPool = parallelism == ForkJoinPool.getCommonPoolParallelism()
+                    ? ForkJoinPool.commonPool() : new ForkJoinPool(parallelism);
         }
+        return tickPool;
+    }
+
+    public void setParallelism(int parallelism) {
+        // 1 keeps the tick on the calling thread
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        if (tickPool != null && tickPool != ForkJoinPool.commonPool()) tickPool.shutdown();
+        this.tickPool = null;
+        this.parallelism = parallelism;
+    }
+
+    public void setParallelThreshold(int cells) {
+        this.parallelThreshold = cells;
+    }
+
+    public void setEventDriven(boolean eventDriven) {
+        // Event-driven ticks suit long fast-forwards; the daily tick suits day-by-day play on busy farms
+        grid.setEventDriven(eventDriven, zones.waterEffects(), zones.fertilizerEffects(), zones.healthEffects());
     }
 
-    public int infectRandomCrops(double probability) {
+    public boolean isEventDriven() { return grid.isEventDriven(); }
+
+    public String getStorageName() { return grid.getStorageName(); }
+
+    public void force() {
+        // A mapped farm: write today's cells through to its file (event-driven plants are settled first)
+        boolean eventDriven = isEventDriven();
+        setEventDriven(false);
+        try {
+            grid.force();
+        } finally {
+            setEventDriven(eventDriven);
+        }
+    }
+
+    public void close() {
+        // Unmaps a mapped farm, which cannot be used afterwards, and stops a private tick pool
+        if (tickPool != null && tickPool != ForkJoinPool.commonPool()) tickPool.shutdown();
+        tickPool = null;
+        grid.close();
+    }
+
+    int infectRandomCrops(double probability) {
+        if (probability <= 0) return 0;
+        SplittableRandom random = this.random.stream(GameRandom.Stream.INFECTION, grid.getDay());
+        double logMiss = Math.log1p(-probability);
         int infected = 0;
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                // Infect the plant if the cell has one and the random chance is met
-                if (!grid[i][j].isEmpty() && Math.random() < probability) {
-                    grid[i][j].infectWithPest();
-                    infected++;
-                }
+        // Each planted cell is infected with the given probability; geometric skips jump straight from one
+        // infected cell to the next, so the cost scales with the infections rather than the farm
+        for (int k = GameRandom.nextHit(-1, random, logMiss), n = grid.getActiveCount(); k < n;
+                k = GameRandom.nextHit(k, random, logMiss)) {
+            int i = grid.getActiveSlot(k);
+            if (!grid.isEmpty(i)) {
+                grid.infect(i);
+                infected++;
             }
         }
         return infected;
     }
 
+    // Farm-wide aggregates, maintained incrementally by the grid (O(1))
     public int getTotalCrops() {
-        int count = 0;
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                if (!grid[i][j].isEmpty()) count++;
-            }
-        }
-        return count;
+        return grid.getAliveCount();
+    }
+
+    public int getStageCount(Plant.Stage stage) {
+        return grid.getStageCount(stage);
+    }
+
+    public int getCropCount(String cropName) {
+        PlantType type = PlantType.byName(cropName);
+        return type != null ? grid.getCropCount(type.getId()) : 0;
+    }
+
+    public int getInfectedCount() { return grid.getInfectedCount(); }
+    public long getSoilQualityTotal() { return grid.getSoilTotal(); }
+
+    public FarmGrid getGrid() { return grid; }
+    public GameRandom getRandom() { return random; }
+    public Weather getCurrentWeather() {
+        // The weather over most of the farm (the only weather while the farm is one zone)
+        return zones.getPrevailing();
     }
 
-    public Weather getCurrentWeather() { return currentWeather; }
-    public void setCurrentWeather(Weather weather) { this.currentWeather = weather; }
+    void setCurrentWeather(Weather weather) { zones.setAll(weather); }
+    public Weather getWeatherAt(int row, int col) { return zones.getWeather(zones.zoneOf(row, col)); }
+    public WeatherZones getWeatherZones() { return zones; }
     public int getRows() { return rows; }
     public int getCols() { return cols; }
+    public int getParallelism() { return parallelism; }
+    public int getParallelThreshold() { return parallelThreshold; }
 }
\ No newline at end of file
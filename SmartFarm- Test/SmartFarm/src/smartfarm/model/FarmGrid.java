@@ -0,0 +1,1044 @@
+// Class FarmGrid: Structure-of-arrays storage for every cell of the farm
+// A cell is a slot index (row * cols + col) into parallel primitive columns, so the daily tick
+// walks memory linearly instead of chasing Cell -> Plant pointers (about 9 bytes per cell). The columns are
+// arrays on the heap, or live in a memory-mapped file for farms larger than the heap (see CellStore)
+// Cell and Plant objects are thin views over a slot of this grid
+// Planted slots are also listed in a dense active index, so the tick costs O(planted) rather than
+// O(area); fallow soil recovery is not ticked at all but settled from a day stamp when it is needed
+// In event-driven mode planted cells are not ticked either: each growing plant sits in a timer wheel
+// at the day its stage next changes or it dies, and is settled from its stamp when it is read
+// For incremental saves, slots and active index positions are grouped in chunks of CHUNK_CELLS, and every
+// change marks its chunk dirty (see SaveFile). A save written in the background reads the grid through a
+// snapshot, which every change first lets copy the chunk it is about to change (see GridSnapshot)
+package smartfarm.model;
+
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+public class FarmGrid {
+    public static final int NO_CROP = -1;
+    static final int CHUNK_SHIFT = 12;
+    static final int CHUNK_CELLS = 1 << CHUNK_SHIFT;
+
+    private static final Plant.Stage[] STAGES = Plant.Stage.values();
+    private static final byte EMPTY = (byte) Plant.Stage.EMPTY.ordinal();
+    private static final byte SEED = (byte) Plant.Stage.SEED.ordinal();
+    private static final byte SEEDLING = (byte) Plant.Stage.SEEDLING.ordinal();
+    private static final byte MATURE = (byte) Plant.Stage.MATURE.ordinal();
+    private static final byte HARVEST = (byte) Plant.Stage.HARVEST.ordinal();
+
+    private final int rows, cols;
+
+    // Per-cell state and the active index (a dense list of planted slots, with each slot's position for O(1)
+    // swap-remove), on the heap or in a mapped file
+    private final CellStore cells;
+    private int activeCount;
+    private int activeChurn;            // Adds and removes since the index was last sorted
+    private int day;
+
+    // Crop type table: the PlantType registry's stats as plain arrays indexed by type id, so the tick does
+    // table lookups instead of calls on the plant
+    private static final PlantType[] TYPES = PlantType.values();
+    private static final int[] GROWTH_TIME = new int[TYPES.length];
+    private static final int[] WATER_NEED = new int[TYPES.length];
+    private static final int[] FERTILIZER_NEED = new int[TYPES.length];
+    private static final int[] PEST_DAMAGE = new int[TYPES.length];
+    private static final int TYPE_COUNT = TYPES.length;
+
+    static {
+        for (PlantType type : TYPES) {
+            GROWTH_TIME[type.getId()] = type.getGrowthTime();
+            WATER_NEED[type.getId()] = type.getWaterNeed();
+            FERTILIZER_NEED[type.getId()] = type.getFertilizerNeed();
+            PEST_DAMAGE[type.getId()] = type.getPestDamage();
+        }
+    }
+
+    // Aggregates kept up to date by every mutation, so farm-wide queries are O(1)
+    private final int[] cropCount = new int[TYPE_COUNT];        // Planted cells per crop type
+    private final int[] stageCount = new int[STAGES.length];    // Planted cells per stage
+    private int infectedCount;
+    private final SoilLedger soilLedger;
+
+    // Event-driven mode only (null while the farm ticks daily)
+    private TimerWheel wheel;
+    private WeatherLog[] weatherLogs;              // One per weather zone
+    private static final int HORIZON = 1 << 24;    // Longest dry run when predicting a plant's next event
+
+    // Weather zone tiles (one zone covering the grid until the farm splits it)
+    private int tileRows, tileCols, zoneCols = 1;
+
+    // Chunks changed since the last save, one bit per chunk: slots, and positions of the active index
+    private final long[] dirtyCells;
+    private final long[] dirtyActive;
+    private volatile GridSnapshot snapshot;     // The save being written from this grid, if any
+
+    private Map<Integer, PlantView> views;      // Plant views handed out by plantAt, by slot
+
+    public FarmGrid(int rows, int cols) {
+        this(rows, cols, CellStore.onHeap(rows * cols));
+    }
+
+    FarmGrid(int rows, int cols, CellStore cells) {
+        // A fresh farm kept in the given store
+        this(rows, cols, 0, cells);
+        cells.fillSoil(80);
+        soilLedger.addFallow(80, 0, size());
+        markAllDirty();
+    }
+
+    static FarmGrid reopen(MappedCellStore cells) {
+        // A mapped farm as it was at its last force(): fallow soil is settled to that day, then everything derived
+        // from the cells is rebuilt as for a save file. No save holds this grid yet, so every chunk is dirty
+        FarmGrid grid = new FarmGrid(cells.getRows(), cells.getCols(), cells.getDay(), cells);
+        for (int i = 0; i < grid.size(); i++) {
+            if (cells.crop(i) == NO_CROP && cells.stamp(i) != grid.day) {
+                cells.setSoil(i, SoilLedger.soilAt(cells.soil(i), cells.stamp(i), grid.day));
+                cells.setStamp(i, grid.day);
+            }
+        }
+        grid.finishLoad(cells.getActiveCount(), 0);
+        grid.markAllDirty();
+        return grid;
+    }
+
+    FarmGrid(int rows, int cols, int day) {
+        // An empty grid on the given day, for a save file to fill in (see finishLoad)
+        this(rows, cols, day, CellStore.onHeap(rows * cols));
+    }
+
+    private FarmGrid(int rows, int cols, int day, CellStore cells) {
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        this.tileRows = rows;
+        this.tileCols = cols;
+        this.soilLedger = new SoilLedger();
+        this.day = day;
+        this.dirtyCells = new long[(getChunkCount() + 63) >>> 6];
+        this.dirtyActive = new long[dirtyCells.length];
+    }
+
+    FarmGrid(FarmGrid other) {
+        // Snapshot of a grid, in the same tick mode: a handful of array copies, however many plants there are
+        // An event-driven grid is copied with its timer wheel and weather logs, its plants left unsettled
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.cells = CellStore.heapCopy(other.cells, other.size(), other.activeCount);
+        this.activeCount = other.activeCount;
+        this.activeChurn = other.activeChurn;
+        this.day = other.day;
+        System.arraycopy(other.cropCount, 0, cropCount, 0, TYPE_COUNT);
+        System.arraycopy(other.stageCount, 0, stageCount, 0, stageCount.length);
+        this.infectedCount = other.infectedCount;
+        this.soilLedger = new SoilLedger(other.soilLedger);
+        this.tileRows = other.tileRows;
+        this.tileCols = other.tileCols;
+        this.zoneCols = other.zoneCols;
+        this.dirtyCells = other.dirtyCells.clone();
+        this.dirtyActive = other.dirtyActive.clone();
+        if (other.wheel != null) {
+            this.wheel = new TimerWheel(other.wheel);
+            this.weatherLogs = new WeatherLog[other.weatherLogs.length];
+            for (int z = 0; z < weatherLogs.length; z++) weatherLogs[z] = new WeatherLog(other.weatherLogs[z]);
+        }
+    }
+
+    public long stateHash() {
+        // 64-bit hash of everything that decides how the farm plays on, for transposition tables
+        for (int k = 0; k < activeCount; k++) sync(cells.slot(k));
+        return hashCells(day, cells, 0, size(), day);
+    }
+
+    static long hashCells(long h, CellStore c, int from, int to, int day) {
+        // Folds cells [from, to) of a store into the hash, fallow soil settled to the given day
+        for (int i = from; i < to; i++) {
+            long cell = c.crop(i) == NO_CROP ? SoilLedger.soilAt(c.soil(i), c.stamp(i), day)
+                    : c.soil(i) | (long) (c.crop(i) + 1) << 7 | (long) c.stage(i) << 14 | (long) c.daysGrown(i) << 17
+                    | (long) c.water(i) << 33 | (long) c.fertilizer(i) << 37 | (long) c.health(i) << 41
+                    | (c.infected(i) ? 1L << 48 : 0);
+            h = (h ^ cell) * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 29;
+        }
+        return h;
+    }
+
+    public int index(int row, int col) {
+        return row * cols + col;
+    }
+
+    public void seed(int i, Plant plant) {
+        // Put a freshly sown plant of the plant's type into slot i
+        touch(i);
+        vacate(i);
+        leaveFallow(i);
+        cells.setCrop(i, plant.getType().getId());
+        cells.setStage(i, SEED);
+        cells.setDaysGrown(i, 0);
+        cells.setWater(i, 0);
+        cells.setFertilizer(i, 0);
+        cells.setHealth(i, 100);
+        cells.setInfected(i, false);
+        occupy(i);
+        cells.setStamp(i, day);
+        markCell(i);
+        reschedule(i);
+    }
+
+    public void plant(int i, Plant plant) {
+        // Copy the plant's current state into slot i (read it back through plantAt); planting reduces soil fertility
+        touch(i);
+        vacate(i);
+        leaveFallow(i);
+        cells.setCrop(i, plant.getType().getId());
+        cells.setStage(i, plant.getStage().ordinal());
+        cells.setDaysGrown(i, plant.getDaysGrown());
+        cells.setWater(i, plant.getWaterLevel());
+        cells.setFertilizer(i, plant.getFertilizerLevel());
+        cells.setHealth(i, plant.getHealth());
+        cells.setInfected(i, plant.isPestInfected());
+        occupy(i);
+        setSoil(i, Math.max(0, cells.soil(i) - 10));
+        cells.setStamp(i, day);
+        markCell(i);
+        reschedule(i);
+    }
+
+    public Plant plantAt(int i) {
+        // The view over slot i, or null when nothing is planted there; one view per planted slot, detached
+        // (keeping its last state) when the slot is vacated
+        int t = cells.crop(i);
+        if (t == NO_CROP) return null;
+        if (views == null) views = new HashMap<>();
+        return views.computeIfAbsent(i, k -> new PlantView(TYPES[t], this, k));
+    }
+
+    public int harvest(int i) {
+        touch(i);
+        sync(i);
+        int value = TYPES[cells.crop(i)].getHarvestValue();
+        // Bonus/Penalty mechanism based on soil quality
+        if (cells.soil(i) >= 80) {
+            value = (int) (value * 1.2);
+        } else if (cells.soil(i) < 40) {
+            value = (int) (value * 0.8);
+        }
+        vacate(i);
+        return value;
+    }
+
+    private void occupy(int i) {
+        cropCount[cells.crop(i)]++;
+        stageCount[cells.stage(i)]++;
+        if (cells.infected(i)) infectedCount++;
+        addActive(i);
+    }
+
+    private void vacate(int i) {
+        if (cells.crop(i) == NO_CROP) return;
+        cropCount[cells.crop(i)]--;
+        stageCount[cells.stage(i)]--;
+        if (cells.infected(i)) infectedCount--;
+        release(i);
+    }
+
+    private void release(int i) {
+        // The slot turns fallow today
+        if (views != null && !views.isEmpty()) {
+            PlantView view = views.remove(i);
+            if (view != null) view.detach();
+        }
+        if (wheel != null) wheel.cancel(i);
+        removeActive(i);
+        clear(i);
+        soilLedger.addPlanted(-cells.soil(i));
+        cells.setStamp(i, day);
+        soilLedger.addFallow(cells.soil(i), day, 1);
+        markCell(i);
+    }
+
+    private void leaveFallow(int i) {
+        // Settle the recovered soil before the slot is planted
+        int settled = getSoil(i);
+        soilLedger.removeFallow(cells.soil(i), cells.stamp(i), day);
+        cells.setSoil(i, settled);
+        soilLedger.addPlanted(settled);
+    }
+
+    private void addActive(int i) {
+        cells.ensureSlots(activeCount + 1);
+        cells.setPos(i, activeCount);
+        markPosition(activeCount);
+        cells.setSlot(activeCount++, i);
+        activeChurn++;
+    }
+
+    private void removeActive(int i) {
+        int pos = cells.pos(i);
+        int last = cells.slot(--activeCount);
+        cells.setSlot(pos, last);
+        cells.setPos(last, pos);
+        activeChurn++;
+        markPosition(pos);
+        markPosition(activeCount);      // The index got shorter
+    }
+
+    private void clear(int i) {
+        // Raw reset without touching the aggregates (the tick recounts them itself)
+        cells.setCrop(i, NO_CROP);
+        cells.setStage(i, EMPTY);
+        cells.setInfected(i, false);
+    }
+
+    private void setSoil(int i, int value) {
+        touch(i);
+        if (cells.crop(i) != NO_CROP) {
+            soilLedger.addPlanted(value - cells.soil(i));
+        } else {
+            soilLedger.removeFallow(cells.soil(i), cells.stamp(i), day);
+            cells.setStamp(i, day);
+            soilLedger.addFallow(value, day, 1);
+        }
+        cells.setSoil(i, value);
+        markCell(i);
+    }
+
+    public void water(int i, int amount) {
+        // Levels saturate in [0, 10]; negative amounts come from dry weather
+        touch(i);
+        sync(i);
+        cells.setWater(i, Math.min(10, Math.max(0, cells.water(i) + amount)));
+        markCell(i);
+        reschedule(i);
+    }
+
+    public void fertilize(int i, int amount) {
+        touch(i);
+        sync(i);
+        cells.setFertilizer(i, Math.min(10, Math.max(0, cells.fertilizer(i) + amount)));
+        markCell(i);
+        reschedule(i);
+    }
+
+    public void adjustHealth(int i, int amount) {
+        touch(i);
+        sync(i);
+        cells.setHealth(i, Math.min(100, Math.max(0, cells.health(i) + amount)));
+        markCell(i);
+        reschedule(i);
+    }
+
+    public void applyWeather(int waterEffect, int fertilizerEffect, int healthEffect, WeatherKernel kernel) {
+        // Weather.applyEffect on every planted cell at once
+        if (wheel != null) {
+            // Event-driven plants are settled lazily, so they go through the mutators to be synced and rescheduled
+            for (int k = 0; k < activeCount; k++) applyWeather(cells.slot(k), waterEffect, fertilizerEffect, healthEffect);
+            return;
+        }
+        preserveActive();
+        cells.applyWeather(kernel, 0, size(), waterEffect, fertilizerEffect, healthEffect);
+        markActiveCells();
+    }
+
+    public void applyWeather(int fromRow, int toRow, int fromCol, int toCol, int waterEffect, int fertilizerEffect,
+                             int healthEffect, WeatherKernel kernel) {
+        // The same on the planted cells of one rectangle (a weather tile), one row segment at a time
+        // Tiles run in parallel during the tick, so the tick marks the planted cells dirty afterwards
+        for (int r = fromRow; r < toRow; r++) {
+            int from = index(r, fromCol), to = index(r, toCol);
+            if (wheel == null) {
+                cells.applyWeather(kernel, from, to, waterEffect, fertilizerEffect, healthEffect);
+                continue;
+            }
+            for (int i = from; i < to; i++) {
+                if (cells.crop(i) != NO_CROP) applyWeather(i, waterEffect, fertilizerEffect, healthEffect);
+            }
+        }
+    }
+
+    private void applyWeather(int i, int waterEffect, int fertilizerEffect, int healthEffect) {
+        if (waterEffect != 0) water(i, waterEffect);
+        if (fertilizerEffect != 0) fertilize(i, fertilizerEffect);
+        if (healthEffect != 0) adjustHealth(i, healthEffect);
+    }
+
+    public void improveSoil(int i, int amount) {
+        setSoil(i, Math.min(100, Math.max(0, getSoil(i) + amount)));
+    }
+
+    public void infect(int i) {
+        touch(i);
+        sync(i);
+        if (!cells.infected(i) && cells.crop(i) != NO_CROP) infectedCount++;
+        cells.setInfected(i, true);
+        markCell(i);
+        reschedule(i);
+    }
+
+    public void treatPest(int i) {
+        // Remove pests and restore 20 health points (up to a maximum of 100)
+        touch(i);
+        sync(i);
+        if (cells.infected(i) && cells.crop(i) != NO_CROP) infectedCount--;
+        cells.setInfected(i, false);
+        cells.setHealth(i, Math.min(100, cells.health(i) + 20));
+        markCell(i);
+        reschedule(i);
+    }
+
+    public boolean grow(int i) {
+        // One day of a plant's lifecycle; returns false when the plant dies
+        touch(i);
+        sync(i);
+        int before = cells.stage(i);
+        boolean alive = growPlant(i);
+        if (cells.crop(i) != NO_CROP && cells.stage(i) != before) {
+            stageCount[before]--;
+            stageCount[cells.stage(i)]++;
+        }
+        markCell(i);
+        reschedule(i);
+        return alive;
+    }
+
+    private boolean growPlant(int i) {
+        return growPlant(i, cells.stage(i), cells.water(i), cells.fertilizer(i), cells.health(i));
+    }
+
+    private boolean growPlant(int i, int st, int w, int f, int h) {
+        // Growth from the given levels, each column written once (the tick passes them already weathered)
+        // Kept under the JIT's inlining limit for hot methods, as the tick calls it for every plant
+        CellStore c = cells;
+        if (st == HARVEST || st == EMPTY) {
+            c.setWater(i, w);
+            c.setFertilizer(i, f);
+            c.setHealth(i, h);
+            return true;
+        }
+
+        int t = c.crop(i);
+        boolean grows = w >= WATER_NEED[t] && f >= FERTILIZER_NEED[t];
+        c.setWater(i, Math.max(0, w - WATER_NEED[t]));
+        c.setFertilizer(i, Math.max(0, f - FERTILIZER_NEED[t]));
+        h = grows ? Math.min(100, h + 5) : h - 20;
+        if (c.infected(i)) {
+            h -= PEST_DAMAGE[t];
+        }
+
+        if (grows) {
+            int days = Math.min(Short.MAX_VALUE, c.daysGrown(i) + 1);    // Saturates rather than wrapping
+            c.setDaysGrown(i, days);
+
+            int g = GROWTH_TIME[t];
+            if (days >= g && st == SEED) {
+                c.setStage(i, SEEDLING);
+            } else if (days >= g * 2 && st == SEEDLING) {
+                c.setStage(i, MATURE);
+            } else if (days >= g * 3 && st == MATURE) {
+                c.setStage(i, HARVEST);
+            }
+        }
+
+        if (h <= 0) {
+            c.setStage(i, EMPTY);
+            c.setHealth(i, 0);
+            return false;
+        }
+        c.setHealth(i, h);
+        return true;
+    }
+
+    public void updateCell(int i) {
+        if (cells.crop(i) != NO_CROP) {
+            if (!grow(i)) die(i);
+        } else {
+            // Fallow land naturally restores nutrients (on top of the days already settled lazily)
+            setSoil(i, Math.min(100, getSoil(i) + 2));
+        }
+    }
+
+    private void die(int i) {
+        // Dead plant contaminates the soil
+        setSoil(i, Math.max(0, cells.soil(i) - 15));
+        vacate(i);
+    }
+
+    void beginTick() {
+        // Every fallow cell gains its +2 implicitly through its stamp
+        // The tick changes planted cells all over the grid from several threads, so a snapshot copies the
+        // chunks that hold them now; chunks of fallow cells only are left alone, as the tick never writes them
+        preserveActive();
+        day++;
+        soilLedger.advanceTo(day);
+    }
+
+    public void tickRange(int fromPos, int toPos, int waterEffect, int fertilizerEffect, int healthEffect,
+                          double infectionRate, SplittableRandom random, DayReport report) {
+        // One fused pass per planted cell: weather, growth, death, pest roll and counting
+        // Positions [fromPos, toPos) of the active index are independent of every other position, so ranges
+        // can run on separate threads; the aggregates and the index itself are only updated in endTick
+        // Pest rolls jump from hit to hit with geometric skips; a hit on a cell that died today is dropped
+        double logMiss = Math.log1p(-infectionRate);
+        int nextHit = infectionRate > 0 ? GameRandom.nextHit(fromPos - 1, random, logMiss) : Integer.MAX_VALUE;
+        CellStore c = cells;
+        for (int k = fromPos; k < toPos; k++) {
+            int i = c.slot(k);
+            boolean hit = k == nextHit;
+            if (hit) nextHit = GameRandom.nextHit(k, random, logMiss);
+
+            // Same clamped updates as Weather.applyEffect
+            int w = Math.min(10, Math.max(0, c.water(i) + waterEffect));
+            int f = Math.min(10, Math.max(0, c.fertilizer(i) + fertilizerEffect));
+            int h = Math.min(100, Math.max(0, c.health(i) + healthEffect));
+
+            int before = c.stage(i);
+            if (!growPlant(i, before, w, f, h)) {
+                report.recordDeath(i);
+                continue;
+            }
+            if (c.stage(i) != EMPTY) {
+                if (c.stage(i) == HARVEST && before != HARVEST) report.newlyHarvestable++;
+                if (hit) {
+                    c.setInfected(i, true);
+                    report.newlyInfected++;
+                }
+                if (c.infected(i)) report.infectedCount++;
+                report.cropsAlive++;
+            }
+            report.stageCounts[c.stage(i)]++;
+            report.cropCounts[c.crop(i)]++;
+        }
+    }
+
+    void endTick(DayReport total) {
+        // Replace the aggregates with the counts taken during the tick (dead cells were not counted)
+        markActiveCells();
+        System.arraycopy(total.stageCounts, 0, stageCount, 0, stageCount.length);
+        System.arraycopy(total.cropCounts, 0, cropCount, 0, TYPE_COUNT);
+        infectedCount = total.infectedCount;
+
+        // Remove the dead, in stripe order so the index stays deterministic
+        for (int d = 0; d < total.deaths; d++) {
+            int i = total.deadSlots[d];
+            // Dead plant contaminates the soil
+            soilLedger.addPlanted(Math.max(0, cells.soil(i) - 15) - cells.soil(i));
+            cells.setSoil(i, Math.max(0, cells.soil(i) - 15));
+            release(i);
+        }
+
+        sortActive();
+        total.soilTotal = getSoilTotal();
+    }
+
+    private void sortActive() {
+        // Swap-removes scatter the index; sorting it now and then keeps the tick walking memory forwards
+        if (activeChurn > activeCount / 2 + 64) {
+            cells.sortSlots(activeCount);
+            for (int k = 0; k < activeCount; k++) cells.setPos(cells.slot(k), k);
+            activeChurn = 0;
+            for (int c = 0; c << CHUNK_SHIFT < activeCount; c++) dirtyActive[c >>> 6] |= 1L << c;
+        }
+    }
+
+    void setZoneTiles(int tileRows, int tileCols) {
+        // Weather zones as the farm cuts them (see WeatherZones); only while ticking daily
+        if (wheel != null) throw new IllegalStateException("Weather zones cannot change in event-driven mode");
+        this.tileRows = tileRows;
+        this.tileCols = tileCols;
+        this.zoneCols = (cols + tileCols - 1) / tileCols;
+    }
+
+    private int zoneOf(int i) {
+        if (weatherLogs.length == 1) return 0;
+        return (i / cols / tileRows) * zoneCols + (i % cols) / tileCols;
+    }
+
+    public void setEventDriven(boolean on, int[] waterEffect, int[] fertilizerEffect, int[] healthEffect) {
+        // Switch between the daily tick and the event-driven tick; plants keep their exact state either way
+        // The effect arrays hold the current weather of each zone
+        if (on == (wheel != null)) return;
+        if (on) {
+            wheel = new TimerWheel(size());
+            weatherLogs = new WeatherLog[waterEffect.length];
+            for (int z = 0; z < weatherLogs.length; z++) {
+                weatherLogs[z] = new WeatherLog();
+                weatherLogs[z].record(day + 1, waterEffect[z], fertilizerEffect[z], healthEffect[z]);
+            }
+            for (int k = 0; k < activeCount; k++) {
+                int i = cells.slot(k);
+                touch(i);           // Predicting runs the plant ahead in its own cells, then puts them back as they were
+                cells.setStamp(i, day);
+                reschedule(i);
+            }
+        } else {
+            for (int k = 0; k < activeCount; k++) sync(cells.slot(k));
+            wheel = null;
+            weatherLogs = null;
+        }
+    }
+
+    public boolean isEventDriven() { return wheel != null; }
+
+    DayReport eventTick(int[] waterEffect, int[] fertilizerEffect, int[] healthEffect, double infectionRate,
+                        long seed, int stripeSize) {
+        // One day in event-driven mode: only plants with an event today are touched
+        // Pest hits are drawn exactly as the daily tick draws them (stripes of the active index, one stream per
+        // stripe) and the dead leave the index in the same order, so both modes play the same game from a seed
+        DayReport report = new DayReport(TYPE_COUNT);
+        beginTick();
+
+        boolean[] changed = new boolean[weatherLogs.length];
+        boolean anyChanged = false;
+        for (int z = 0; z < weatherLogs.length; z++) {
+            changed[z] = weatherLogs[z].record(day, waterEffect[z], fertilizerEffect[z], healthEffect[z]);
+            anyChanged |= changed[z];
+        }
+        if (anyChanged) {
+            // New weather: bring every growing plant of those zones up to yesterday and predict again from today
+            for (int k = 0; k < activeCount; k++) {
+                int i = cells.slot(k);
+                if (cells.stage(i) == HARVEST || cells.stage(i) == EMPTY || !changed[zoneOf(i)]) continue;
+                settle(i, day - 1);
+                reschedule(i);
+            }
+        }
+
+        // The dead stay in the index until the pest rolls are done, as they do during the daily tick
+        int fired = wheel.expire(day);
+        for (int e = 0; e < fired; e++) {
+            int i = wheel.firedAt(e);
+            if (cells.crop(i) == NO_CROP) continue;
+            int before = cells.stage(i);
+            if (!settle(i, day)) {
+                report.recordDeath(i);
+                continue;
+            }
+            if (cells.stage(i) == HARVEST && before != HARVEST) report.newlyHarvestable++;
+            reschedule(i);
+        }
+
+        // Pest rolls, visiting only the hits; a plant that died today is passed over, and an infected plant is
+        // settled first because its health now drops faster
+        if (infectionRate > 0) {
+            double logMiss = Math.log1p(-infectionRate);
+            for (int from = 0, s = 0; from < activeCount; from += stripeSize, s++) {
+                SplittableRandom random = GameRandom.stripe(seed, s);
+                int to = Math.min(activeCount, from + stripeSize);
+                for (int k = GameRandom.nextHit(from - 1, random, logMiss); k < to; k = GameRandom.nextHit(k, random, logMiss)) {
+                    int i = cells.slot(k);
+                    settle(i, day);
+                    if (cells.stage(i) == EMPTY) continue;
+                    report.newlyInfected++;
+                    if (!cells.infected(i)) {
+                        cells.setInfected(i, true);
+                        infectedCount++;
+                        markCell(i);
+                        reschedule(i);
+                    }
+                }
+            }
+        }
+
+        // Remove the dead by position, the order the daily tick finds them in
+        int[] dead = report.deadSlots;
+        for (int d = 0; d < report.deaths; d++) dead[d] = cells.pos(dead[d]);
+        Arrays.sort(dead, 0, report.deaths);
+        for (int d = 0; d < report.deaths; d++) dead[d] = cells.slot(dead[d]);
+        for (int d = 0; d < report.deaths; d++) die(dead[d]);
+        sortActive();
+
+        report.cropsAlive = getAliveCount();
+        report.infectedCount = infectedCount;
+        System.arraycopy(stageCount, 0, report.stageCounts, 0, stageCount.length);
+        System.arraycopy(cropCount, 0, report.cropCounts, 0, TYPE_COUNT);
+        report.soilTotal = getSoilTotal();
+        return report;
+    }
+
+    private void sync(int i) {
+        // Event-driven mode: bring a planted cell up to today before it is read or changed
+        if (wheel != null && cells.crop(i) != NO_CROP) {
+            touch(i);
+            settle(i, day);
+        }
+    }
+
+    // Copy-on-write for a save in progress: before slot i changes (touch) or any planted slot may (preserveActive)
+
+    private void touch(int i) {
+        GridSnapshot s = snapshot;
+        if (s != null) s.preserve(i >>> CHUNK_SHIFT);
+    }
+
+    private void preserveActive() {
+        GridSnapshot s = snapshot;
+        if (s == null) return;
+        long[] chunks = new long[dirtyCells.length];
+        for (int k = 0; k < activeCount; k++) {
+            int c = cells.slot(k) >>> CHUNK_SHIFT;
+            chunks[c >>> 6] |= 1L << c;
+        }
+        s.preserveAll(chunks);
+    }
+
+    GridSnapshot snapshot(boolean full) {
+        // The grid as it stands, for a save: the chunks changed since the last save, or all of them
+        // Only while ticking daily, so the store holds today's state. It reads nothing until startSnapshot;
+        // the save releases it when written
+        if (wheel != null) throw new IllegalStateException("Only a daily-ticking grid can be snapshotted");
+        if (snapshot != null) throw new IllegalStateException("A save is already reading the grid");
+        long[] written = takeDirtyCells(), writtenActive = takeDirtyActive();
+        if (full) {
+            Arrays.fill(written, -1L);
+            Arrays.fill(writtenActive, -1L);
+        }
+        return new GridSnapshot(this, cells, day, activeCount, activeChurn, written, writtenActive);
+    }
+
+    void startSnapshot(GridSnapshot s) {
+        // From here every change lets the snapshot copy its chunk first. Switching back to event-driven mode
+        // in between leaves the cells as they were snapshotted (see setEventDriven), so it may come first
+        if (snapshot != null) throw new IllegalStateException("A save is already reading the grid");
+        snapshot = s;
+    }
+
+    void endSnapshot(GridSnapshot s) {
+        if (snapshot == s) snapshot = null;
+    }
+
+    private boolean settle(int i, int toDay) {
+        // Replay the days since the cell's stamp, one weather segment at a time; returns false if it died
+        int from = cells.stamp(i) + 1;
+        if (from > toDay) return true;
+        int before = cells.stage(i);
+        WeatherLog weatherLog = weatherLogs[zoneOf(i)];
+        int s = weatherLog.segmentAt(from);
+        while (from <= toDay) {
+            int end = Math.min(toDay, weatherLog.end(s));
+            from += runPlant(i, end - from + 1, weatherLog.water(s), weatherLog.fertilizer(s), weatherLog.health(s));
+            if (cells.stage(i) == EMPTY && before != EMPTY) break;
+            if (from > end) s++;
+        }
+        cells.setStamp(i, toDay);
+        markCell(i);
+        if (cells.stage(i) != before) {
+            stageCount[before]--;
+            stageCount[cells.stage(i)]++;
+        }
+        return cells.stage(i) != EMPTY || before == EMPTY;
+    }
+
+    private void reschedule(int i) {
+        // Dry-run a growing plant under the latest weather to find the day its stage changes or it dies
+        if (wheel == null) return;
+        int st = cells.stage(i);
+        if (cells.crop(i) == NO_CROP || st == HARVEST || st == EMPTY) {
+            wheel.cancel(i);
+            return;
+        }
+        int w = cells.water(i), f = cells.fertilizer(i), h = cells.health(i), d = cells.daysGrown(i);
+        WeatherLog weatherLog = weatherLogs[zoneOf(i)];
+        int s = weatherLog.last();
+        int n = runPlant(i, HORIZON, weatherLog.water(s), weatherLog.fertilizer(s), weatherLog.health(s));
+        boolean event = cells.stage(i) != st;
+        cells.setWater(i, w);
+        cells.setFertilizer(i, f);
+        cells.setHealth(i, h);
+        cells.setDaysGrown(i, d);
+        cells.setStage(i, st);
+        if (event) wheel.schedule(i, cells.stamp(i) + n);
+        else wheel.cancel(i);
+    }
+
+    private int runPlant(int i, int days, int waterEffect, int fertilizerEffect, int healthEffect) {
+        // Up to `days` days of weather and growth under one weather, the same updates as tickRange. Stops after
+        // a day on which the stage changed or the plant died and returns the days run. Once a day leaves the
+        // levels unchanged every later day will too, so it jumps straight to the next stage threshold
+        int t = cells.crop(i);
+        int wn = WATER_NEED[t], fn = FERTILIZER_NEED[t], g = GROWTH_TIME[t];
+        int damage = cells.infected(i) ? PEST_DAMAGE[t] : 0;
+        int w = cells.water(i), f = cells.fertilizer(i), h = cells.health(i), d = cells.daysGrown(i), st = cells.stage(i);
+        int run = 0;
+        while (run < days) {
+            int w1 = Math.min(10, Math.max(0, w + waterEffect));
+            int f1 = Math.min(10, Math.max(0, f + fertilizerEffect));
+            int h1 = Math.min(100, Math.max(0, h + healthEffect));
+            run++;
+
+            if (st == HARVEST || st == EMPTY) {
+                // Only the weather acts on these; once the levels stop moving nothing changes any more
+                boolean steady = w1 == w && f1 == f && h1 == h;
+                w = w1;
+                f = f1;
+                h = h1;
+                if (steady) run = days;
+                continue;
+            }
+
+            boolean ok = w1 >= wn && f1 >= fn;
+            int w2 = Math.max(0, w1 - wn);
+            int f2 = Math.max(0, f1 - fn);
+            int h2 = (ok ? Math.min(100, h1 + 5) : h1 - 20) - damage;
+            int next = st;
+            if (ok) {
+                if (d < Short.MAX_VALUE) d++;
+                if (d >= g && st == SEED) next = SEEDLING;
+                else if (d >= g * 2 && st == SEEDLING) next = MATURE;
+                else if (d >= g * 3 && st == MATURE) next = HARVEST;
+            }
+            if (h2 <= 0) {
+                w = w2;
+                f = f2;
+                h = 0;
+                st = EMPTY;
+                break;
+            }
+            boolean steady = ok && w2 == w && f2 == f && h2 == h;
+            w = w2;
+            f = f2;
+            h = h2;
+            if (next != st) {
+                st = next;
+                break;
+            }
+            if (steady) {
+                int threshold = g * (st == SEED ? 1 : st == SEEDLING ? 2 : 3);
+                int jump = Math.min(days - run, threshold - 1 - d);
+                if (jump > 0) {
+                    d += jump;
+                    run += jump;
+                }
+            }
+        }
+        cells.setWater(i, w);
+        cells.setFertilizer(i, f);
+        cells.setHealth(i, h);
+        cells.setDaysGrown(i, d);
+        cells.setStage(i, st);
+        return run;
+    }
+
+    // Dirty chunks and the save format. A chunk's cells are written as runs of equal cells: a fallow run is
+    // (varint run << 1, soil settled to the save day), a planted run is (varint run << 1 | 1, type id,
+    // stage | infected << 3, varint daysGrown, water | fertilizer << 4, health, soil). Fallow soil is stored
+    // settled, so a chunk read back on a later day settles it from the day it was written. An active index
+    // chunk is its slot count then zigzag varint deltas between slots (mostly small: the index is kept sorted)
+
+    private void markCell(int i) {
+        int c = i >>> CHUNK_SHIFT;
+        dirtyCells[c >>> 6] |= 1L << c;
+    }
+
+    private void markPosition(int pos) {
+        int c = pos >>> CHUNK_SHIFT;
+        dirtyActive[c >>> 6] |= 1L << c;
+    }
+
+    private void markActiveCells() {
+        // After a bulk pass over the planted cells (which may have run on several threads)
+        for (int k = 0; k < activeCount; k++) markCell(cells.slot(k));
+    }
+
+    void markAllDirty() {
+        for (int c = 0; c < getChunkCount(); c++) {
+            dirtyCells[c >>> 6] |= 1L << c;
+            dirtyActive[c >>> 6] |= 1L << c;
+        }
+    }
+
+    int getChunkCount() { return (size() + CHUNK_CELLS - 1) >>> CHUNK_SHIFT; }
+    int getActiveChunkCount() { return (activeCount + CHUNK_CELLS - 1) >>> CHUNK_SHIFT; }
+
+    private long[] takeDirtyCells() {
+        // The dirty chunks so far, and a clean slate for the next save
+        long[] taken = dirtyCells.clone();
+        Arrays.fill(dirtyCells, 0);
+        return taken;
+    }
+
+    private long[] takeDirtyActive() {
+        long[] taken = dirtyActive.clone();
+        Arrays.fill(dirtyActive, 0);
+        return taken;
+    }
+
+    void clearDirty() {
+        Arrays.fill(dirtyCells, 0);
+        Arrays.fill(dirtyActive, 0);
+    }
+
+    static void encodeCells(CellStore c, int from, int to, int day, ByteBuffer out) {
+        // Cells [from, to) of a store holding the given day's state (a daily-ticking grid, or a chunk copied from one)
+        int i = from;
+        while (i < to) {
+            int run = 1;
+            if (c.crop(i) == NO_CROP) {
+                int value = SoilLedger.soilAt(c.soil(i), c.stamp(i), day);
+                while (i + run < to && c.crop(i + run) == NO_CROP
+                        && SoilLedger.soilAt(c.soil(i + run), c.stamp(i + run), day) == value) run++;
+                Varint.put(out, run << 1);
+                out.put((byte) value);
+            } else {
+                while (i + run < to && samePlant(c, i, i + run)) run++;
+                Varint.put(out, run << 1 | 1);
+                out.put((byte) c.crop(i));
+                out.put((byte) (c.stage(i) | (c.infected(i) ? 1 << 3 : 0)));
+                Varint.put(out, c.daysGrown(i));
+                out.put((byte) (c.water(i) | c.fertilizer(i) << 4));
+                out.put((byte) c.health(i));
+                out.put((byte) c.soil(i));
+            }
+            i += run;
+        }
+    }
+
+    private static boolean samePlant(CellStore c, int i, int j) {
+        return c.crop(j) == c.crop(i) && c.stage(j) == c.stage(i) && c.infected(j) == c.infected(i) && c.daysGrown(j) == c.daysGrown(i)
+                && c.water(j) == c.water(i) && c.fertilizer(j) == c.fertilizer(i) && c.health(j) == c.health(i) && c.soil(j) == c.soil(i);
+    }
+
+    void decodeCells(int chunk, ByteBuffer in, int writtenDay) {
+        // Raw fill of a fresh grid; finishLoad rebuilds everything derived from the cells
+        int from = chunk << CHUNK_SHIFT, to = Math.min(size(), from + CHUNK_CELLS);
+        int i = from;
+        while (i < to) {
+            int header = Varint.get(in);
+            int run = header >>> 1;
+            if (run < 1 || i + run > to) throw new IllegalStateException("Bad run in chunk " + chunk);
+            if ((header & 1) == 0) {
+                byte value = (byte) SoilLedger.soilAt(in.get(), writtenDay, day);
+                for (int k = i; k < i + run; k++) {
+                    cells.setSoil(k, value);
+                    cells.setStamp(k, day);
+                }
+            } else {
+                byte type = in.get();
+                if (type < 0 || type >= TYPE_COUNT) throw new IllegalStateException("Unknown crop id " + type);
+                int flags = in.get();
+                if ((flags & 7) > HARVEST) throw new IllegalStateException("Unknown stage " + (flags & 7));
+                short days = (short) Varint.get(in);
+                int levels = in.get();
+                byte hp = in.get(), land = in.get();
+                for (int k = i; k < i + run; k++) {
+                    cells.setCrop(k, type);
+                    cells.setStage(k, flags & 7);
+                    cells.setInfected(k, (flags & 1 << 3) != 0);
+                    cells.setDaysGrown(k, days);
+                    cells.setWater(k, levels & 15);
+                    cells.setFertilizer(k, levels >>> 4 & 15);
+                    cells.setHealth(k, hp);
+                    cells.setSoil(k, land);
+                    cells.setStamp(k, day);
+                }
+            }
+            i += run;
+        }
+    }
+
+    void decodeActive(int chunk, ByteBuffer in) {
+        int from = chunk << CHUNK_SHIFT;
+        int n = Varint.get(in);
+        if (n > CHUNK_CELLS || from + n > size()) throw new IllegalStateException("Bad active index chunk " + chunk);
+        cells.ensureSlots(from + n);
+        int previous = 0;
+        for (int k = from; k < from + n; k++) {
+            previous += Varint.unzigzag(Varint.get(in));
+            cells.setSlot(k, previous);
+        }
+    }
+
+    void finishLoad(int activeCount, int activeChurn) {
+        // Rebuild the aggregates, positions and soil ledger from the loaded cells, and check the index
+        this.activeCount = activeCount;
+        this.activeChurn = activeChurn;
+        int planted = 0;
+        long[] fallow = new long[SoilLedger.MAX_SOIL + 1];
+        for (int i = 0; i < size(); i++) {
+            if (cells.crop(i) == NO_CROP) {
+                fallow[cells.soil(i)]++;
+                continue;
+            }
+            planted++;
+            cropCount[cells.crop(i)]++;
+            stageCount[cells.stage(i)]++;
+            if (cells.infected(i)) infectedCount++;
+            soilLedger.addPlanted(cells.soil(i));
+        }
+        for (int value = 0; value < fallow.length; value++) {
+            if (fallow[value] > 0) soilLedger.addFallow(value, day, fallow[value]);
+        }
+        if (planted != activeCount) throw new IllegalStateException("Active index does not match the planted cells");
+        cells.clearPositions();
+        for (int k = 0; k < activeCount; k++) {
+            int i = cells.slot(k);
+            if (i < 0 || i >= size() || cells.crop(i) == NO_CROP || cells.pos(i) >= 0) {
+                throw new IllegalStateException("Active index does not match the planted cells");
+            }
+            cells.setPos(i, k);
+        }
+        clearDirty();
+    }
+
+    int getActiveChurn() { return activeChurn; }
+
+    String getStorageName() { return cells.getName(); }
+
+    void force() {
+        // Only while ticking daily, so the store holds today's state
+        cells.force(day, activeCount);
+    }
+
+    void close() {
+        cells.close();
+    }
+
+    public int getAliveCount() {
+        // Planted cells whose plant has not died
+        int alive = 0;
+        for (int st = 0; st < stageCount.length; st++) {
+            if (st != EMPTY) alive += stageCount[st];
+        }
+        return alive;
+    }
+
+    public int getStageCount(Plant.Stage st) { return stageCount[st.ordinal()]; }
+    public int getCropCount(int type) { return cropCount[type]; }
+    public int getTypeCount() { return TYPE_COUNT; }
+    public String getTypeName(int type) { return TYPES[type].getName(); }
+    public PlantType getType(int i) { return cells.crop(i) == NO_CROP ? null : TYPES[cells.crop(i)]; }
+    public int getTypeId(int i) { return cells.crop(i); }
+    public int getInfectedCount() { return infectedCount; }
+    public long getSoilTotal() { return soilLedger.total(day); }
+    public int getActiveCount() { return activeCount; }
+    public int getActiveSlot(int pos) { return cells.slot(pos); }
+    public int getDay() { return day; }
+
+    public boolean isEmpty(int i) {
+        return cells.crop(i) == NO_CROP || cells.stage(i) == EMPTY;
+    }
+
+    public boolean hasCrop(int i) { return cells.crop(i) != NO_CROP; }
+    public int getSoil(int i) {
+        // Fallow soil is settled on read from the days passed since its stamp
+        return cells.crop(i) == NO_CROP ? SoilLedger.soilAt(cells.soil(i), cells.stamp(i), day) : cells.soil(i);
+    }
+
+    public int getWaterNeed(int i) { return WATER_NEED[cells.crop(i)]; }
+    public int getFertilizerNeed(int i) { return FERTILIZER_NEED[cells.crop(i)]; }
+    public Plant.Stage getStage(int i) { return STAGES[cells.stage(i)]; }
+    public int getDaysGrown(int i) { sync(i); return cells.daysGrown(i); }
+    public int getWaterLevel(int i) { sync(i); return cells.water(i); }
+    public int getFertilizerLevel(int i) { sync(i); return cells.fertilizer(i); }
+    public int getHealth(int i) { sync(i); return cells.health(i); }
+    public boolean isInfected(int i) { return cells.infected(i); }
+
+    public int getRows() { return rows; }
+    public int getCols() { return cols; }
+    public int size() { return rows * cols; }
+}
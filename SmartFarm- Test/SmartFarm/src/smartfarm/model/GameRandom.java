@@ -0,0 +1,73 @@
+// Class GameRandom: Every random draw in a game comes from here, derived from one game seed
+// Streams are counter-based: the stream for (subsystem, day) is seeded by hashing (seed, subsystem, day),
+// and stripe streams of a parallel tick by hashing (tick seed, stripe). No stream depends on how many
+// numbers another stream (or an earlier day) used, so the same seed and the same player actions
+// replay a game exactly, and threads never share generator state
+package smartfarm.model;
+
+import java.util.SplittableRandom;
+
+public class GameRandom {
+    public enum Stream { WEATHER, PEST, INFECTION, TICK }
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+
+    // The current day's stream of each subsystem (game thread only)
+    private final SplittableRandom[] daily = new SplittableRandom[Stream.values().length];
+    private final int[] dailyDay = new int[Stream.values().length];
+
+    public GameRandom(long seed) {
+        this.seed = seed;
+    }
+
+    public static long newSeed() {
+        // Fresh seed for a new game
+        return new SplittableRandom().nextLong();
+    }
+
+    public long getSeed() { return seed; }
+
+    public SplittableRandom stream(Stream stream, int day) {
+        // Draws within one day continue one stream; the next day starts from its own derived seed
+        int s = stream.ordinal();
+        if (daily[s] == null || dailyDay[s] != day) {
+            daily[s] = new SplittableRandom(seedFor(stream, day));
+            dailyDay[s] = day;
+        }
+        return daily[s];
+    }
+
+    public long seedFor(Stream stream, int day) {
+        return derive(derive(seed, stream.ordinal()), day);
+    }
+
+    public static SplittableRandom stripe(long seed, int stripe) {
+        // Independent stream for one stripe of a parallel pass
+        return new SplittableRandom(derive(seed, stripe));
+    }
+
+    public static int skip(SplittableRandom random, double logMiss) {
+        // Bernoulli(p) trials to pass over before the next success, with logMiss = log(1 - p): a geometric
+        // draw, so n trials cost one draw per success instead of one per trial (and the count is Binomial(n, p))
+        double failures = Math.log(1.0 - random.nextDouble()) / logMiss;
+        return failures >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) failures;
+    }
+
+    static int nextHit(int pos, SplittableRandom random, double logMiss) {
+        // Position of the next success after pos, saturating instead of overflowing
+        return (int) Math.min(Integer.MAX_VALUE, (long) pos + 1 + skip(random, logMiss));
+    }
+
+    private static long derive(long seed, long counter) {
+        return mix(seed + GOLDEN * (counter + 1));
+    }
+
+    private static long mix(long z) {
+        // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
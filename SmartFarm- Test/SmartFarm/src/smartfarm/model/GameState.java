@@ -3,9 +3,14 @@ package smartfarm.model;
 
 import smartfarm.exception.GameException;
 import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.rules.RulePlan;
+import smartfarm.model.rules.RuleReport;
+import smartfarm.model.weather.Weather;
 import smartfarm.util.Constants;
 
-import java.util.Random;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
 
 public class GameState {
     private int money;
@@ -14,63 +19,386 @@ public class GameState {
     private int fertilizerStock;
     private int pesticideStock;
     private Farm farm;
-    private Random random = new Random();
+    private GameRandom random;
+    private int lastHarvestValue;   // Money earned by the last successful tryHarvest
+    private RulePlan rules = RulePlan.EMPTY;   // Standing orders run at the start of every day
+    private Journal journal;        // Records the actions below once they go through; forks have none
+    private History history;        // Statistics of every day played; forks have none
 
     public GameState(int rows, int cols) {
+        this(rows, cols, GameRandom.newSeed());
+    }
+
+    public GameState(int rows, int cols, long seed) {
+        // The same seed and the same actions replay the same game
+        this(new GameRandom(seed));
+        this.farm = new Farm(rows, cols, random);
+    }
+
+    public GameState(int rows, int cols, long seed, Path storeFile) throws GameException {
+        // The same game with the farm's cells kept in a memory-mapped file rather than on the heap
+        this(new GameRandom(seed));
+        this.farm = new Farm(rows, cols, random, storeFile);
+    }
+
+    private GameState(GameRandom random) {
         this.money = 1000;
         this.day = 1;
         this.waterStock = 100;
         this.fertilizerStock = 60;
         this.pesticideStock = 20;
-        this.farm = new Farm(rows, cols);
+        this.random = random;
+        this.history = new History();
+    }
+
+    private GameState(GameState other, long seed) {
+        this.money = other.money;
+        this.day = other.day;
+        this.waterStock = other.waterStock;
+        this.fertilizerStock = other.fertilizerStock;
+        this.pesticideStock = other.pesticideStock;
+        this.lastHarvestValue = other.lastHarvestValue;
+        this.rules = other.rules;           // Immutable once built
+        this.random = new GameRandom(seed);
+        this.farm = new Farm(other.farm, random);
+    }
+
+    GameState(Farm farm, GameRandom random, int money, int day, int waterStock, int fertilizerStock,
+              int pesticideStock, int lastHarvestValue, RulePlan rules) {
+        // A game read back from a save file (see SaveFile)
+        this.farm = farm;
+        this.random = random;
+        this.money = money;
+        this.day = day;
+        this.waterStock = waterStock;
+        this.fertilizerStock = fertilizerStock;
+        this.pesticideStock = pesticideStock;
+        this.lastHarvestValue = lastHarvestValue;
+        this.rules = rules;
+        this.history = new History();   // Not saved: it starts over from the day loaded
+    }
+
+    public GameState fork(long seed) {
+        // An independent copy of the game as it stands today, whose future weather and pests are drawn from
+        // another seed: a possible future for an AI to try moves on. fork(getSeed()) replays this game's own future
+        return new GameState(this, seed);
+    }
+
+    public long stateHash() {
+        // Compact 64-bit key of the position (day, money, stock, every cell and the weather) for transposition tables
+        long h = farm.stateHash();
+        h = (h ^ money) * 0x9E3779B97F4A7C15L;
+        h = (h ^ ((long) waterStock << 40 | (long) fertilizerStock << 20 | pesticideStock)) * 0x9E3779B97F4A7C15L;
+        return h ^ h >>> 31;
+    }
+
+    private SplittableRandom pestRandom() {
+        return random.stream(GameRandom.Stream.PEST, day);
     }
 
     public boolean checkPestAttack() {
-        return random.nextDouble() < Constants.PEST_ATTACK_PROBABILITY;
+        return pestRandom().nextDouble() < Constants.PEST_ATTACK_PROBABILITY;
     }
 
     public int executePestAttack() {
-        double infectionRate = 0.1 + random.nextDouble() * 0.2;
-        return farm.infectRandomCrops(infectionRate);
+        // A pest attack outside the daily tick, drawn from today's pest stream like the tick's own
+        double infectionRate = 0.1 + pestRandom().nextDouble() * 0.2;
+        int infected = farm.infectRandomCrops(infectionRate);
+        if (journal != null) journal.pest(day);
+        return infected;
     }
 
-    public void buySeed(Plant plant) throws GameException {
-        if (money < plant.getSeedCost()) throw new GameException(Constants.NOT_ENOUGH_MONEY);
-        money -= plant.getSeedCost();
+    public void setWeatherZones(int tileRows, int tileCols) {
+        // Split the farm into weather tiles (see Farm.setWeatherZones)
+        farm.setWeatherZones(tileRows, tileCols);
+        if (journal != null) journal.zones(tileRows, tileCols);
     }
 
-    public void buyResource(String type, int amount, int cost) throws GameException {
-        if (money < cost) throw new GameException(Constants.NOT_ENOUGH_MONEY);
+    // Non-throwing actions for bots and bulk play: each returns OK after doing the whole action, or the reason
+    // it was refused, in which case nothing was spent or changed. The journal records the whole actions
+    // (tryPlant, tryWater, ..., runBulk), not the stock they are made of
+
+    // Stock on its own, for callers that do the cell side themselves; each is journaled as a plain change of
+    // stock, since no cell action replays it
+    static final int MONEY = 0, WATER = 1, FERTILIZER = 2, PESTICIDE = 3;
+
+    public ActionResult tryBuySeed(Plant plant) { return tryChangeStock(MONEY, -plant.getSeedCost()); }
+    public ActionResult tryUseWater(int amount) { return tryChangeStock(WATER, -amount); }
+    public ActionResult tryUseFertilizer(int amount) { return tryChangeStock(FERTILIZER, -amount); }
+    public ActionResult tryUsePesticide() { return tryChangeStock(PESTICIDE, -1); }
+
+    ActionResult tryChangeStock(int stock, int delta) {
+        ActionResult result = change(stock, delta);
+        if (journal != null && result.isOk()) journal.stock(stock, delta);
+        return result;
+    }
+
+    private ActionResult change(int stock, int delta) {
+        // The stock never goes below zero
+        switch (stock) {
+            case MONEY:
+                if (money + delta < 0) return ActionResult.NOT_ENOUGH_MONEY;
+                money += delta;
+                break;
+            case WATER:
+                if (waterStock + delta < 0) return ActionResult.NOT_ENOUGH_WATER;
+                waterStock += delta;
+                break;
+            case FERTILIZER:
+                if (fertilizerStock + delta < 0) return ActionResult.NOT_ENOUGH_FERTILIZER;
+                fertilizerStock += delta;
+                break;
+            case PESTICIDE:
+                if (pesticideStock + delta < 0) return ActionResult.NOT_ENOUGH_PESTICIDE;
+                pesticideStock += delta;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown stock " + stock);
+        }
+        return ActionResult.OK;
+    }
+
+    public ActionResult tryBuyResource(String type, int amount, int cost) {
+        if (money < cost) return ActionResult.NOT_ENOUGH_MONEY;
         money -= cost;
         switch (type) {
             case "WATER": waterStock += amount; break;
             case "FERTILIZER": fertilizerStock += amount; break;
             case "PESTICIDE": pesticideStock += amount; break;
         }
+        if (journal != null) journal.buy(type, amount, cost);
+        return ActionResult.OK;
+    }
+
+    public ActionResult tryPlant(int row, int col, PlantType type) {
+        // Buy a seed and sow it
+        if (type == null) return ActionResult.UNKNOWN_CROP;
+        Cell cell = farm.cellAt(row, col);
+        if (cell == null) return ActionResult.INVALID_POSITION;
+        if (!cell.isEmpty()) return ActionResult.CELL_NOT_EMPTY;
+        if (cell.getSoilQuality() < 20) return ActionResult.SOIL_TOO_LOW;
+        if (money < type.getSeedCost()) return ActionResult.NOT_ENOUGH_MONEY;
+        money -= type.getSeedCost();
+        cell.tryPlant(type.newPlant());
+        if (journal != null) journal.plant(row, col, type);
+        return ActionResult.OK;
+    }
+
+    public ActionResult tryWater(int row, int col) {
+        // One use of water from the stock on the crop
+        Cell cell = farm.cellAt(row, col);
+        if (cell == null) return ActionResult.INVALID_POSITION;
+        if (cell.isEmpty()) return ActionResult.NO_PLANT_TO_WATER;
+        ActionResult result = change(WATER, -Constants.WATER_AMOUNT_PER_USE);
+        return recorded(result.isOk() ? cell.tryWater(Constants.WATER_AMOUNT_PER_USE) : result, Journal.WATER, row, col);
+    }
+
+    public ActionResult tryFertilize(int row, int col) {
+        Cell cell = farm.cellAt(row, col);
+        if (cell == null) return ActionResult.INVALID_POSITION;
+        if (cell.isEmpty()) return ActionResult.NO_PLANT_TO_FERTILIZE;
+        ActionResult result = change(FERTILIZER, -Constants.FERTILIZER_AMOUNT_PER_USE);
+        return recorded(result.isOk() ? cell.tryFertilize(Constants.FERTILIZER_AMOUNT_PER_USE) : result,
+                Journal.FERTILIZE, row, col);
+    }
+
+    public ActionResult tryTreatPest(int row, int col) {
+        Cell cell = farm.cellAt(row, col);
+        if (cell == null) return ActionResult.INVALID_POSITION;
+        if (cell.isEmpty()) return ActionResult.NO_PLANT_TO_TREAT;
+        if (!cell.isInfected()) return ActionResult.NOT_INFECTED;
+        ActionResult result = change(PESTICIDE, -1);
+        return recorded(result.isOk() ? cell.tryTreatPest() : result, Journal.TREAT, row, col);
+    }
+
+    public ActionResult tryHarvest(int row, int col) {
+        // Harvest and earn the crop's value (see getLastHarvestValue)
+        Cell cell = farm.cellAt(row, col);
+        if (cell == null) return ActionResult.INVALID_POSITION;
+        ActionResult result = cell.canHarvest();
+        if (!result.isOk()) return result;
+        lastHarvestValue = cell.harvestNow();
+        money += lastHarvestValue;
+        return recorded(ActionResult.OK, Journal.HARVEST, row, col);
+    }
+
+    private ActionResult recorded(ActionResult result, byte kind, int row, int col) {
+        if (journal != null && result.isOk()) journal.cell(kind, row, col);
+        return result;
+    }
+
+    // Bulk actions: one stock reservation for the whole batch and a single row-major pass over the target cells.
+    // When the stock runs out the batch keeps what it managed and reports the cells it could not reach
+
+    public BulkResult waterAll(BulkTarget target) { return runBulk(BulkAction.WATER, target); }
+    public BulkResult fertilizeAll(BulkTarget target) { return runBulk(BulkAction.FERTILIZE, target); }
+    public BulkResult treatAllPests(BulkTarget target) { return runBulk(BulkAction.TREAT_PEST, target); }
+    public BulkResult harvestAll(BulkTarget target) { return runBulk(BulkAction.HARVEST, target); }
+
+    public BulkResult runBulk(BulkAction action, BulkTarget target) {
+        if (!target.fits(farm)) return new BulkResult(action, ActionResult.INVALID_POSITION, 0, 0, 0);
+        FarmGrid grid = farm.getGrid();
+        PlantType type = target.getType();
+
+        // Uses the stock pays for, and an upper bound on the cells that qualify so the scan can stop early
+        int budget, remaining;
+        switch (action) {
+            case WATER:
+                budget = waterStock / Constants.WATER_AMOUNT_PER_USE;
+                remaining = type != null ? grid.getCropCount(type.getId()) : grid.getActiveCount();
+                break;
+            case FERTILIZE:
+                budget = fertilizerStock / Constants.FERTILIZER_AMOUNT_PER_USE;
+                remaining = type != null ? grid.getCropCount(type.getId()) : grid.getActiveCount();
+                break;
+            case TREAT_PEST:
+                budget = pesticideStock;
+                remaining = grid.getInfectedCount();
+                break;
+            default:
+                budget = Integer.MAX_VALUE;
+                remaining = grid.getStageCount(Plant.Stage.HARVEST);
+                break;
+        }
+
+        int lastRow = Math.min(target.getLastRow(), farm.getRows() - 1);
+        int lastCol = Math.min(target.getLastCol(), farm.getCols() - 1);
+        int applied = 0, missed = 0, earned = 0;
+        for (int row = target.getFirstRow(); row <= lastRow && remaining > 0; row++) {
+            int from = grid.index(row, target.getFirstCol()), to = grid.index(row, lastCol);
+            for (int i = from; i <= to && remaining > 0; i++) {
+                if (grid.isEmpty(i) || (type != null && grid.getType(i) != type)) continue;
+                if (action == BulkAction.TREAT_PEST && !grid.isInfected(i)) continue;
+                if (action == BulkAction.HARVEST && grid.getStage(i) != Plant.Stage.HARVEST) continue;
+                remaining--;
+                if (applied == budget) {
+                    missed++;
+                    continue;
+                }
+                applied++;
+                switch (action) {
+                    case WATER:
+                        grid.water(i, Constants.WATER_AMOUNT_PER_USE);
+                        break;
+                    case FERTILIZE:
+                        grid.fertilize(i, Constants.FERTILIZER_AMOUNT_PER_USE);
+                        grid.improveSoil(i, 5);
+                        break;
+                    case TREAT_PEST:
+                        grid.treatPest(i);
+                        break;
+                    default:
+                        earned += grid.harvest(i);
+                        break;
+                }
+            }
+        }
+
+        // Settle the reservation in one go
+        switch (action) {
+            case WATER: waterStock -= applied * Constants.WATER_AMOUNT_PER_USE; break;
+            case FERTILIZE: fertilizerStock -= applied * Constants.FERTILIZER_AMOUNT_PER_USE; break;
+            case TREAT_PEST: pesticideStock -= applied; break;
+            default: money += earned; break;
+        }
+        if (journal != null) journal.bulk(action, target);
+        return new BulkResult(action, missed > 0 ? action.getShortage() : ActionResult.OK, applied, missed, earned);
+    }
+
+    // Throwing versions for the UI
+
+    public void buySeed(Plant plant) throws GameException {
+        if (!tryBuySeed(plant).isOk()) throw new GameException(Constants.NOT_ENOUGH_MONEY);
+    }
+
+    public void buyResource(String type, int amount, int cost) throws GameException {
+        if (!tryBuyResource(type, amount, cost).isOk()) throw new GameException(Constants.NOT_ENOUGH_MONEY);
     }
 
     public void useWater(int amount) throws GameException {
-        if (waterStock < amount) throw new GameException("Not enough water!");
-        waterStock -= amount;
+        if (!tryUseWater(amount).isOk()) throw new GameException("Not enough water!");
     }
 
     public void useFertilizer(int amount) throws GameException {
-        if (fertilizerStock < amount) throw new GameException("Not enough fertilizer!");
-        fertilizerStock -= amount;
+        if (!tryUseFertilizer(amount).isOk()) throw new GameException("Not enough fertilizer!");
     }
 
     public void usePesticide() throws GameException {
-        if (pesticideStock <= 0) throw new GameException("Not enough pesticide!");
-        pesticideStock--;
+        if (!tryUsePesticide().isOk()) throw new GameException("Not enough pesticide!");
     }
 
     public void earnMoney(int amount) {
-        money += amount;
+        tryChangeStock(MONEY, amount);
     }
 
-    public void advanceDay() {
+    public DayReport advanceDay() {
+        if (journal != null) journal.advance(day, 1);
+        return nextDay();
+    }
+
+    private DayReport nextDay() {
         day++;
-        farm.updateDaily();
+        // Decide today's pest attack up front so the infection rolls happen inside the tick pass
+        boolean pestAttack = checkPestAttack();
+        double infectionRate = pestAttack ? 0.1 + pestRandom().nextDouble() * 0.2 : 0;
+        RuleReport automation = rules.isEmpty() ? null : runRules();
+        DayReport report = farm.updateDaily(infectionRate, random.seedFor(GameRandom.Stream.TICK, day));
+        report.day = day;
+        report.pestAttack = pestAttack;
+        report.automation = automation;
+
+        // The new weather takes effect from the next tick
+        report.weatherChanged = farm.advanceWeather();
+        report.weather = farm.getCurrentWeather();
+        if (history != null) history.record(this, report);
+        return report;
+    }
+
+    private RuleReport runRules() {
+        // The rules act before the tick, like a player's actions during the day, and pay from the stock in one go
+        RuleReport automation = rules.run(farm.getGrid(), waterStock, fertilizerStock, pesticideStock);
+        waterStock -= automation.getWaterUsed();
+        fertilizerStock -= automation.getFertilizerUsed();
+        pesticideStock -= automation.getPesticideUsed();
+        money += automation.getEarned();
+        return automation;
+    }
+
+    public SkipReport advanceDays(int days) throws GameException {
+        // Run several days back-to-back without touching the UI; stops early if the game ends
+        if (days < 1) throw new GameException("Number of days must be at least 1!");
+        if (journal != null) journal.advance(day, days);
+        SkipReport skip = new SkipReport();
+        int moneyBefore = money;
+
+        // Long skips only visit plants on the days their stage changes or they die; the event-driven tick draws
+        // the same pests as the daily one, so a skip plays the same game as advancing day by day
+        boolean wasEventDriven = farm.isEventDriven();
+        if (days >= Constants.EVENT_DRIVEN_SKIP_DAYS) farm.setEventDriven(true);
+        try {
+            for (int d = 0; d < days; d++) {
+                Weather tickWeather = farm.getCurrentWeather();
+                skip.add(tickWeather, nextDay());
+                if (isGameOver()) {
+                    skip.gameOver = true;
+                    break;
+                }
+            }
+        } finally {
+            farm.setEventDriven(wasEventDriven);
+        }
+        skip.moneyDelta = money - moneyBefore;
+        return skip;
+    }
+
+    public void setRules(RulePlan rules) {
+        this.rules = rules != null ? rules : RulePlan.EMPTY;
+        if (journal != null) journal.rules(this.rules);
+    }
+
+    public boolean isGameOver() {
+        // No money for seeds and nothing left growing
+        return money < 5 && farm.getTotalCrops() == 0;
     }
 
     public String getStats() {
@@ -82,8 +410,14 @@ public class GameState {
 
     public Farm getFarm() { return farm; }
     public int getDay() { return day; }
+    public long getSeed() { return random.getSeed(); }
     public int getMoney() { return money; }
+    public int getLastHarvestValue() { return lastHarvestValue; }
+    public RulePlan getRules() { return rules; }
     public int getWaterStock() { return waterStock; }
     public int getFertilizerStock() { return fertilizerStock; }
     public int getPesticideStock() { return pesticideStock; }
+    public Journal getJournal() { return journal; }
+    public History getHistory() { return history; }
+    void setJournal(Journal journal) { this.journal = journal; }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+// Class GridSnapshot: Point-in-time view of a FarmGrid for a save written on another thread
+// Taking one costs next to nothing: it freezes the grid's counters, copies the dirty chunks of the active
+// index (four bytes per planted cell at most) and registers itself with the grid. The cell chunks stay where
+// they are and are copied on write: before the game changes a cell of a chunk the snapshot still has to read,
+// the grid has the snapshot copy that chunk as it was (FarmGrid.touch); a tick, which changes every planted
+// chunk from several threads, has it copy all of them up front. The writer visits its chunks in order, from
+// the copy if there is one and from the live grid otherwise, under the snapshot's lock so the game cannot
+// change a chunk while it is read. Chunks the save does not write are never visited or copied
+package smartfarm.model;
+
+import java.nio.ByteBuffer;
+
+final class GridSnapshot {
+    private final FarmGrid grid;
+    private final CellStore cells;
+    final int rows, cols, day, activeCount, activeChurn;
+    private final int chunkCount;
+    private final long[] written;           // Cell chunks the save writes
+    private final long[] writtenActive;     // Active index chunks the save writes...
+    private final int[][] activeChunks;     // ...copied when the snapshot was taken
+
+    // Under the lock: chunks already visited, and copies of the chunks changed before their visit
+    private final long[] visited;
+    private final CellStore[] copies;
+    private int copiedChunks;
+
+    GridSnapshot(FarmGrid grid, CellStore cells, int day, int activeCount, int activeChurn, long[] written,
+                 long[] writtenActive) {
+        this.grid = grid;
+        this.cells = cells;
+        this.rows = grid.getRows();
+        this.cols = grid.getCols();
+        this.day = day;
+        this.activeCount = activeCount;
+        this.activeChurn = activeChurn;
+        this.chunkCount = grid.getChunkCount();
+        this.written = written;
+        this.writtenActive = writtenActive;
+        this.visited = new long[written.length];
+        this.copies = new CellStore[chunkCount];
+
+        this.activeChunks = new int[getActiveChunkCount()][];
+        for (int c = 0; c < activeChunks.length; c++) {
+            if (!isSet(writtenActive, c)) continue;
+            int from = c << FarmGrid.CHUNK_SHIFT, to = Math.min(activeCount, from + FarmGrid.CHUNK_CELLS);
+            int[] slots = new int[to - from];
+            for (int k = from; k < to; k++) slots[k - from] = cells.slot(k);
+            activeChunks[c] = slots;
+        }
+    }
+
+    private static boolean isSet(long[] bits, int c) {
+        return (bits[c >>> 6] & 1L << c) != 0;
+    }
+
+    private boolean needs(int c) {
+        return isSet(written, c) && !isSet(visited, c);
+    }
+
+    int getChunkCount() { return chunkCount; }
+    int getActiveChunkCount() { return (activeCount + FarmGrid.CHUNK_CELLS - 1) >>> FarmGrid.CHUNK_SHIFT; }
+    boolean isWritten(int c) { return isSet(written, c); }
+    boolean isActiveWritten(int c) { return isSet(writtenActive, c); }
+    synchronized int getCopiedChunks() { return copiedChunks; }
+
+    // Copy-on-write, called by the grid before it changes a cell
+
+    synchronized void preserve(int c) {
+        if (copies[c] == null && needs(c)) {
+            int from = c << FarmGrid.CHUNK_SHIFT;
+            copies[c] = CellStore.heapRange(cells, from, Math.min(grid.size(), from + FarmGrid.CHUNK_CELLS) - from);
+            copiedChunks++;
+        }
+    }
+
+    synchronized void preserveAll(long[] chunks) {
+        // The chunks set in the bitmap, in one go
+        for (int w = 0; w < chunks.length; w++) {
+            for (long bits = chunks[w]; bits != 0; bits &= bits - 1) preserve(w << 6 | Long.numberOfTrailingZeros(bits));
+        }
+    }
+
+    // Reading, in chunk order, on the writer's thread
+
+    synchronized void visit(int c, ByteBuffer out) {
+        // Encodes chunk c (see FarmGrid.encodeCells)
+        int from = c << FarmGrid.CHUNK_SHIFT, to = Math.min(grid.size(), from + FarmGrid.CHUNK_CELLS);
+        CellStore store = copies[c];
+        int base = store != null ? 0 : from;
+        if (store == null) store = cells;
+        FarmGrid.encodeCells(store, base, base + to - from, day, out);
+        visited[c >>> 6] |= 1L << c;
+        copies[c] = null;
+    }
+
+    void encodeActive(int c, ByteBuffer out) {
+        int[] slots = activeChunks[c];
+        Varint.put(out, slots.length);
+        int previous = 0;
+        for (int slot : slots) {
+            Varint.put(out, Varint.zigzag(slot - previous));
+            previous = slot;
+        }
+    }
+
+    void release() {
+        // The save is done with the grid
+        grid.endSnapshot(this);
+    }
+}
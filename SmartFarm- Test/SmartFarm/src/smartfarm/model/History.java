@@ -0,0 +1,168 @@
+// Class History: The game's statistics day by day (money, stock, crops, soil, weather), for charts
+// Every series is a ring buffer of primitives indexed by the day's record number, long for money and soil and
+// int for the rest, so recording a day is a few array stores and allocates nothing. The buffers start small
+// and double up to Constants.HISTORY_DAYS, after which the oldest days are overwritten.
+// Each series also keeps the min and max of every block of 64 days and every superblock of 4096, so the
+// min/max of any range (decimate) reads at most 63 days and 63 blocks at each end plus the superblocks in
+// between: a chart costs about the same whether it covers a hundred days or a million
+package smartfarm.model;
+
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.weather.Weather;
+import smartfarm.model.weather.WeatherEngine;
+import smartfarm.util.Constants;
+
+import java.util.Arrays;
+
+public final class History {
+    // Series ids; crop type t is FIRST_CROP + t
+    public static final int MONEY = 0, SOIL = 1;                   // Kept as long
+    public static final int WATER = 2, FERTILIZER = 3, PESTICIDE = 4, CROPS = 5, HARVESTABLE = 6, INFECTED = 7,
+            WEATHER = 8, FIRST_CROP = 9;                              // Kept as int
+    private static final int LONG_SERIES = 2;
+    private static final String[] NAMES = {"Money", "Soil total", "Water", "Fertilizer", "Pesticide", "Crops",
+            "Ready to harvest", "Infected", "Weather"};
+
+    private static final int BLOCK_SHIFT = 6;           // 64 days per block
+    private static final int SUPER_SHIFT = 12;          // 4096 days per superblock
+    private static final int INITIAL_CAPACITY = 1 << SUPER_SHIFT;
+
+    private static final PlantType[] TYPES = PlantType.values();
+    private static final int HARVEST_STAGE = Plant.Stage.HARVEST.ordinal();
+
+    private final int seriesCount = FIRST_CROP + TYPES.length;
+    private final int maxCapacity;
+    private int capacity;
+    private long[][] longs;
+    private int[][] ints;
+    private long[][] blockMin, blockMax, superMin, superMax;
+    private long count;             // Days recorded, including those overwritten since
+    private int firstDay;           // Day of record 0
+
+    public History() {
+        this(Constants.HISTORY_DAYS);
+    }
+
+    public History(int maxDays) {
+        // maxDays is rounded up to a power of two, and to at least one superblock
+        this.maxCapacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, maxDays - 1)) << 1);
+        this.capacity = INITIAL_CAPACITY;
+        this.longs = new long[LONG_SERIES][capacity];
+        this.ints = new int[seriesCount - LONG_SERIES][capacity];
+        this.blockMin = new long[seriesCount][capacity >>> BLOCK_SHIFT];
+        this.blockMax = new long[seriesCount][capacity >>> BLOCK_SHIFT];
+        this.superMin = new long[seriesCount][capacity >>> SUPER_SHIFT];
+        this.superMax = new long[seriesCount][capacity >>> SUPER_SHIFT];
+    }
+
+    void record(GameState game, DayReport report) {
+        // The day that just ended, as the report and the game show it
+        if (count == capacity && capacity < maxCapacity) grow();
+        if (count == 0) firstDay = report.day;
+        put(MONEY, game.getMoney());
+        put(SOIL, report.soilTotal);
+        put(WATER, game.getWaterStock());
+        put(FERTILIZER, game.getFertilizerStock());
+        put(PESTICIDE, game.getPesticideStock());
+        put(CROPS, report.cropsAlive);
+        put(HARVESTABLE, report.stageCounts[HARVEST_STAGE]);
+        put(INFECTED, report.infectedCount);
+        put(WEATHER, report.weather != null ? report.weather.getId() : 0);
+        for (int t = 0; t < TYPES.length; t++) put(FIRST_CROP + t, report.cropCounts[t]);
+        count++;
+    }
+
+    private void put(int s, long value) {
+        int k = (int) count & capacity - 1;
+        if (s < LONG_SERIES) longs[s][k] = value;
+        else ints[s - LONG_SERIES][k] = (int) value;
+        fold(blockMin[s], blockMax[s], count >>> BLOCK_SHIFT, (count & (1 << BLOCK_SHIFT) - 1) == 0, value);
+        fold(superMin[s], superMax[s], count >>> SUPER_SHIFT, (count & (1 << SUPER_SHIFT) - 1) == 0, value);
+    }
+
+    private static void fold(long[] min, long[] max, long block, boolean first, long value) {
+        int b = (int) block & min.length - 1;
+        if (first || value < min[b]) min[b] = value;
+        if (first || value > max[b]) max[b] = value;
+    }
+
+    private void grow() {
+        // Nothing has been overwritten yet, so every record keeps its index
+        capacity *= 2;
+        for (int s = 0; s < LONG_SERIES; s++) longs[s] = Arrays.copyOf(longs[s], capacity);
+        for (int s = 0; s < ints.length; s++) ints[s] = Arrays.copyOf(ints[s], capacity);
+        for (int s = 0; s < seriesCount; s++) {
+            blockMin[s] = Arrays.copyOf(blockMin[s], capacity >>> BLOCK_SHIFT);
+            blockMax[s] = Arrays.copyOf(blockMax[s], capacity >>> BLOCK_SHIFT);
+            superMin[s] = Arrays.copyOf(superMin[s], capacity >>> SUPER_SHIFT);
+            superMax[s] = Arrays.copyOf(superMax[s], capacity >>> SUPER_SHIFT);
+        }
+    }
+
+    private long oldest() {
+        return Math.max(0, count - capacity);
+    }
+
+    private long value(int s, long k) {
+        int i = (int) k & capacity - 1;
+        return s < LONG_SERIES ? longs[s][i] : ints[s - LONG_SERIES][i];
+    }
+
+    // Reading, by day: days from getFirstDay() to getLastDay() are kept
+
+    public boolean isEmpty() { return count == 0; }
+    public int getFirstDay() { return (int) (firstDay + oldest()); }
+    public int getLastDay() { return (int) (firstDay + count - 1); }
+    public int getDays() { return (int) (count - oldest()); }
+    public int getSeriesCount() { return seriesCount; }
+
+    public static String getName(int series) {
+        return series < FIRST_CROP ? NAMES[series] : TYPES[series - FIRST_CROP].getName();
+    }
+
+    public long get(int series, int day) {
+        long k = day - (long) firstDay;
+        if (k < oldest() || k >= count) throw new IndexOutOfBoundsException("Day " + day + " is not in the history");
+        return value(series, k);
+    }
+
+    public Weather getWeather(int day) {
+        return WeatherEngine.getState((int) get(WEATHER, day));
+    }
+
+    public int decimate(int series, int fromDay, int toDay, int buckets, long[] min, long[] max) {
+        // Days [fromDay, toDay] (clamped to what is kept) split into at most `buckets` equal runs, with each
+        // run's min and max in min[b] and max[b]; returns the number of runs
+        long from = Math.max(oldest(), fromDay - (long) firstDay);
+        long to = Math.min(count, toDay - (long) firstDay + 1);
+        if (from >= to || buckets < 1) return 0;
+        long n = to - from;
+        int runs = (int) Math.min(buckets, n);
+        for (int b = 0; b < runs; b++) {
+            long a = from + n * b / runs, z = from + n * (b + 1) / runs;
+            long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+            long k = a;
+            while (k < z) {
+                if ((k & (1 << SUPER_SHIFT) - 1) == 0 && k + (1 << SUPER_SHIFT) <= z) {
+                    int i = (int) (k >>> SUPER_SHIFT) & superMin[series].length - 1;
+                    lo = Math.min(lo, superMin[series][i]);
+                    hi = Math.max(hi, superMax[series][i]);
+                    k += 1 << SUPER_SHIFT;
+                } else if ((k & (1 << BLOCK_SHIFT) - 1) == 0 && k + (1 << BLOCK_SHIFT) <= z) {
+                    int i = (int) (k >>> BLOCK_SHIFT) & blockMin[series].length - 1;
+                    lo = Math.min(lo, blockMin[series][i]);
+                    hi = Math.max(hi, blockMax[series][i]);
+                    k += 1 << BLOCK_SHIFT;
+                } else {
+                    long v = value(series, k++);
+                    lo = Math.min(lo, v);
+                    hi = Math.max(hi, v);
+                }
+            }
+            min[b] = lo;
+            max[b] = hi;
+        }
+        return runs;
+    }
+}
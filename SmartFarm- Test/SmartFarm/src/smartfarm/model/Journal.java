@@ -0,0 +1,591 @@
+// Class Journal: Write-ahead log of the player's actions since the last save
+// GameState appends one small record per action that changed the game (plant, water, fertilize, treat,
+// harvest, buy, bulk action, new rules, stock spent or earned on its own, new weather tiles, a pest attack
+// called outside the tick) and one per day advanced, with the day it started from; the weather and pests
+// need nothing more, as they are drawn from the game seed by day (see GameRandom). Appending only
+// encodes the record into a buffer: a background writer takes whatever has built up, writes it as one frame
+// (length, CRC32, records) and syncs the file, so the records that arrive during a sync are committed
+// together by the next one and the UI thread never waits on the disk.
+// The header names the save the journal follows (seed, day and the save's hash, see SaveFile); loading
+// that save replays the journal on top of it at full speed, up to the last complete frame, and carries on
+// appending. A save moves the journal over to itself in three steps (see SaveFile): mark() when the snapshot
+// is taken starts keeping the records made after it; before the save is committed a second journal
+// (FILE.next) is written with the new snapshot's header and those records, and from then on every frame goes
+// to both; once the save is committed the new journal replaces the old one. Whichever save a crash leaves in
+// the file, one of the two journals follows it, and any other journal is already in the save and is dropped
+package smartfarm.model;
+
+import smartfarm.exception.GameException;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.rules.Rule;
+import smartfarm.model.rules.RulePlan;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public final class Journal {
+    private static final int MAGIC = 0x53464A4C;            // "SFJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;              // Magic, version, seed, base day, save hash, CRC32
+    private static final int FRAME_HEADER = 8;              // Payload length, CRC32 of the payload
+    private static final int MAX_FRAME = 64 << 20;
+
+    // Record kinds; cell actions are followed by row and column, everything by varints
+    static final byte PLANT = 1, WATER = 2, FERTILIZE = 3, TREAT = 4, HARVEST = 5, BUY = 6, ADVANCE = 7,
+            BULK = 8, RULES = 9, STOCK = 10, ZONES = 11, PEST = 12;
+    private static final String[] RESOURCES = {"WATER", "FERTILIZER", "PESTICIDE"};
+
+    private final Path path;
+    private final Path nextPath;
+    private final Thread writer;
+    private GameState game;
+    private int recovered;
+
+    // Shared with the writer, under the journal's lock
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private ByteBuffer spare = ByteBuffer.allocate(4096);
+    private ByteBuffer restart;         // A new header to start the file over with, before the pending records
+    private long appended, durable;     // Records appended, and how many of them are on disk
+    private int recordStart;            // Where the record being appended starts in pending
+    private ByteBuffer carry;           // Records since mark(), for the next journal
+    private ByteBuffer nextHeader;      // Requests to the writer: start the next journal, commit it, drop it
+    private boolean commitNext, abortNext;
+    private int requested, completed;
+    private IOException failure;
+    private boolean closing;
+
+    // Writer thread only: the journal file, the next one while a save is moving over, and where each ends
+    private FileChannel channel, next;
+    private long end, nextEnd;
+
+    private Journal(Path path, FileChannel channel, long end) {
+        this.path = path;
+        this.nextPath = path.resolveSibling(path.getFileName() + ".next");
+        this.channel = channel;
+        this.end = end;
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+    }
+
+    public static Path pathFor(Path saveFile) {
+        return saveFile.resolveSibling(saveFile.getFileName() + ".journal");
+    }
+
+    public static Journal start(SaveFile saveFile, GameState game) throws GameException {
+        // A new journal next to the save, following the game as it stands (just saved there), attached to it
+        Path path = pathFor(saveFile.getPath());
+        long savedHash = saveFile.getSavedHash(game);
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Journal journal = new Journal(path, channel, 0);
+            journal.restart = encodeHeader(game.getSeed(), game.getDay(), savedHash);
+            Files.deleteIfExists(journal.nextPath);
+            return journal.attach(game);
+        } catch (IOException e) {
+            throw new GameException("Cannot open journal " + path + ": " + e.getMessage());
+        }
+    }
+
+    public static Journal resume(SaveFile saveFile, GameState game) throws GameException {
+        // Replay the journal that follows this (just loaded) game and keep appending to it. The next journal
+        // is that one if the crash came after a save was committed but before it replaced the current one; a
+        // journal that follows no snapshot of this game is out of date and a new one starts.
+        // getRecovered() tells how many actions were replayed
+        Path path = pathFor(saveFile.getPath());
+        Path next = path.resolveSibling(path.getFileName() + ".next");
+        ByteBuffer expected = encodeHeader(game.getSeed(), game.getDay(), saveFile.getSavedHash(game));
+        FileChannel channel = null;
+        try {
+            if (follows(next, expected)) {
+                Files.move(next, path, StandardCopyOption.REPLACE_EXISTING);
+            } else if (!follows(path, expected)) {
+                return start(saveFile, game);
+            }
+            Files.deleteIfExists(next);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Replay replay = new Replay(game);
+            long end = replay.run(channel);
+            channel.truncate(end);              // Drop a frame torn by the crash
+            Journal journal = new Journal(path, channel, end);
+            journal.recovered = replay.records;
+            return journal.attach(game);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new GameException("Cannot read journal " + path + ": " + e.getMessage());
+        } catch (GameException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    private static boolean follows(Path file, ByteBuffer expected) throws IOException {
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            return header.flip().equals(expected);
+        }
+    }
+
+    private static ByteBuffer encodeHeader(long seed, int day, long savedHash) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(seed).putInt(day).putLong(savedHash);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_SIZE - 4);
+        header.putInt((int) crc.getValue());
+        return header.flip();
+    }
+
+    private Journal attach(GameState game) {
+        this.game = game;
+        game.setJournal(this);
+        writer.start();
+        return this;
+    }
+
+    // Moving over to a new save (see SaveFile)
+
+    synchronized void mark() {
+        // The snapshot is being taken: keep what comes after it for the next journal
+        carry = ByteBuffer.allocate(4096);
+    }
+
+    void switchTo(int day, long savedHash) throws IOException {
+        // Write the next journal (the snapshot's header and the records since mark) and wait until it is durable
+        ByteBuffer header = encodeHeader(game.getSeed(), day, savedHash);
+        synchronized (this) {
+            if (carry == null) throw new IllegalStateException("No snapshot marked");
+            nextHeader = header;
+            await(++requested);
+        }
+    }
+
+    void commitSwitch() throws IOException {
+        // The save is committed: the next journal replaces the current one
+        synchronized (this) {
+            commitNext = true;
+            await(++requested);
+        }
+    }
+
+    synchronized void abortSwitch() {
+        // The save failed: the current journal carries on alone
+        carry = null;
+        nextHeader = null;
+        abortNext = true;
+        requested++;
+        notifyAll();
+    }
+
+    private void await(int request) throws IOException {
+        // Called holding the lock: until the writer has done the given request
+        notifyAll();
+        try {
+            while (completed < request && failure == null) wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal");
+        }
+        if (failure != null) throw new IOException("Journal " + path + " failed: " + failure.getMessage());
+    }
+
+    public void sync() throws GameException {
+        // Wait until every record appended so far is on disk
+        synchronized (this) {
+            long target = appended;
+            try {
+                while (durable < target && failure == null) wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GameException("Interrupted while syncing the journal");
+            }
+            if (failure != null) throw new GameException("Journal " + path + " failed: " + failure.getMessage());
+        }
+    }
+
+    public void close() throws GameException {
+        // Commit what is left, stop the writer and detach from the game
+        if (game.getJournal() == this) game.setJournal(null);
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+            channel.close();
+            if (next != null) next.close();     // A save still moving over; resume sorts out which one follows it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new GameException("Cannot close journal " + path + ": " + e.getMessage());
+        }
+        synchronized (this) {
+            if (failure != null) throw new GameException("Journal " + path + " failed: " + failure.getMessage());
+        }
+    }
+
+    public Path getPath() { return path; }
+    public int getRecovered() { return recovered; }
+    public synchronized long getAppended() { return appended; }
+    public synchronized long getDurable() { return durable; }
+
+    // Appending (from GameState, once the action has gone through)
+
+    synchronized void cell(byte kind, int row, int col) {
+        ByteBuffer out = reserve(11);
+        if (out == null) return;
+        out.put(kind);
+        Varint.put(out, row);
+        Varint.put(out, col);
+        appended();
+    }
+
+    synchronized void plant(int row, int col, PlantType type) {
+        ByteBuffer out = reserve(12);
+        if (out == null) return;
+        out.put(PLANT);
+        Varint.put(out, row);
+        Varint.put(out, col);
+        out.put((byte) type.getId());
+        appended();
+    }
+
+    synchronized void buy(String type, int amount, int cost) {
+        ByteBuffer out = reserve(12);
+        if (out == null) return;
+        int resource = RESOURCES.length;            // Any other name only costs money (see tryBuyResource)
+        for (int r = 0; r < RESOURCES.length; r++) if (RESOURCES[r].equals(type)) resource = r;
+        out.put(BUY).put((byte) resource);
+        Varint.put(out, amount);
+        Varint.put(out, cost);
+        appended();
+    }
+
+    synchronized void stock(int stock, int delta) {
+        ByteBuffer out = reserve(7);
+        if (out == null) return;
+        out.put(STOCK).put((byte) stock);
+        Varint.put(out, Varint.zigzag(delta));
+        appended();
+    }
+
+    synchronized void zones(int tileRows, int tileCols) {
+        ByteBuffer out = reserve(11);
+        if (out == null) return;
+        out.put(ZONES);
+        Varint.put(out, tileRows);
+        Varint.put(out, tileCols);
+        appended();
+    }
+
+    synchronized void pest(int day) {
+        ByteBuffer out = reserve(6);
+        if (out == null) return;
+        out.put(PEST);
+        Varint.put(out, day);
+        appended();
+    }
+
+    synchronized void advance(int day, int days) {
+        // Written before the days run, with the day they start from
+        ByteBuffer out = reserve(11);
+        if (out == null) return;
+        out.put(ADVANCE);
+        Varint.put(out, day);
+        Varint.put(out, days);
+        appended();
+    }
+
+    synchronized void bulk(BulkAction action, BulkTarget target) {
+        ByteBuffer out = reserve(23);
+        if (out == null) return;
+        out.put(BULK).put((byte) action.ordinal());
+        Varint.put(out, target.getFirstRow());
+        Varint.put(out, target.getFirstCol());
+        Varint.put(out, target.getLastRow());
+        Varint.put(out, target.getLastCol());
+        out.put((byte) (target.getType() == null ? -1 : target.getType().getId()));
+        appended();
+    }
+
+    synchronized void rules(RulePlan rules) {
+        List<byte[]> texts = new ArrayList<>();
+        int size = 6;
+        for (Rule rule : rules.getRules()) {
+            byte[] text = rule.toString().getBytes(StandardCharsets.UTF_8);
+            texts.add(text);
+            size += text.length + 5;
+        }
+        ByteBuffer out = reserve(size);
+        if (out == null) return;
+        out.put(RULES);
+        Varint.put(out, texts.size());
+        for (byte[] text : texts) {
+            Varint.put(out, text.length);
+            out.put(text);
+        }
+        appended();
+    }
+
+    private ByteBuffer reserve(int maxSize) {
+        // Room in the pending batch for one record, or null once the writer has failed (sync reports it)
+        if (failure != null || closing) return null;
+        pending = ensure(pending, maxSize);
+        recordStart = pending.position();
+        return pending;
+    }
+
+    private static ByteBuffer ensure(ByteBuffer buffer, int size) {
+        if (buffer.remaining() >= size) return buffer;
+        return ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + size)).put(buffer.flip());
+    }
+
+    private void appended() {
+        if (carry != null) {
+            int length = pending.position() - recordStart;
+            carry = ensure(carry, length);
+            carry.put(pending.array(), recordStart, length);
+        }
+        appended++;
+        notifyAll();
+    }
+
+    private void writeLoop() {
+        // Group commit: each pass writes everything appended since the last one as a frame and syncs it, along
+        // with whatever the save asked for in the meantime
+        ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER);
+        CRC32 crc = new CRC32();
+        while (true) {
+            ByteBuffer batch, header, startNext, carried = null;
+            boolean commit, abort;
+            long batchEnd;
+            int request;
+            synchronized (this) {
+                try {
+                    while (pending.position() == 0 && restart == null && requested == completed && !closing) wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.position() == 0 && restart == null && requested == completed) return;
+                batch = pending;
+                pending = spare;
+                spare = batch;
+                header = restart;
+                restart = null;
+                startNext = nextHeader;
+                nextHeader = null;
+                if (startNext != null) {
+                    // The records since the mark, this batch's included; later batches go to both journals
+                    carried = carry;
+                    carry = null;
+                }
+                commit = commitNext;
+                abort = abortNext;
+                commitNext = abortNext = false;
+                batchEnd = appended;
+                request = requested;
+            }
+            try {
+                if (header != null) {
+                    // Empty the file before the new header goes in, so old frames never follow it
+                    channel.truncate(0);
+                    writeFully(channel, header, 0);
+                    end = HEADER_SIZE;
+                }
+                if (batch.flip().hasRemaining()) {
+                    end = writeFrame(channel, end, batch, frameHeader, crc);
+                    if (next != null) nextEnd = writeFrame(next, nextEnd, batch, frameHeader, crc);
+                }
+                batch.clear();
+                if (startNext != null) {
+                    next = FileChannel.open(nextPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING);
+                    writeFully(next, startNext, 0);
+                    nextEnd = carried.flip().hasRemaining()
+                            ? writeFrame(next, HEADER_SIZE, carried, frameHeader, crc) : HEADER_SIZE;
+                }
+                channel.force(false);
+                if (next != null) next.force(false);
+                if (abort && next != null) {
+                    next.close();
+                    next = null;
+                    Files.deleteIfExists(nextPath);
+                }
+                if (commit && next != null) {
+                    channel.close();
+                    Files.move(nextPath, path, StandardCopyOption.REPLACE_EXISTING);
+                    channel = next;
+                    end = nextEnd;
+                    next = null;
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    pending.clear();
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                durable = batchEnd;
+                completed = request;
+                notifyAll();
+            }
+        }
+    }
+
+    private static long writeFrame(FileChannel channel, long at, ByteBuffer records, ByteBuffer frameHeader,
+                                   CRC32 crc) throws IOException {
+        // One frame of the given records at the given offset; returns where it ends
+        crc.reset();
+        crc.update(records.duplicate());
+        int length = records.remaining();
+        frameHeader.clear().putInt(length).putInt((int) crc.getValue()).flip();
+        writeFully(channel, frameHeader, at);
+        writeFully(channel, records.duplicate(), at + FRAME_HEADER);
+        return at + FRAME_HEADER + length;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) break;
+            position += n;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Reads a journal's frames and applies their records to the game it follows
+    private static final class Replay {
+        final GameState game;
+        int records;
+
+        Replay(GameState game) {
+            this.game = game;
+        }
+
+        long run(FileChannel channel) throws IOException, GameException {
+            // Returns where the last complete frame ends; a short or mismatched frame is where the writer was cut off
+            long size = channel.size(), at = HEADER_SIZE;
+            ByteBuffer frameHeader = ByteBuffer.allocate(FRAME_HEADER);
+            CRC32 crc = new CRC32();
+            while (at + FRAME_HEADER <= size) {
+                readFully(channel, frameHeader.clear(), at);
+                int length = frameHeader.getInt(0);
+                if (length <= 0 || length > MAX_FRAME || at + FRAME_HEADER + length > size) break;
+                ByteBuffer frame = ByteBuffer.allocate(length);
+                readFully(channel, frame, at + FRAME_HEADER);
+                crc.reset();
+                crc.update(frame.array(), 0, length);
+                if (frameHeader.getInt(4) != (int) crc.getValue()) break;
+                frame.flip();
+                try {
+                    while (frame.hasRemaining()) apply(frame);
+                } catch (IllegalStateException | BufferUnderflowException | IndexOutOfBoundsException e) {
+                    throw new GameException("Damaged journal record " + (records + 1) + ": " + e.getMessage());
+                }
+                at += FRAME_HEADER + length;
+            }
+            return at;
+        }
+
+        private void apply(ByteBuffer in) throws GameException {
+            byte kind = in.get();
+            ActionResult result;
+            switch (kind) {
+                case PLANT: {
+                    int row = Varint.get(in), col = Varint.get(in);
+                    result = game.tryPlant(row, col, PlantType.byId(in.get()));
+                    break;
+                }
+                case WATER: result = game.tryWater(Varint.get(in), Varint.get(in)); break;
+                case FERTILIZE: result = game.tryFertilize(Varint.get(in), Varint.get(in)); break;
+                case TREAT: result = game.tryTreatPest(Varint.get(in), Varint.get(in)); break;
+                case HARVEST: result = game.tryHarvest(Varint.get(in), Varint.get(in)); break;
+                case BUY: {
+                    int resource = in.get();
+                    int amount = Varint.get(in), cost = Varint.get(in);
+                    result = game.tryBuyResource(resource < RESOURCES.length ? RESOURCES[resource] : "", amount, cost);
+                    break;
+                }
+                case STOCK: {
+                    int stock = in.get();
+                    if (stock < GameState.MONEY || stock > GameState.PESTICIDE) throw new IllegalStateException("Unknown stock " + stock);
+                    result = game.tryChangeStock(stock, Varint.unzigzag(Varint.get(in)));
+                    break;
+                }
+                case ADVANCE: {
+                    int day = Varint.get(in), days = Varint.get(in);
+                    if (day != game.getDay()) throw mismatch("day " + day + " but the game is on day " + game.getDay());
+                    if (days == 1) game.advanceDay();
+                    else game.advanceDays(days);
+                    result = ActionResult.OK;
+                    break;
+                }
+                case ZONES: {
+                    int tileRows = Varint.get(in), tileCols = Varint.get(in);
+                    if (tileRows < 1 || tileCols < 1) throw new IllegalStateException("Bad weather tiles " + tileRows + "x" + tileCols);
+                    game.setWeatherZones(tileRows, tileCols);
+                    result = ActionResult.OK;
+                    break;
+                }
+                case PEST: {
+                    int day = Varint.get(in);
+                    if (day != game.getDay()) throw mismatch("day " + day + " but the game is on day " + game.getDay());
+                    game.executePestAttack();
+                    result = ActionResult.OK;
+                    break;
+                }
+                case BULK: {
+                    BulkAction action = BulkAction.values()[in.get()];
+                    BulkTarget target = BulkTarget.area(Varint.get(in), Varint.get(in), Varint.get(in), Varint.get(in));
+                    int type = in.get();
+                    game.runBulk(action, type < 0 ? target : target.withType(PlantType.byId(type)));
+                    result = ActionResult.OK;
+                    break;
+                }
+                case RULES: {
+                    List<Rule> rules = new ArrayList<>();
+                    for (int r = Varint.get(in); r > 0; r--) {
+                        byte[] text = new byte[Varint.get(in)];
+                        in.get(text);
+                        rules.add(Rule.parse(new String(text, StandardCharsets.UTF_8)));
+                    }
+                    game.setRules(rules.isEmpty() ? RulePlan.EMPTY : new RulePlan(rules));
+                    result = ActionResult.OK;
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown record kind " + kind);
+            }
+            // The journal only holds actions that went through, so a refusal means it does not fit this game
+            if (!result.isOk()) throw mismatch(result.getMessage());
+            records++;
+        }
+
+        private GameException mismatch(String reason) {
+            return new GameException("Journal does not match the game at record " + (records + 1) + ": " + reason);
+        }
+    }
+}
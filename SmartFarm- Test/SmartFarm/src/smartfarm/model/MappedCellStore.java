@@ -0,0 +1,210 @@
+// Class MappedCellStore: CellStore in a memory-mapped file (java.lang.foreign)
+// The file is one header page followed by the columns, each starting on a 64-byte boundary: soil, crop,
+// stage, water, fertilizer, health and the pest flag one byte per cell, days grown two, the stamp, the slot's
+// position in the active index and the index itself four. The heap holds none of it: pages are read in
+// as the tick reaches them and written back by the OS, and force() makes the file match the farm. The file
+// is created sparse, so the index column only takes disk space as far as it is used
+// The header records the size, and at each force() the day and the length of the active index, so open()
+// can map the file again as it was at its last force (see FarmGrid.reopen)
+package smartfarm.model;
+
+import smartfarm.exception.GameException;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+final class MappedCellStore extends CellStore {
+    private static final int MAGIC = 0x5346474D;       // "SFGM"
+    private static final int VERSION = 1;
+    private static final long HEADER_SIZE = 4096;
+    private static final long ALIGN = 64;
+
+    private static final ValueLayout.OfByte BYTE = ValueLayout.JAVA_BYTE;
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT;
+
+    private final Path file;
+    private final Arena arena;
+    private final MemorySegment mapping;
+    private final MemorySegment soil, crop, stage, water, fertilizer, health, infected;
+    private final MemorySegment daysGrown, stamp, activePos, active;
+    private final int rows, cols;
+
+    private MappedCellStore(Path file, int rows, int cols, boolean create) throws IOException {
+        this.file = file;
+        this.rows = rows;
+        this.cols = cols;
+        long length = length(rows, cols);
+        long size = (long) rows * cols;
+        long byteColumn = align(size), shortColumn = align(2 * size), intColumn = align(4 * size);
+
+        this.arena = Arena.ofShared();      // The tick reads and writes it from the fork/join workers
+        try (FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (create) {
+                channel.write(ByteBuffer.allocate(1), length - 1);     // Sized without writing the zeros
+            } else if (channel.size() != length) {
+                throw new IOException("expected " + length + " bytes for " + rows + "x" + cols + ", found " + channel.size());
+            }
+            this.mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, length, arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        long at = HEADER_SIZE;
+        soil = mapping.asSlice(at, size);
+        crop = mapping.asSlice(at += byteColumn, size);
+        stage = mapping.asSlice(at += byteColumn, size);
+        water = mapping.asSlice(at += byteColumn, size);
+        fertilizer = mapping.asSlice(at += byteColumn, size);
+        health = mapping.asSlice(at += byteColumn, size);
+        infected = mapping.asSlice(at += byteColumn, size);
+        daysGrown = mapping.asSlice(at += byteColumn, 2 * size);
+        stamp = mapping.asSlice(at += shortColumn, 4 * size);
+        activePos = mapping.asSlice(at += intColumn, 4 * size);
+        active = mapping.asSlice(at + intColumn, 4 * size);
+        if (!create) return;
+
+        crop.fill((byte) FarmGrid.NO_CROP);
+        mapping.set(INT, 0, MAGIC);
+        mapping.set(INT, 4, VERSION);
+        mapping.set(INT, 8, rows);
+        mapping.set(INT, 12, cols);
+        writeCounts(0, 0);
+    }
+
+    static CellStore create(Path file, int rows, int cols) throws GameException {
+        // A fresh store in a new (or truncated) file
+        try {
+            return new MappedCellStore(file, rows, cols, true);
+        } catch (IOException | UnsupportedOperationException e) {
+            throw new GameException("Cannot map " + file + ": " + e.getMessage());
+        }
+    }
+
+    static MappedCellStore open(Path file) throws GameException {
+        // The store in an existing file, after checking its header
+        try {
+            ByteBuffer header = ByteBuffer.allocate(24).order(ByteOrder.nativeOrder());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.read(header, 0);
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) throw new GameException(file + " is not a mapped farm");
+            if (header.getInt(4) != VERSION) throw new GameException(file + ": unsupported version " + header.getInt(4));
+            int rows = header.getInt(8), cols = header.getInt(12);
+            if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE) {
+                throw new GameException(file + ": bad farm size " + rows + "x" + cols);
+            }
+            return new MappedCellStore(file, rows, cols, false);
+        } catch (IOException | UnsupportedOperationException e) {
+            throw new GameException("Cannot map " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static long length(int rows, int cols) {
+        long size = (long) rows * cols;
+        return HEADER_SIZE + 7 * align(size) + align(2 * size) + 3 * align(4 * size);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + ALIGN - 1) & -ALIGN;
+    }
+
+    int getRows() { return rows; }
+    int getCols() { return cols; }
+    int getDay() { return mapping.get(INT, 16); }               // As of the last force()
+    int getActiveCount() { return mapping.get(INT, 20); }
+
+    private void writeCounts(int day, int activeCount) {
+        mapping.set(INT, 16, day);
+        mapping.set(INT, 20, activeCount);
+    }
+
+    @Override
+    String getName() { return "mapped " + file.getFileName(); }
+
+    @Override int soil(int i) { return soil.get(BYTE, i); }
+    @Override void setSoil(int i, int value) { soil.set(BYTE, i, (byte) value); }
+    @Override int crop(int i) { return crop.get(BYTE, i); }
+    @Override void setCrop(int i, int value) { crop.set(BYTE, i, (byte) value); }
+    @Override int stage(int i) { return stage.get(BYTE, i); }
+    @Override void setStage(int i, int value) { stage.set(BYTE, i, (byte) value); }
+    @Override int daysGrown(int i) { return daysGrown.getAtIndex(SHORT, i); }
+    @Override void setDaysGrown(int i, int value) { daysGrown.setAtIndex(SHORT, i, (short) value); }
+    @Override int water(int i) { return water.get(BYTE, i); }
+    @Override void setWater(int i, int value) { water.set(BYTE, i, (byte) value); }
+    @Override int fertilizer(int i) { return fertilizer.get(BYTE, i); }
+    @Override void setFertilizer(int i, int value) { fertilizer.set(BYTE, i, (byte) value); }
+    @Override int health(int i) { return health.get(BYTE, i); }
+    @Override void setHealth(int i, int value) { health.set(BYTE, i, (byte) value); }
+    @Override boolean infected(int i) { return infected.get(BYTE, i) != 0; }
+    @Override void setInfected(int i, boolean value) { infected.set(BYTE, i, (byte) (value ? 1 : 0)); }
+    @Override int stamp(int i) { return stamp.getAtIndex(INT, i); }
+    @Override void setStamp(int i, int value) { stamp.setAtIndex(INT, i, value); }
+
+    @Override int slot(int pos) { return active.getAtIndex(INT, pos); }
+    @Override void setSlot(int pos, int i) { active.setAtIndex(INT, pos, i); }
+    @Override int pos(int i) { return activePos.getAtIndex(INT, i); }
+    @Override void setPos(int i, int pos) { activePos.setAtIndex(INT, i, pos); }
+
+    @Override
+    void ensureSlots(int count) {
+        // The index column has room for every cell
+    }
+
+    @Override
+    void sortSlots(int count) {
+        // The planted slots in ascending order are exactly the cells with a crop, so one pass over the crop
+        // column sorts the index in place, where sorting a copy would take O(planted) heap
+        long k = 0;
+        for (int i = 0; k < count; i++) {
+            if (crop.get(BYTE, i) != FarmGrid.NO_CROP) active.setAtIndex(INT, k++, i);
+        }
+    }
+
+    @Override
+    void fillSoil(int value) {
+        soil.fill((byte) value);
+    }
+
+    @Override
+    void clearPositions() {
+        activePos.fill((byte) -1);
+    }
+
+    @Override
+    void applyWeather(WeatherKernel kernel, int from, int to, int waterEffect, int fertilizerEffect,
+                      int healthEffect) {
+        // The kernels work on arrays; this is the scalar kernel over the mapped columns
+        if (waterEffect != 0) addClamped(water, from, to, waterEffect, 10);
+        if (fertilizerEffect != 0) addClamped(fertilizer, from, to, fertilizerEffect, 10);
+        if (healthEffect != 0) addClamped(health, from, to, healthEffect, 100);
+    }
+
+    private void addClamped(MemorySegment level, int from, int to, int effect, int max) {
+        for (int i = from; i < to; i++) {
+            int planted = ~(crop.get(BYTE, i) >> 31);
+            level.set(BYTE, i, (byte) Math.min(max, Math.max(0, level.get(BYTE, i) + (effect & planted))));
+        }
+    }
+
+    @Override
+    void force(int day, int activeCount) {
+        writeCounts(day, activeCount);
+        mapping.force();
+    }
+
+    @Override
+    void close() {
+        arena.close();
+    }
+}
@@ -0,0 +1,17 @@
+// Class PlantView: a Plant read and changed through a planted FarmGrid slot
+// The grid hands out one per slot (see FarmGrid.plantAt) and detaches it when the slot is vacated, so a view
+// kept past a harvest or death holds that plant's last state instead of following the next crop
+package smartfarm.model;
+
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+
+class PlantView extends Plant {
+    PlantView(PlantType type, FarmGrid grid, int index) {
+        super(type, grid, index);
+    }
+
+    void detach() {
+        keepState();
+    }
+}
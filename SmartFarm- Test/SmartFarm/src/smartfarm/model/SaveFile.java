@@ -0,0 +1,654 @@
+// Class SaveFile: Versioned binary save file for a GameState, with incremental saves
+// The file is a 64-byte header followed by records appended one after another. A record is (kind, chunk,
+// payload length, CRC32 of the payload) and a payload: the cells of one grid chunk, one chunk of the active
+// index (see FarmGrid for both encodings), or the index record, which holds the game itself (money, day,
+// stock, seed, weather zones, rules) and the offset of the latest record of every chunk. The header has two
+// slots pointing at an index record; a save appends its records and its index, syncs, and only then
+// overwrites the older slot, so a crash mid-save leaves the previous save readable.
+// The first save of a game writes every chunk to a fresh file (as does a save once stale records outweigh the
+// live ones); after that a save appends only the chunks the grid marked dirty since the last save, so its
+// cost follows what changed rather than the size of the farm. Records are encoded straight from the grid
+// arrays into a direct buffer and read back straight into a new grid, through NIO channels.
+// A save is taken in two parts: capture() on the game's thread takes a snapshot (the scalars, and the grid
+// copy-on-write, see GridSnapshot), which costs microseconds however big the farm; write() then writes it,
+// on the same thread or on another one (see AutoSave) while the game plays on. The game's journal is moved
+// over to the new save as it is committed (see Journal), and names it by a hash of the save: the checksum
+// of the index record and of every chunk record, summed per chunk so a save only folds in what it rewrote
+package smartfarm.model;
+
+import smartfarm.exception.GameException;
+import smartfarm.model.rules.Rule;
+import smartfarm.model.rules.RulePlan;
+import smartfarm.model.weather.WeatherEngine;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class SaveFile {
+    private static final int MAGIC = 0x5346524D;            // "SFRM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_OFFSET = 8;
+    private static final int SLOT_SIZE = 24;                // Sequence, index offset, index length, CRC32
+    private static final byte CELLS = 1, ACTIVE = 2, INDEX = 3;
+    private static final int RECORD_HEADER = 13;            // Kind, chunk, payload length, CRC32
+    private static final int MAX_CHUNK_RECORD = 64 * 1024;  // More than any encoded chunk
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+
+    // What the file holds after the last save or load through this object
+    private GameState owner;            // The game it was for; any other game is saved in full
+    private long[] cellOffsets, activeOffsets;
+    private int[] cellSizes, activeSizes;
+    private int[] cellChecksums;        // CRC32 of each chunk's latest cell record
+    private long cellsHash;             // Sum of chunkTerm over the chunks
+    private long savedHash;             // The journal's name for the save (see saveHash)
+    private int indexSize;
+    private long fileEnd;
+    private long sequence;
+
+    public SaveFile(Path path) {
+        this.path = path;
+    }
+
+    public SaveReport save(GameState game) throws GameException {
+        return write(capture(game));
+    }
+
+    synchronized Snapshot capture(GameState game) {
+        // On the game's thread; the snapshot must be written (or its write fail) before the next one is taken
+        long start = System.nanoTime();
+        Farm farm = game.getFarm();
+        FarmGrid grid = farm.getGrid();
+        Journal journal = game.getJournal();
+        boolean eventDriven = farm.isEventDriven();
+        Snapshot snapshot;
+        farm.setEventDriven(false);         // Settles every plant, so the arrays hold today's state
+        try {
+            boolean full = !isIncremental(game, grid);
+            snapshot = new Snapshot(game, grid.snapshot(full), eventDriven, full);
+        } finally {
+            // Before the snapshot starts reading: going back to event-driven mode would otherwise have it copy
+            // every planted chunk
+            farm.setEventDriven(eventDriven);
+        }
+        grid.startSnapshot(snapshot.grid);
+        if (journal != null) journal.mark();
+        snapshot.pauseNanos = System.nanoTime() - start;
+        return snapshot;
+    }
+
+    synchronized SaveReport write(Snapshot snapshot) throws GameException {
+        long start = System.nanoTime();
+        try {
+            SaveReport report = snapshot.full ? writeFull(snapshot) : writeChanges(snapshot);
+            owner = snapshot.game;
+            report.nanos = System.nanoTime() - start;
+            report.pauseNanos = snapshot.pauseNanos;
+            report.copiedChunks = snapshot.grid.getCopiedChunks();
+            return report;
+        } catch (IOException | RuntimeException e) {
+            owner = null;                   // The chunks it took from the grid are written by a full save next time
+            if (snapshot.journal != null) snapshot.journal.abortSwitch();
+            throw new GameException("Cannot save to " + path + ": " + e.getMessage());
+        } finally {
+            snapshot.grid.release();
+        }
+    }
+
+    private boolean isIncremental(GameState game, FarmGrid grid) {
+        if (owner != game || cellOffsets == null || cellOffsets.length != grid.getChunkCount()) return false;
+        if (!Files.isRegularFile(path)) return false;
+        // Rewrite the whole file once stale records take up more room than the live ones
+        long live = indexSize;
+        for (int size : cellSizes) live += size;
+        for (int size : activeSizes) live += size;
+        return fileEnd - HEADER_SIZE <= 2 * live;
+    }
+
+    private SaveReport writeFull(Snapshot snapshot) throws IOException {
+        // Everything into a new file next to the old one, which it then replaces
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        GridSnapshot grid = snapshot.grid;
+        int chunks = grid.getChunkCount(), activeChunks = grid.getActiveChunkCount();
+        long[] newCellOffsets = new long[chunks], newActiveOffsets = new long[activeChunks];
+        int[] newCellSizes = new int[chunks], newActiveSizes = new int[activeChunks];
+        int[] newCellChecksums = new int[chunks];
+        long newCellsHash = 0;
+        long newSavedHash;
+        SaveReport report = new SaveReport(true, chunks + activeChunks);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            RecordWriter writer = new RecordWriter(channel, HEADER_SIZE);
+            for (int c = 0; c < chunks; c++) {
+                writeCells(writer, grid, c, newCellOffsets, newCellSizes, report);
+                newCellChecksums[c] = writer.lastChecksum;
+                newCellsHash += chunkTerm(c, writer.lastChecksum);
+            }
+            for (int c = 0; c < activeChunks; c++) writeActive(writer, grid, c, newActiveOffsets, newActiveSizes, report);
+            ByteBuffer index = encodeIndex(snapshot, newCellOffsets, newCellSizes, newActiveOffsets, newActiveSizes);
+            long indexOffset = writer.write(INDEX, 0, index);
+            int newIndexSize = writer.lastSize;
+            newSavedHash = saveHash(newCellsHash, writer.lastChecksum);
+            writer.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION);
+            putSlot(header, 0, 0, 0);           // Slot s holds the saves whose sequence has parity s
+            putSlot(header, 1, indexOffset, newIndexSize);
+            header.flip();
+            writeFully(channel, header, 0);
+            channel.force(true);
+            fileEnd = writer.position;
+            sequence = 1;
+            indexSize = newIndexSize;
+            report.bytes = writer.position;
+        }
+        snapshot.switchJournal(newSavedHash);
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshot.commitJournal();
+        cellOffsets = newCellOffsets;
+        cellSizes = newCellSizes;
+        activeOffsets = newActiveOffsets;
+        activeSizes = newActiveSizes;
+        cellChecksums = newCellChecksums;
+        cellsHash = newCellsHash;
+        savedHash = newSavedHash;
+        report.fileSize = fileEnd;
+        return report;
+    }
+
+    private SaveReport writeChanges(Snapshot snapshot) throws IOException {
+        // The dirty chunks and a new index after the end of the file, then the spare header slot
+        GridSnapshot grid = snapshot.grid;
+        int chunks = grid.getChunkCount(), activeChunks = grid.getActiveChunkCount();
+        long[] newCellOffsets = cellOffsets.clone();
+        int[] newCellSizes = cellSizes.clone();
+        long[] newActiveOffsets = Arrays.copyOf(activeOffsets, activeChunks);
+        int[] newActiveSizes = Arrays.copyOf(activeSizes, activeChunks);
+        int[] newCellChecksums = cellChecksums.clone();
+        long newCellsHash = cellsHash;
+        long newSavedHash;
+        SaveReport report = new SaveReport(false, chunks + activeChunks);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            RecordWriter writer = new RecordWriter(channel, fileEnd);
+            for (int c = 0; c < chunks; c++) {
+                if (!grid.isWritten(c)) continue;
+                writeCells(writer, grid, c, newCellOffsets, newCellSizes, report);
+                newCellsHash += chunkTerm(c, writer.lastChecksum) - chunkTerm(c, newCellChecksums[c]);
+                newCellChecksums[c] = writer.lastChecksum;
+            }
+            for (int c = 0; c < activeChunks; c++) {
+                if (grid.isActiveWritten(c)) {
+                    writeActive(writer, grid, c, newActiveOffsets, newActiveSizes, report);
+                } else if (newActiveSizes[c] == 0) {
+                    // A chunk the index has grown into since the last save is always dirty
+                    throw new IllegalStateException("Active index chunk " + c + " was never written");
+                }
+            }
+            ByteBuffer index = encodeIndex(snapshot, newCellOffsets, newCellSizes, newActiveOffsets, newActiveSizes);
+            long indexOffset = writer.write(INDEX, 0, index);
+            int newIndexSize = writer.lastSize;
+            newSavedHash = saveHash(newCellsHash, writer.lastChecksum);
+            writer.flush();
+            channel.force(false);
+            snapshot.switchJournal(newSavedHash);
+
+            // Only now does the file point at the new records
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+            long next = sequence + 1;
+            putSlot(slot, next, indexOffset, newIndexSize);
+            slot.flip();
+            writeFully(channel, slot, SLOT_OFFSET + (next & 1) * SLOT_SIZE);
+            channel.force(false);
+            sequence = next;
+            fileEnd = writer.position;
+            indexSize = newIndexSize;
+            report.bytes = writer.position - writer.start + SLOT_SIZE;
+        }
+        snapshot.commitJournal();
+        cellOffsets = newCellOffsets;
+        cellSizes = newCellSizes;
+        activeOffsets = newActiveOffsets;
+        activeSizes = newActiveSizes;
+        cellChecksums = newCellChecksums;
+        cellsHash = newCellsHash;
+        savedHash = newSavedHash;
+        report.fileSize = fileEnd;
+        return report;
+    }
+
+    private static long chunkTerm(int c, int checksum) {
+        // One chunk's share of cellsHash; summing keeps the hash independent of the order chunks are written in
+        long h = ((long) c << 32 | (checksum & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        return h ^ h >>> 29;
+    }
+
+    private static long saveHash(long cellsHash, int indexChecksum) {
+        // The index record holds the game itself and where every chunk is; the chunk checksums cover the cells
+        long h = (cellsHash ^ (indexChecksum & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        return h ^ h >>> 31;
+    }
+
+    synchronized long getSavedHash(GameState game) throws GameException {
+        // The hash of the save this file holds for the game, as a journal that follows it is headed
+        if (owner != game) throw new GameException(path.getFileName() + " does not hold this game");
+        return savedHash;
+    }
+
+    private static void writeCells(RecordWriter writer, GridSnapshot grid, int c, long[] offsets, int[] sizes,
+                                   SaveReport report) throws IOException {
+        ByteBuffer out = writer.begin(MAX_CHUNK_RECORD);
+        Varint.put(out, grid.day);          // Fallow soil is stored as of this day
+        grid.visit(c, out);
+        offsets[c] = writer.end(CELLS, c);
+        sizes[c] = writer.lastSize;
+        report.chunks++;
+    }
+
+    private static void writeActive(RecordWriter writer, GridSnapshot grid, int c, long[] offsets, int[] sizes,
+                                    SaveReport report) throws IOException {
+        grid.encodeActive(c, writer.begin(MAX_CHUNK_RECORD));
+        offsets[c] = writer.end(ACTIVE, c);
+        sizes[c] = writer.lastSize;
+        report.chunks++;
+    }
+
+    private static boolean isSet(long[] bits, int c) {
+        return (bits[c >>> 6] & 1L << c) != 0;
+    }
+
+    private static void putSlot(ByteBuffer out, long sequence, long indexOffset, int indexSize) {
+        int start = out.position();
+        out.putLong(sequence).putLong(indexOffset).putInt(indexSize);
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), start, SLOT_SIZE - 4);
+        out.putInt((int) crc.getValue());
+    }
+
+    private static ByteBuffer encodeIndex(Snapshot snapshot, long[] cellOffsets, int[] cellSizes, long[] activeOffsets,
+                                          int[] activeSizes) {
+        GridSnapshot grid = snapshot.grid;
+        WeatherZones zones = snapshot.zones;
+        List<byte[]> rules = new ArrayList<>();
+        int rulesSize = 0;
+        for (Rule rule : snapshot.rules.getRules()) {
+            byte[] text = rule.toString().getBytes(StandardCharsets.UTF_8);
+            rules.add(text);
+            rulesSize += text.length + 5;
+        }
+        ByteBuffer out = ByteBuffer.allocate(128 + 7 * zones.getCount() + rulesSize
+                + 15 * (cellOffsets.length + activeOffsets.length));
+        out.putLong(snapshot.seed);
+        Varint.put(out, Varint.zigzag(snapshot.money));
+        Varint.put(out, snapshot.day);
+        Varint.put(out, snapshot.waterStock);
+        Varint.put(out, snapshot.fertilizerStock);
+        Varint.put(out, snapshot.pesticideStock);
+        Varint.put(out, Varint.zigzag(snapshot.lastHarvestValue));
+
+        Varint.put(out, grid.rows);
+        Varint.put(out, grid.cols);
+        Varint.put(out, grid.day);
+        Varint.put(out, grid.activeCount);
+        Varint.put(out, grid.activeChurn);
+        out.put((byte) (snapshot.eventDriven ? 1 : 0));
+
+        // Zone weather as runs of equal weather
+        Varint.put(out, zones.getTileRows());
+        Varint.put(out, zones.getTileCols());
+        int z = 0;
+        while (z < zones.getCount()) {
+            int run = 1;
+            while (z + run < zones.getCount() && zones.getWeather(z + run) == zones.getWeather(z)) run++;
+            Varint.put(out, run);
+            out.put((byte) zones.getWeather(z).getId());
+            z += run;
+        }
+
+        Varint.put(out, rules.size());
+        for (byte[] text : rules) {
+            Varint.put(out, text.length);
+            out.put(text);
+        }
+
+        Varint.put(out, cellOffsets.length);
+        for (int c = 0; c < cellOffsets.length; c++) {
+            Varint.putLong(out, cellOffsets[c]);
+            Varint.put(out, cellSizes[c]);
+        }
+        Varint.put(out, activeOffsets.length);
+        for (int c = 0; c < activeOffsets.length; c++) {
+            Varint.putLong(out, activeOffsets[c]);
+            Varint.put(out, activeSizes[c]);
+        }
+        out.flip();
+        return out;
+    }
+
+    public GameState load() throws GameException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) throw new GameException(path.getFileName() + " is not a Smart Farm save");
+            int version = header.getInt();
+            if (version != VERSION) throw new GameException("Unsupported save version " + version);
+
+            // The newer of the two slots that checks out; if its index is damaged (a write torn by a crash) the
+            // older one still describes a complete save, as nothing it points at is ever overwritten
+            long[] seq = new long[2];
+            for (int s = 0; s < 2; s++) {
+                int at = SLOT_OFFSET + s * SLOT_SIZE;
+                CRC32 crc = new CRC32();
+                crc.update(header.array(), at, SLOT_SIZE - 4);
+                seq[s] = header.getInt(at + SLOT_SIZE - 4) == (int) crc.getValue() ? header.getLong(at) : -1;
+            }
+            int first = seq[1] > seq[0] ? 1 : 0;
+            if (seq[first] <= 0) throw new GameException("Damaged save file: no valid header");
+
+            RecordReader reader = new RecordReader(channel);
+            GameState game = null;
+            long best = 0;
+            int indexLength = 0;
+            for (int s = first, tries = 0; game == null; s ^= 1, tries++) {
+                int at = SLOT_OFFSET + s * SLOT_SIZE;
+                best = seq[s];
+                indexLength = header.getInt(at + 16);
+                try {
+                    game = decode(reader, reader.read(header.getLong(at + 8), indexLength, INDEX, 0),
+                            reader.lastChecksum);
+                } catch (IllegalStateException | BufferUnderflowException | IndexOutOfBoundsException e) {
+                    if (tries == 1 || seq[s ^ 1] <= 0) throw e;
+                }
+            }
+            indexSize = indexLength;
+            sequence = best;
+            fileEnd = channel.size();
+            owner = game;
+            return game;
+        } catch (IOException e) {
+            throw new GameException("Cannot load " + path + ": " + e.getMessage());
+        } catch (IllegalStateException | BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new GameException("Damaged save file: " + e.getMessage());
+        }
+    }
+
+    private GameState decode(RecordReader reader, ByteBuffer in, int indexChecksum) throws IOException, GameException {
+        long seed = in.getLong();
+        int money = Varint.unzigzag(Varint.get(in));
+        int day = Varint.get(in);
+        int waterStock = Varint.get(in);
+        int fertilizerStock = Varint.get(in);
+        int pesticideStock = Varint.get(in);
+        int lastHarvestValue = Varint.unzigzag(Varint.get(in));
+
+        int rows = Varint.get(in), cols = Varint.get(in);
+        int gridDay = Varint.get(in);
+        int activeCount = Varint.get(in);
+        int activeChurn = Varint.get(in);
+        boolean eventDriven = in.get() != 0;
+        if (rows < 1 || cols < 1 || (long) rows * cols > Integer.MAX_VALUE) throw new IllegalStateException("Bad farm size");
+
+        int tileRows = Varint.get(in), tileCols = Varint.get(in);
+        WeatherZones zones = new WeatherZones(rows, cols, tileRows, tileCols, WeatherEngine.SUNNY);
+        for (int z = 0; z < zones.getCount(); ) {
+            int run = Varint.get(in);
+            int id = in.get();
+            if (run < 1 || z + run > zones.getCount() || id < 0 || id >= WeatherEngine.getStates().length) {
+                throw new IllegalStateException("Bad weather zones");
+            }
+            for (int k = z; k < z + run; k++) zones.set(k, WeatherEngine.getState(id));
+            z += run;
+        }
+
+        List<Rule> rules = new ArrayList<>();
+        int ruleCount = Varint.get(in);
+        for (int r = 0; r < ruleCount; r++) {
+            byte[] text = new byte[Varint.get(in)];
+            in.get(text);
+            rules.add(Rule.parse(new String(text, StandardCharsets.UTF_8)));
+        }
+
+        FarmGrid grid = new FarmGrid(rows, cols, gridDay);
+        int chunks = Varint.get(in);
+        if (chunks != grid.getChunkCount()) throw new IllegalStateException("Chunk count does not match the farm");
+        long[] newCellOffsets = new long[chunks];
+        int[] newCellSizes = new int[chunks];
+        for (int c = 0; c < chunks; c++) {
+            newCellOffsets[c] = Varint.getLong(in);
+            newCellSizes[c] = Varint.get(in);
+        }
+        int activeChunks = Varint.get(in);
+        if (activeChunks != (activeCount + FarmGrid.CHUNK_CELLS - 1) / FarmGrid.CHUNK_CELLS) {
+            throw new IllegalStateException("Active index chunks do not match");
+        }
+        long[] newActiveOffsets = new long[activeChunks];
+        int[] newActiveSizes = new int[activeChunks];
+        for (int c = 0; c < activeChunks; c++) {
+            newActiveOffsets[c] = Varint.getLong(in);
+            newActiveSizes[c] = Varint.get(in);
+        }
+
+        // Read the chunks in file order, so the reads stream through the file
+        long[] order = new long[chunks + activeChunks];
+        for (int c = 0; c < chunks; c++) order[c] = newCellOffsets[c] << 20 | c;
+        for (int c = 0; c < activeChunks; c++) order[chunks + c] = newActiveOffsets[c] << 20 | 1 << 19 | c;
+        Arrays.sort(order);
+        int[] newCellChecksums = new int[chunks];
+        long newCellsHash = 0;
+        for (long entry : order) {
+            int c = (int) (entry & (1 << 19) - 1);
+            if ((entry & 1 << 19) == 0) {
+                ByteBuffer payload = reader.read(newCellOffsets[c], newCellSizes[c], CELLS, c);
+                newCellChecksums[c] = reader.lastChecksum;
+                newCellsHash += chunkTerm(c, reader.lastChecksum);
+                int writtenDay = Varint.get(payload);
+                grid.decodeCells(c, payload, writtenDay);
+            } else {
+                grid.decodeActive(c, reader.read(newActiveOffsets[c], newActiveSizes[c], ACTIVE, c));
+            }
+        }
+        grid.finishLoad(activeCount, activeChurn);
+
+        GameRandom random = new GameRandom(seed);
+        Farm farm = new Farm(grid, zones, random);
+        GameState game = new GameState(farm, random, money, day, waterStock, fertilizerStock, pesticideStock,
+                lastHarvestValue, rules.isEmpty() ? RulePlan.EMPTY : new RulePlan(rules));
+        if (eventDriven) farm.setEventDriven(true);
+        cellOffsets = newCellOffsets;
+        cellSizes = newCellSizes;
+        activeOffsets = newActiveOffsets;
+        activeSizes = newActiveSizes;
+        cellChecksums = newCellChecksums;
+        cellsHash = newCellsHash;
+        savedHash = saveHash(newCellsHash, indexChecksum);
+        return game;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) position += channel.write(buffer, position);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) throw new IOException("unexpected end of file");
+            position += n;
+        }
+    }
+
+    public Path getPath() { return path; }
+
+    // A game as capture() took it: everything the save writes, so the game can play on while it is written
+    static final class Snapshot {
+        final GameState game;
+        final GridSnapshot grid;
+        final WeatherZones zones;
+        final RulePlan rules;
+        final Journal journal;
+        final long seed;
+        final int money, day, waterStock, fertilizerStock, pesticideStock, lastHarvestValue;
+        final boolean eventDriven;
+        final boolean full;
+        long pauseNanos;
+
+        Snapshot(GameState game, GridSnapshot grid, boolean eventDriven, boolean full) {
+            this.game = game;
+            this.grid = grid;
+            this.zones = new WeatherZones(game.getFarm().getWeatherZones());
+            this.rules = game.getRules();
+            this.journal = game.getJournal();
+            this.seed = game.getSeed();
+            this.money = game.getMoney();
+            this.day = game.getDay();
+            this.waterStock = game.getWaterStock();
+            this.fertilizerStock = game.getFertilizerStock();
+            this.pesticideStock = game.getPesticideStock();
+            this.lastHarvestValue = game.getLastHarvestValue();
+            this.eventDriven = eventDriven;
+            this.full = full;
+        }
+
+        void switchJournal(long savedHash) throws IOException {
+            // Before the save is committed: the journal that follows it is written and durable
+            if (journal != null) journal.switchTo(day, savedHash);
+        }
+
+        void commitJournal() throws IOException {
+            if (journal != null) journal.commitSwitch();
+        }
+    }
+
+    // Appends records through one direct buffer, patching each record's header once its payload is encoded
+    private static final class RecordWriter {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final CRC32 crc = new CRC32();
+        final long start;
+        long position;          // File offset of the start of the buffer
+        int recordStart;
+        int lastSize;           // Header and payload of the record just written
+        int lastChecksum;       // CRC32 of its payload
+
+        RecordWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.start = position;
+            this.position = position;
+        }
+
+        ByteBuffer begin(int maxPayload) throws IOException {
+            if (buffer.remaining() < RECORD_HEADER + maxPayload) flush();
+            recordStart = buffer.position();
+            buffer.position(recordStart + RECORD_HEADER);
+            return buffer;
+        }
+
+        long end(byte kind, int chunk) {
+            int length = buffer.position() - recordStart - RECORD_HEADER;
+            ByteBuffer payload = buffer.duplicate();
+            payload.position(recordStart + RECORD_HEADER).limit(recordStart + RECORD_HEADER + length);
+            crc.reset();
+            crc.update(payload);
+            lastChecksum = (int) crc.getValue();
+            buffer.put(recordStart, kind).putInt(recordStart + 1, chunk).putInt(recordStart + 5, length)
+                    .putInt(recordStart + 9, lastChecksum);
+            lastSize = RECORD_HEADER + length;
+            return position + recordStart;
+        }
+
+        long write(byte kind, int chunk, ByteBuffer payload) throws IOException {
+            // A record encoded elsewhere (the index, whose size has no fixed bound)
+            if (buffer.remaining() < RECORD_HEADER + payload.remaining()) flush();
+            if (buffer.remaining() >= RECORD_HEADER + payload.remaining()) {
+                begin(0);
+                buffer.put(payload);
+                return end(kind, chunk);
+            }
+            crc.reset();
+            crc.update(payload.duplicate());
+            lastChecksum = (int) crc.getValue();
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            header.put(kind).putInt(chunk).putInt(payload.remaining()).putInt(lastChecksum).flip();
+            long offset = position;
+            lastSize = RECORD_HEADER + payload.remaining();
+            writeFully(channel, header, position);
+            writeFully(channel, payload, position + RECORD_HEADER);
+            position += lastSize;
+            return offset;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            int n = buffer.remaining();
+            writeFully(channel, buffer, position);
+            position += n;
+            buffer.clear();
+        }
+    }
+
+    // Reads records through a window over the file, refilled as the (ascending) reads move past it
+    private static final class RecordReader {
+        final FileChannel channel;
+        final ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE);
+        final CRC32 crc = new CRC32();
+        long windowStart = -1;
+        int windowLength;
+        int lastChecksum;       // CRC32 of the payload just read
+
+        RecordReader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        ByteBuffer read(long offset, int size, byte kind, int chunk) throws IOException {
+            if (size < RECORD_HEADER || offset < HEADER_SIZE) throw new IllegalStateException("Bad record offset");
+            ByteBuffer record;
+            if (size > BUFFER_SIZE) {
+                record = ByteBuffer.allocate(size);
+                readFully(channel, record, offset);
+                record.flip();
+            } else {
+                if (windowStart < 0 || offset < windowStart || offset + size > windowStart + windowLength) {
+                    window.clear();
+                    long end = Math.min(channel.size(), offset + BUFFER_SIZE);
+                    if (end < offset + size) throw new IOException("unexpected end of file");
+                    window.limit((int) (end - offset));
+                    readFully(channel, window, offset);
+                    windowStart = offset;
+                    windowLength = window.limit();
+                }
+                record = window.duplicate();
+                int at = (int) (offset - windowStart);
+                record.limit(at + size).position(at);
+                record = record.slice();
+            }
+            int length = size - RECORD_HEADER;
+            if (record.get(0) != kind || record.getInt(1) != chunk || record.getInt(5) != length) {
+                throw new IllegalStateException("Record at " + offset + " is not the one indexed");
+            }
+            ByteBuffer payload = record.duplicate().position(RECORD_HEADER);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if (record.getInt(9) != (int) crc.getValue()) throw new IllegalStateException("Checksum mismatch at " + offset);
+            lastChecksum = record.getInt(9);
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// Class SaveReport: What one SaveFile.save wrote and how long it took
+package smartfarm.model;
+
+public class SaveReport {
+    final boolean full;             // Whole file rewritten (first save, or compaction)
+    final int totalChunks;          // Cell and active index chunks the game has
+    int chunks;                     // ...and how many of them this save wrote
+    long bytes;
+    long fileSize;
+    long nanos;                     // Writing it
+    long pauseNanos;                // Taking its snapshot, on the game's thread
+    int copiedChunks;               // Chunks the game changed while it was written, copied for it
+
+    SaveReport(boolean full, int totalChunks) {
+        this.full = full;
+        this.totalChunks = totalChunks;
+    }
+
+    public boolean isFull() { return full; }
+    public int getTotalChunks() { return totalChunks; }
+    public int getChunks() { return chunks; }
+    public long getBytes() { return bytes; }
+    public long getFileSize() { return fileSize; }
+    public long getNanos() { return nanos; }
+    public long getPauseNanos() { return pauseNanos; }
+    public int getCopiedChunks() { return copiedChunks; }
+
+    @Override
+    public String toString() {
+        return String.format("%s save: %d of %d chunks, %,d bytes in %.1f ms after a %.2f ms pause (file %,d bytes)",
+                full ? "Full" : "Incremental", chunks, totalChunks, bytes, nanos / 1e6, pauseNanos / 1e6, fileSize);
+    }
+}
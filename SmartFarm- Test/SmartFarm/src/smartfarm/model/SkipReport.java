@@ -0,0 +1,83 @@
+// Class SkipReport: Summary of several days advanced back-to-back ("Skip N days")
+// Folds each day's DayReport into totals and weather spells (runs of days with the same weather)
+package smartfarm.model;
+
+import smartfarm.model.weather.Weather;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SkipReport {
+    int firstDay;
+    int lastDay;
+    int daysRun;
+    int moneyDelta;
+    boolean gameOver;                           // Stopped early because the game ended
+
+    int pestAttacks;
+    int newlyInfected;
+    int deaths;
+    int newlyHarvestable;
+    int cropsAlive;
+    int infectedCount;
+
+    // Weather in force on each ticked day, as spells
+    private final List<Weather> spellWeather = new ArrayList<>();
+    private int[] spellDays = new int[8];
+
+    void add(Weather tickWeather, DayReport day) {
+        if (daysRun == 0) firstDay = day.day;
+        lastDay = day.day;
+        daysRun++;
+        if (day.pestAttack) pestAttacks++;
+        newlyInfected += day.newlyInfected;
+        deaths += day.deaths;
+        newlyHarvestable += day.newlyHarvestable;
+        cropsAlive = day.cropsAlive;
+        infectedCount = day.infectedCount;
+
+        int last = spellWeather.size() - 1;
+        if (last >= 0 && spellWeather.get(last) == tickWeather) {
+            spellDays[last]++;
+        } else {
+            if (last + 1 == spellDays.length) spellDays = Arrays.copyOf(spellDays, spellDays.length * 2);
+            spellWeather.add(tickWeather);
+            spellDays[last + 1] = 1;
+        }
+    }
+
+    public int getFirstDay() { return firstDay; }
+    public int getLastDay() { return lastDay; }
+    public int getDaysRun() { return daysRun; }
+    public int getMoneyDelta() { return moneyDelta; }
+    public boolean isGameOver() { return gameOver; }
+    public int getPestAttacks() { return pestAttacks; }
+    public int getNewlyInfected() { return newlyInfected; }
+    public int getDeaths() { return deaths; }
+    public int getNewlyHarvestable() { return newlyHarvestable; }
+    public int getCropsAlive() { return cropsAlive; }
+    public int getInfectedCount() { return infectedCount; }
+    public int getSpellCount() { return spellWeather.size(); }
+    public Weather getSpellWeather(int spell) { return spellWeather.get(spell); }
+    public int getSpellDays(int spell) { return spellDays[spell]; }
+
+    public String getWeatherSummary(int maxSpells) {
+        // e.g. "Sunny x3, Cloudy x1, ... (+12 more)"
+        StringBuilder sb = new StringBuilder();
+        int shown = Math.min(maxSpells, spellWeather.size());
+        for (int s = 0; s < shown; s++) {
+            if (s > 0) sb.append(", ");
+            sb.append(spellWeather.get(s).getName()).append(" x").append(spellDays[s]);
+        }
+        if (spellWeather.size() > shown) sb.append(", ... (+").append(spellWeather.size() - shown).append(" more)");
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Days %d-%d (%d) | Pest attacks: %d | Infected: +%d | Deaths: %d | Ready: %d | Crops: %d | Money: %+d%s",
+            firstDay, lastDay, daysRun, pestAttacks, newlyInfected, deaths, newlyHarvestable, cropsAlive,
+            moneyDelta, gameOver ? " | GAME OVER" : "");
+    }
+}
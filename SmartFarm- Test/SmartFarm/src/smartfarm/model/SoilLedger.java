@@ -0,0 +1,85 @@
+// Class SoilLedger: O(1) farm-wide soil total while fallow soil recovers lazily
+// A fallow cell settled at day t with soil s is worth min(100, s + 2 * (day - t)) today. Until it
+// reaches 100 that is (s - 2t) + 2 * day, so unsaturated cells are summed as a base plus 2 * day per
+// cell. A small calendar (one bucket per day, at most 50 days ahead) moves each cell to the
+// saturated group on the day it reaches 100
+package smartfarm.model;
+
+class SoilLedger {
+    static final int MAX_SOIL = 100;
+    static final int FALLOW_GAIN = 2;            // Soil restored per fallow day
+
+    private static final int BUCKETS = 64;       // > MAX_SOIL / FALLOW_GAIN, so future days never alias
+
+    private long plantedSoil;                    // Planted cells: soil only changes on actions and deaths
+    private long saturated;                      // Fallow cells already at MAX_SOIL
+    private long unsaturated;                    // Fallow cells still recovering...
+    private long baseSum;                        // ...and the sum of their (s - 2t) bases
+    private final long[] bucketCount = new long[BUCKETS];
+    private final long[] bucketBase = new long[BUCKETS];
+
+    SoilLedger() {
+    }
+
+    SoilLedger(SoilLedger other) {
+        plantedSoil = other.plantedSoil;
+        saturated = other.saturated;
+        unsaturated = other.unsaturated;
+        baseSum = other.baseSum;
+        System.arraycopy(other.bucketCount, 0, bucketCount, 0, BUCKETS);
+        System.arraycopy(other.bucketBase, 0, bucketBase, 0, BUCKETS);
+    }
+
+    static int soilAt(int soil, int stamp, int day) {
+        return Math.min(MAX_SOIL, soil + FALLOW_GAIN * (day - stamp));
+    }
+
+    private static int saturationDay(int soil, int stamp) {
+        return stamp + (MAX_SOIL - soil + FALLOW_GAIN - 1) / FALLOW_GAIN;
+    }
+
+    void addPlanted(long delta) {
+        plantedSoil += delta;
+    }
+
+    void addFallow(int soil, int stamp, long cells) {
+        if (soil >= MAX_SOIL) {
+            saturated += cells;
+            return;
+        }
+        int b = saturationDay(soil, stamp) % BUCKETS;
+        long base = (long) (soil - FALLOW_GAIN * stamp) * cells;
+        bucketCount[b] += cells;
+        bucketBase[b] += base;
+        unsaturated += cells;
+        baseSum += base;
+    }
+
+    void removeFallow(int soil, int stamp, int day) {
+        // (soil, stamp) must be the values the cell was added with, or any later settlement of them
+        if (soil >= MAX_SOIL || saturationDay(soil, stamp) <= day) {
+            saturated--;
+            return;
+        }
+        int b = saturationDay(soil, stamp) % BUCKETS;
+        int base = soil - FALLOW_GAIN * stamp;
+        bucketCount[b]--;
+        bucketBase[b] -= base;
+        unsaturated--;
+        baseSum -= base;
+    }
+
+    void advanceTo(int day) {
+        // Cells reaching MAX_SOIL today stop growing
+        int b = day % BUCKETS;
+        saturated += bucketCount[b];
+        unsaturated -= bucketCount[b];
+        baseSum -= bucketBase[b];
+        bucketCount[b] = 0;
+        bucketBase[b] = 0;
+    }
+
+    long total(int day) {
+        return plantedSoil + saturated * MAX_SOIL + baseSum + FALLOW_GAIN * (long) day * unsaturated;
+    }
+}
@@ -0,0 +1,81 @@
+// Fork/join task for the daily tick
+// The active index (planted cells) is cut into fixed-size chunks (stripes); each leaf task runs the fused
+// tick over one stripe with that stripe's own random stream and report. Stripe boundaries do not depend
+// on the parallelism level and cells never read each other, so the result is identical to the sequential tick
+package smartfarm.model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+class TickTask extends RecursiveAction {
+    private final FarmGrid grid;
+    private final int waterEffect, fertilizerEffect, healthEffect;    // Zero when the weather was applied in bulk
+    private final double infectionRate;
+    private final SplittableRandom[] streams;
+    private final DayReport[] reports;
+    private final int stripeSize;
+    private final int fromStripe, toStripe;
+
+    TickTask(FarmGrid grid, int waterEffect, int fertilizerEffect, int healthEffect, double infectionRate, long seed,
+             int stripeSize) {
+        this.grid = grid;
+        this.waterEffect = waterEffect;
+        this.fertilizerEffect = fertilizerEffect;
+        this.healthEffect = healthEffect;
+        this.infectionRate = infectionRate;
+        this.stripeSize = stripeSize;
+        this.fromStripe = 0;
+        this.toStripe = (grid.getActiveCount() + stripeSize - 1) / stripeSize;
+
+        // One stream per stripe, derived from (seed, stripe), so the draws do not depend on scheduling
+        this.streams = new SplittableRandom[toStripe];
+        this.reports = new DayReport[toStripe];
+        for (int s = 0; s < toStripe; s++) {
+            streams[s] = GameRandom.stripe(seed, s);
+            reports[s] = new DayReport(grid.getTypeCount());
+        }
+    }
+
+    private TickTask(TickTask parent, int fromStripe, int toStripe) {
+        this.grid = parent.grid;
+        this.waterEffect = parent.waterEffect;
+        this.fertilizerEffect = parent.fertilizerEffect;
+        this.healthEffect = parent.healthEffect;
+        this.infectionRate = parent.infectionRate;
+        this.streams = parent.streams;
+        this.reports = parent.reports;
+        this.stripeSize = parent.stripeSize;
+        this.fromStripe = fromStripe;
+        this.toStripe = toStripe;
+    }
+
+    @Override
+    protected void compute() {
+        if (toStripe - fromStripe > 1) {
+            int mid = (fromStripe + toStripe) >>> 1;
+            invokeAll(new TickTask(this, fromStripe, mid), new TickTask(this, mid, toStripe));
+            return;
+        }
+        runSequentially();     // One stripe, or none when nothing is planted
+    }
+
+    void runSequentially() {
+        for (int s = fromStripe; s < toStripe; s++) {
+            runStripe(s);
+        }
+    }
+
+    private void runStripe(int s) {
+        int from = s * stripeSize;
+        int to = Math.min(grid.getActiveCount(), from + stripeSize);
+        grid.tickRange(from, to, waterEffect, fertilizerEffect, healthEffect, infectionRate, streams[s], reports[s]);
+    }
+
+    DayReport finish() {
+        // Merge the stripe reports in order and let the grid apply them
+        DayReport total = new DayReport(grid.getTypeCount());
+        for (DayReport report : reports) total.merge(report);
+        grid.endTick(total);
+        return total;
+    }
+}
@@ -0,0 +1,75 @@
+// Class TimerWheel: Calendar queue of grid slots keyed by the day of their next event
+// A hashed timer wheel with one bucket per day (mod 256). Entries further than one turn ahead stay in
+// their bucket until their round comes; rescheduled or cancelled entries are dropped lazily when their
+// bucket is next expired, so scheduling is O(1) and a day costs O(events due that day)
+package smartfarm.model;
+
+import java.util.Arrays;
+
+class TimerWheel {
+    static final int NEVER = Integer.MAX_VALUE;
+
+    private static final int BUCKETS = 256;
+    private static final int MASK = BUCKETS - 1;
+
+    private final int[] due;                    // Per slot: the day it is scheduled for, or NEVER
+    private final int[][] buckets = new int[BUCKETS][];
+    private final int[] bucketSize = new int[BUCKETS];
+    private int[] fired = new int[64];
+
+    TimerWheel(int slots) {
+        this.due = new int[slots];
+        Arrays.fill(due, NEVER);
+    }
+
+    TimerWheel(TimerWheel other) {
+        // Copy for a forked grid; stale entries come along and are dropped as usual
+        this.due = other.due.clone();
+        for (int b = 0; b < BUCKETS; b++) {
+            if (other.buckets[b] != null) buckets[b] = Arrays.copyOf(other.buckets[b], Math.max(16, other.bucketSize[b]));
+            bucketSize[b] = other.bucketSize[b];
+        }
+    }
+
+    void schedule(int slot, int day) {
+        due[slot] = day;
+        int b = day & MASK;
+        int[] list = buckets[b];
+        if (list == null) {
+            list = buckets[b] = new int[16];
+        } else if (bucketSize[b] == list.length) {
+            list = buckets[b] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[bucketSize[b]++] = slot;
+    }
+
+    void cancel(int slot) {
+        due[slot] = NEVER;
+    }
+
+    int expire(int day) {
+        // Collect the slots due today (read them with firedAt) and keep entries for later rounds
+        int b = day & MASK;
+        int[] list = buckets[b];
+        int n = bucketSize[b];
+        int kept = 0;
+        int count = 0;
+        for (int j = 0; j < n; j++) {
+            int slot = list[j];
+            int d = due[slot];
+            if (d == day) {
+                if (count == fired.length) fired = Arrays.copyOf(fired, count * 2);
+                fired[count++] = slot;
+                due[slot] = NEVER; // A duplicate entry for the same day is now stale
+            } else if (d != NEVER && d > day && (d & MASK) == b) {
+                list[kept++] = slot;
+            }
+        }
+        bucketSize[b] = kept;
+        return count;
+    }
+
+    int firedAt(int k) {
+        return fired[k];
+    }
+}
@@ -0,0 +1,52 @@
+// Class VectorWeatherKernel: WeatherKernel on jdk.incubator.vector byte lanes
+// Each step loads one vector of crop ids, turns it into a "has a crop" mask and, for each non-zero effect,
+// does add / max / min on the level column and blends the result back under the mask. Only this class
+// touches the incubator API, so the game still runs (on the scalar kernel) without the module
+package smartfarm.model;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorWeatherKernel extends WeatherKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private VectorWeatherKernel() {
+    }
+
+    static WeatherKernel create() {
+        // Narrow species mean no usable SIMD: the API would then run as slow Java code
+        return SPECIES.length() >= 16 ? new VectorWeatherKernel() : null;
+    }
+
+    @Override
+    public String getName() { return "vector x" + SPECIES.length(); }
+
+    @Override
+    void apply(byte[] crop, byte[] water, byte[] fertilizer, byte[] health, int from, int to,
+               int waterEffect, int fertilizerEffect, int healthEffect) {
+        if (!fitsInBytes(waterEffect, fertilizerEffect, healthEffect)) {
+            applyScalar(crop, water, fertilizer, health, from, to, waterEffect, fertilizerEffect, healthEffect);
+            return;
+        }
+        byte w = (byte) waterEffect, f = (byte) fertilizerEffect, h = (byte) healthEffect;
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            VectorMask<Byte> planted = ByteVector.fromArray(SPECIES, crop, i)
+                    .compare(VectorOperators.NE, (byte) FarmGrid.NO_CROP);
+            if (!planted.anyTrue()) continue;
+            if (w != 0) update(water, i, w, 10, planted);
+            if (f != 0) update(fertilizer, i, f, 10, planted);
+            if (h != 0) update(health, i, h, 100, planted);
+        }
+        applyScalar(crop, water, fertilizer, health, i, to, waterEffect, fertilizerEffect, healthEffect);
+    }
+
+    private static void update(byte[] level, int i, byte effect, int max, VectorMask<Byte> planted) {
+        ByteVector v = ByteVector.fromArray(SPECIES, level, i);
+        ByteVector clamped = v.add(effect).max((byte) 0).min((byte) max);
+        v.blend(clamped, planted).intoArray(level, i);
+    }
+}
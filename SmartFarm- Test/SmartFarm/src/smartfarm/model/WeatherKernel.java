@@ -0,0 +1,71 @@
+// Class WeatherKernel: Bulk application of one day's weather to the grid columns
+// Weather.applyEffect does three clamped updates per plant through virtual calls; on the FarmGrid arrays the
+// same thing is a saturating add over whole columns, masked to the cells that hold a crop. The vector
+// kernel (jdk.incubator.vector) is used when the module is present (--add-modules jdk.incubator.vector)
+// and the CPU has real SIMD lanes; otherwise the scalar kernel gives the same result
+package smartfarm.model;
+
+public abstract class WeatherKernel {
+    private static final WeatherKernel SCALAR = new ScalarKernel();
+    private static final WeatherKernel VECTOR = loadVector();
+
+    public static WeatherKernel scalar() { return SCALAR; }
+
+    public static WeatherKernel vector() {
+        // null when the Vector API is not available
+        return VECTOR;
+    }
+
+    public static WeatherKernel best() {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+    private static WeatherKernel loadVector() {
+        if (Boolean.getBoolean("smartfarm.scalarWeather")) return null;
+        try {
+            return VectorWeatherKernel.create();
+        } catch (LinkageError e) {
+            // jdk.incubator.vector was not added to the module graph
+            return null;
+        }
+    }
+
+    public abstract String getName();
+
+    // Adds the effects to water [0, 10], fertilizer [0, 10] and health [0, 100] of every cell in [from, to)
+    // whose crop is not NO_CROP; a zero effect leaves its column untouched
+    abstract void apply(byte[] crop, byte[] water, byte[] fertilizer, byte[] health, int from, int to,
+                        int waterEffect, int fertilizerEffect, int healthEffect);
+
+    static boolean fitsInBytes(int waterEffect, int fertilizerEffect, int healthEffect) {
+        // The vector kernel adds in byte lanes, so level + effect must not wrap around
+        return waterEffect >= -100 && waterEffect <= 100 && fertilizerEffect >= -100 && fertilizerEffect <= 100
+                && healthEffect >= -27 && healthEffect <= 27;
+    }
+
+    static void applyScalar(byte[] crop, byte[] water, byte[] fertilizer, byte[] health, int from, int to,
+                            int waterEffect, int fertilizerEffect, int healthEffect) {
+        if (waterEffect != 0) addClamped(crop, water, from, to, waterEffect, 10);
+        if (fertilizerEffect != 0) addClamped(crop, fertilizer, from, to, fertilizerEffect, 10);
+        if (healthEffect != 0) addClamped(crop, health, from, to, healthEffect, 100);
+    }
+
+    private static void addClamped(byte[] crop, byte[] level, int from, int to, int effect, int max) {
+        // Branch-free: an empty cell (crop -1) gets a zero effect, which leaves its in-range level as it is
+        for (int i = from; i < to; i++) {
+            int planted = ~(crop[i] >> 31);
+            level[i] = (byte) Math.min(max, Math.max(0, level[i] + (effect & planted)));
+        }
+    }
+
+    private static final class ScalarKernel extends WeatherKernel {
+        @Override
+        public String getName() { return "scalar"; }
+
+        @Override
+        void apply(byte[] crop, byte[] water, byte[] fertilizer, byte[] health, int from, int to,
+                   int waterEffect, int fertilizerEffect, int healthEffect) {
+            applyScalar(crop, water, fertilizer, health, from, to, waterEffect, fertilizerEffect, healthEffect);
+        }
+    }
+}
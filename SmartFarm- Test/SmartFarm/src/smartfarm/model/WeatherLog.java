@@ -0,0 +1,58 @@
+// Class WeatherLog: The weather effects in force on each day, as runs of days with the same weather
+// Lets a plant that has not been touched for a while be settled segment by segment instead of day by day
+package smartfarm.model;
+
+import java.util.Arrays;
+
+class WeatherLog {
+    private int[] start = new int[16];
+    private int[] water = new int[16];
+    private int[] fertilizer = new int[16];
+    private int[] health = new int[16];
+    private int count;
+
+    WeatherLog() {
+    }
+
+    WeatherLog(WeatherLog other) {
+        this.start = other.start.clone();
+        this.water = other.water.clone();
+        this.fertilizer = other.fertilizer.clone();
+        this.health = other.health.clone();
+        this.count = other.count;
+    }
+
+    boolean record(int day, int waterEffect, int fertilizerEffect, int healthEffect) {
+        // Starts a new segment on the given day, unless the weather effects are unchanged
+        int last = count - 1;
+        if (count > 0 && water[last] == waterEffect && fertilizer[last] == fertilizerEffect
+                && health[last] == healthEffect) {
+            return false;
+        }
+        if (count == start.length) {
+            int capacity = count * 2;
+            start = Arrays.copyOf(start, capacity);
+            water = Arrays.copyOf(water, capacity);
+            fertilizer = Arrays.copyOf(fertilizer, capacity);
+            health = Arrays.copyOf(health, capacity);
+        }
+        start[count] = day;
+        water[count] = waterEffect;
+        fertilizer[count] = fertilizerEffect;
+        health[count] = healthEffect;
+        count++;
+        return true;
+    }
+
+    int segmentAt(int day) {
+        // Last segment starting on or before the given day
+        int s = Arrays.binarySearch(start, 0, count, day);
+        return s >= 0 ? s : Math.max(0, -s - 2);
+    }
+
+    int last() { return count - 1; }
+    int end(int s) { return s + 1 < count ? start[s + 1] - 1 : Integer.MAX_VALUE; }
+    int water(int s) { return water[s]; }
+    int fertilizer(int s) { return fertilizer[s]; }
+    int health(int s) { return health[s]; }
+}
@@ -0,0 +1,117 @@
+// Class WeatherZones: The farm split into rectangular weather tiles, each with its own Markov weather state
+// Zones are numbered row-major over the tile grid; edge tiles are cut short where the farm ends
+package smartfarm.model;
+
+import smartfarm.model.weather.Weather;
+import smartfarm.model.weather.WeatherEngine;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class WeatherZones {
+    private final int rows, cols;
+    private final int tileRows, tileCols;
+    private final int zoneRows, zoneCols;
+    private final Weather[] weather;
+
+    // Effects of each zone's current weather, as the grid ticks take them
+    private final int[] waterEffect, fertilizerEffect, healthEffect;
+
+    public WeatherZones(int rows, int cols, int tileRows, int tileCols, Weather initial) {
+        if (tileRows < 1 || tileCols < 1) throw new IllegalArgumentException("Weather tiles must be at least 1x1");
+        this.rows = rows;
+        this.cols = cols;
+        this.tileRows = Math.min(tileRows, rows);
+        this.tileCols = Math.min(tileCols, cols);
+        this.zoneRows = (rows + this.tileRows - 1) / this.tileRows;
+        this.zoneCols = (cols + this.tileCols - 1) / this.tileCols;
+        int count = zoneRows * zoneCols;
+        this.weather = new Weather[count];
+        this.waterEffect = new int[count];
+        this.fertilizerEffect = new int[count];
+        this.healthEffect = new int[count];
+        for (int z = 0; z < count; z++) set(z, initial);
+    }
+
+    WeatherZones(WeatherZones other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.tileRows = other.tileRows;
+        this.tileCols = other.tileCols;
+        this.zoneRows = other.zoneRows;
+        this.zoneCols = other.zoneCols;
+        this.weather = other.weather.clone();
+        this.waterEffect = other.waterEffect.clone();
+        this.fertilizerEffect = other.fertilizerEffect.clone();
+        this.healthEffect = other.healthEffect.clone();
+    }
+
+    long stateHash() {
+        long h = weather.length;
+        for (Weather w : weather) h = (h ^ w.getId()) * 0x9E3779B97F4A7C15L;
+        return h;
+    }
+
+    void set(int z, Weather w) {
+        weather[z] = w;
+        waterEffect[z] = w.getWaterEffect();
+        fertilizerEffect[z] = w.getFertilizerEffect();
+        healthEffect[z] = w.getHealthEffect();
+    }
+
+    public void setAll(Weather w) {
+        for (int z = 0; z < weather.length; z++) set(z, w);
+    }
+
+    void advance(int z, SplittableRandom random) {
+        // Tomorrow's weather for one zone
+        set(z, WeatherEngine.next(weather[z], random));
+    }
+
+    void change(int z, SplittableRandom random) {
+        // Force a weather change event in one zone (which may still land on the same weather)
+        set(z, WeatherEngine.change(weather[z], random));
+    }
+
+    public Weather getPrevailing() {
+        // The weather covering the most cells (lowest state id on a tie)
+        long[] area = area();
+        int best = 0;
+        for (int s = 1; s < area.length; s++) if (area[s] > area[best]) best = s;
+        return WeatherEngine.getState(best);
+    }
+
+    public double[] getShare() {
+        // Fraction of the farm under each weather state (WeatherEngine order)
+        long[] area = area();
+        double[] share = new double[area.length];
+        for (int s = 0; s < area.length; s++) share[s] = area[s] / ((double) rows * cols);
+        return share;
+    }
+
+    private long[] area() {
+        long[] area = new long[WeatherEngine.getStates().length];
+        for (int z = 0; z < weather.length; z++) area[weather[z].getId()] += (long) getZoneHeight(z) * getZoneWidth(z);
+        return area;
+    }
+
+    public int zoneOf(int row, int col) {
+        return (row / tileRows) * zoneCols + col / tileCols;
+    }
+
+    public int getCount() { return weather.length; }
+    public Weather getWeather(int z) { return weather[z]; }
+    public Weather[] getWeathers() { return Arrays.copyOf(weather, weather.length); }
+    public int getTileRows() { return tileRows; }
+    public int getTileCols() { return tileCols; }
+    public int getZoneRows() { return zoneRows; }
+    public int getZoneCols() { return zoneCols; }
+    public int getFirstRow(int z) { return (z / zoneCols) * tileRows; }
+    public int getFirstCol(int z) { return (z % zoneCols) * tileCols; }
+    public int getZoneHeight(int z) { return Math.min(tileRows, rows - getFirstRow(z)); }
+    public int getZoneWidth(int z) { return Math.min(tileCols, cols - getFirstCol(z)); }
+
+    int[] waterEffects() { return waterEffect; }
+    int[] fertilizerEffects() { return fertilizerEffect; }
+    int[] healthEffects() { return healthEffect; }
+}
@@ -0,0 +1,29 @@
+// Fork/join task running one action per weather zone
+// Zones never share cells or random streams, so any split of the zone range gives the same result
+package smartfarm.model;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+class ZoneTask extends RecursiveAction {
+    private final IntConsumer action;
+    private final int fromZone, toZone;
+    private final int grain;
+
+    ZoneTask(IntConsumer action, int fromZone, int toZone, int grain) {
+        this.action = action;
+        this.fromZone = fromZone;
+        this.toZone = toZone;
+        this.grain = grain;
+    }
+
+    @Override
+    protected void compute() {
+        if (toZone - fromZone > grain) {
+            int mid = (fromZone + toZone) >>> 1;
+            invokeAll(new ZoneTask(action, fromZone, mid, grain), new ZoneTask(action, mid, toZone, grain));
+            return;
+        }
+        for (int z = fromZone; z < toZone; z++) action.accept(z);
+    }
+}
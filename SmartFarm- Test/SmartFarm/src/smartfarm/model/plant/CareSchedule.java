@@ -0,0 +1,222 @@
+// Class CareSchedule: The profit-maximising daily care for one crop type on one soil band, solved exactly
+// A plant's future depends only on (daysGrown, water, fertilizer, health, infected) and the weather of its
+// cell, all small and bounded, so every such state is solved once by dynamic programming: the value of a
+// state is the best, over watering / fertilizing / treating today, of the care cost plus the expected value
+// after today's tick, averaged over the pest roll and tomorrow's weather (the WeatherEngine chain). Reaching
+// the harvest stage pays the harvest value for the soil band, dying pays nothing. Every day the plant holds
+// its cell costs a rent of what a well-kept crop of the type earns per day, so waiting for free rain is
+// weighed against the harvest it delays.
+// Days only go up, so the days are solved from the last one back; within one day a treated plant can gain
+// health while it waits, so each day is iterated until its values settle. The best action of every state is
+// kept in a byte table, so advice for a cell is a single array read. Tables are built on first use per crop
+// and band (prepareAll builds them ahead of time) and shared
+package smartfarm.model.plant;
+
+import smartfarm.model.weather.Weather;
+import smartfarm.model.weather.WeatherEngine;
+import smartfarm.util.Constants;
+
+public final class CareSchedule {
+    public static final int WATER = 1, FERTILIZE = 2, TREAT = 4;    // Action bits
+    public static final int HARVEST = 8;                           // Ripe: nothing to do but harvest
+
+    private static final int LEVELS = 11;       // Water and fertilizer 0..10
+    private static final int HEALTHS = 101;     // Health 0..100
+    private static final int WEATHERS = WeatherEngine.getStates().length;
+    private static final int BANDS = 3;         // Soil < 40, 40..79, >= 80 (the harvest bonus bands)
+
+    // Expected infection chance per day: attack probability times the mean infection rate of an attack
+    private static final double PEST_HIT = Constants.PEST_ATTACK_PROBABILITY * 0.2;
+    private static final double WATER_COST = Constants.WATER_AMOUNT_PER_USE * Constants.WATER_PRICE;
+    private static final double FERTILIZER_COST = Constants.FERTILIZER_AMOUNT_PER_USE * Constants.FERTILIZER_PRICE;
+    private static final double TREAT_COST = Constants.PESTICIDE_PRICE;
+    private static final double SETTLED = 1e-4;               // Dollars
+    private static final int MAX_SWEEPS = 200;
+
+    private static final CareSchedule[][] CACHE = new CareSchedule[PlantType.count()][BANDS];
+
+    private final PlantType type;
+    private final int band;
+    private final int days;                     // Days of growth to reach the harvest stage
+    private final int waterNeed, fertilizerNeed, pestDamage;
+    private final double harvestValue;
+    private final double rent;                  // Per day in the cell
+    private final float[] value;
+    private final byte[] action;
+
+    private CareSchedule(PlantType type, int band) {
+        this.type = type;
+        this.band = band;
+        this.days = 3 * type.getGrowthTime();
+        this.waterNeed = type.getWaterNeed();
+        this.fertilizerNeed = type.getFertilizerNeed();
+        this.pestDamage = type.getPestDamage();
+        int harvest = type.getHarvestValue();
+        // Same bonus/penalty as FarmGrid.harvest
+        this.harvestValue = band == 2 ? (int) (harvest * 1.2) : band == 0 ? (int) (harvest * 0.8) : harvest;
+        double care = days * (waterNeed * Constants.WATER_PRICE + fertilizerNeed * Constants.FERTILIZER_PRICE);
+        this.rent = Math.max(0, (harvest - type.getSeedCost() - care) / days);
+        int states = days * LEVELS * LEVELS * HEALTHS * 2 * WEATHERS;
+        this.value = new float[states];
+        this.action = new byte[states];
+        solve();
+    }
+
+    public static CareSchedule of(PlantType type, int soil) {
+        // The table for the crop and the band of the soil, built the first time it is asked for (a second of
+        // work for the slowest crop, so the UI asks with ifReady and leaves the building to prepareAll)
+        CareSchedule schedule = ifReady(type, soil);
+        if (schedule != null) return schedule;
+        schedule = new CareSchedule(type, band(soil));
+        synchronized (CACHE) {
+            // Two threads may race to build the same table; the first one kept wins
+            CareSchedule kept = CACHE[type.getId()][schedule.band];
+            if (kept != null) return kept;
+            CACHE[type.getId()][schedule.band] = schedule;
+        }
+        return schedule;
+    }
+
+    public static CareSchedule ifReady(PlantType type, int soil) {
+        // The table if it has been built, otherwise null
+        synchronized (CACHE) {
+            return CACHE[type.getId()][band(soil)];
+        }
+    }
+
+    private static int band(int soil) {
+        return soil >= 80 ? 2 : soil < 40 ? 0 : 1;
+    }
+
+    public static void prepareAll() {
+        // Build every table now, e.g. on a background thread at start-up
+        for (PlantType type : PlantType.values()) {
+            for (int soil : new int[] {0, 40, 80}) of(type, soil);
+        }
+    }
+
+    private int index(int day, int water, int fertilizer, int health, boolean infected, int weather) {
+        return ((((day * LEVELS + water) * LEVELS + fertilizer) * HEALTHS + health) * 2 + (infected ? 1 : 0))
+                * WEATHERS + weather;
+    }
+
+    private void solve() {
+        double[][] daily = new double[WEATHERS][WEATHERS];
+        for (int from = 0; from < WEATHERS; from++) {
+            for (int to = 0; to < WEATHERS; to++) {
+                daily[from][to] = WeatherEngine.getDailyProbability(WeatherEngine.getState(from), WeatherEngine.getState(to));
+            }
+        }
+        for (int d = days - 1; d >= 0; d--) {
+            // Health ascending, so a waiting plant (which loses health) mostly reads values already updated
+            double change;
+            int sweeps = 0;
+            do {
+                change = 0;
+                for (int h = 0; h < HEALTHS; h++) {
+                    for (int w = 0; w < LEVELS; w++) {
+                        for (int f = 0; f < LEVELS; f++) {
+                            for (int inf = 0; inf < 2; inf++) {
+                                for (int wx = 0; wx < WEATHERS; wx++) {
+                                    change = Math.max(change, update(d, w, f, h, inf == 1, wx, daily[wx]));
+                                }
+                            }
+                        }
+                    }
+                }
+            } while (change > SETTLED && ++sweeps < MAX_SWEEPS);
+        }
+    }
+
+    private double update(int d, int w, int f, int h, boolean infected, int wx, double[] tomorrow) {
+        // Best action for one state; returns how much its value moved
+        double best = Double.NEGATIVE_INFINITY;
+        int bestAction = 0;
+        for (int a = 0; a < TREAT * 2; a++) {
+            if ((a & TREAT) != 0 && !infected) continue;
+            double cost = ((a & WATER) != 0 ? WATER_COST : 0) + ((a & FERTILIZE) != 0 ? FERTILIZER_COST : 0)
+                    + ((a & TREAT) != 0 ? TREAT_COST : 0);
+            double v = afterTick(d, (a & WATER) != 0 ? Math.min(10, w + Constants.WATER_AMOUNT_PER_USE) : w,
+                    (a & FERTILIZE) != 0 ? Math.min(10, f + Constants.FERTILIZER_AMOUNT_PER_USE) : f,
+                    (a & TREAT) != 0 ? Math.min(100, h + 20) : h, infected && (a & TREAT) == 0, wx, tomorrow) - cost - rent;
+            // Ties keep the first action found, i.e. the least care
+            if (v > best + 1e-9) {
+                best = v;
+                bestAction = a;
+            }
+        }
+        int i = index(d, w, f, h, infected, wx);
+        float settled = (float) best;
+        double change = Math.abs(settled - value[i]);
+        value[i] = settled;
+        action[i] = (byte) bestAction;
+        return change;
+    }
+
+    private double afterTick(int d, int w, int f, int h, boolean infected, int wx, double[] tomorrow) {
+        // The same updates as FarmGrid.tickRange: weather, then growth, then the pest roll
+        Weather weather = WeatherEngine.getState(wx);
+        w = Math.min(10, Math.max(0, w + weather.getWaterEffect()));
+        f = Math.min(10, Math.max(0, f + weather.getFertilizerEffect()));
+        h = Math.min(100, Math.max(0, h + weather.getHealthEffect()));
+
+        boolean grows = w >= waterNeed && f >= fertilizerNeed;
+        w = Math.max(0, w - waterNeed);
+        f = Math.max(0, f - fertilizerNeed);
+        h = grows ? Math.min(100, h + 5) : h - 20;
+        if (infected) h -= pestDamage;
+        if (h <= 0) return 0;
+        int next = grows ? d + 1 : d;
+        if (next >= days) return harvestValue;
+
+        double expected = 0;
+        for (int to = 0; to < WEATHERS; to++) {
+            double p = tomorrow[to];
+            if (p == 0) continue;
+            double stay = value[index(next, w, f, h, infected, to)];
+            double hit = infected ? stay : value[index(next, w, f, h, true, to)];
+            expected += p * ((1 - PEST_HIT) * stay + PEST_HIT * hit);
+        }
+        return expected;
+    }
+
+    public int getAction(int daysGrown, int water, int fertilizer, int health, boolean infected, Weather weather) {
+        // Today's best care for a plant in this state under the weather of its cell
+        if (daysGrown >= days) return HARVEST;
+        return action[lookup(daysGrown, water, fertilizer, health, infected, weather)];
+    }
+
+    public double getExpectedProfit(int daysGrown, int water, int fertilizer, int health, boolean infected,
+                                    Weather weather) {
+        // What the plant is still expected to earn, net of its care and rent, when cared for this way
+        if (daysGrown >= days) return harvestValue;
+        return value[lookup(daysGrown, water, fertilizer, health, infected, weather)];
+    }
+
+    private int lookup(int daysGrown, int water, int fertilizer, int health, boolean infected, Weather weather) {
+        return index(Math.max(0, daysGrown), clamp(water, 10), clamp(fertilizer, 10), clamp(health, 100), infected,
+                weather.getId());
+    }
+
+    private static int clamp(int x, int max) {
+        return Math.min(max, Math.max(0, x));
+    }
+
+    public static String describe(int action) {
+        if (action == HARVEST) return "Harvest";
+        if (action == 0) return "Nothing today";
+        StringBuilder sb = new StringBuilder();
+        if ((action & TREAT) != 0) sb.append("Treat pests");
+        if ((action & WATER) != 0) sb.append(sb.length() > 0 ? " + water" : "Water");
+        if ((action & FERTILIZE) != 0) sb.append(sb.length() > 0 ? " + fertilize" : "Fertilize");
+        return sb.toString();
+    }
+
+    public PlantType getType() { return type; }
+    public int getSoilBand() { return band; }
+
+    @Override
+    public String toString() {
+        return String.format("%s care schedule, soil band %d: %d states", type.getName(), band, action.length);
+    }
+}
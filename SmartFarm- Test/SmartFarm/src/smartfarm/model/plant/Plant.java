@@ -1,9 +1,11 @@
-// Abstract class representing all types of crops in the game
-// This class defines common attributes (price, growth time, water/fertilizer requirements)
+// Class representing a crop in the game
+// The fixed attributes (price, growth time, water/fertilizer requirements) come from its PlantType
 // Contains core logic for growth, resource consumption, and health
 package smartfarm.model.plant;
 
-public abstract class Plant {
+import smartfarm.model.FarmGrid;
+
+public class Plant {
     
     public enum Stage {
         // Enum defining the growth stages (lifecycle) of a plant
@@ -33,131 +35,105 @@ public abstract class Plant {
             return this == SEED || this == SEEDLING || this == MATURE;
         }
     }
-    // Fixed attributes (Stats) of each crop type (Wheat, Corn, etc.)
-    private String displayName;
-    private int seedCost;
-    private int harvestValue;
-    private int growthTime;
-    private int waterNeed;
-    private int fertilizerNeed;
-    private String harvestEmoji;
-
-    // Attributes that change over time (State)
-    private Stage stage; 
-    private int daysGrown;
-    private int waterLevel;
-    private int fertilizerLevel;
-    private int health;                   // Hidden from external access
-    private boolean isPestInfected;
-
-    public Plant(String displayName, int seedCost, int harvestValue, 
-                 int growthTime, int waterNeed, int fertilizerNeed, String harvestEmoji) {
-        this.displayName = displayName;
-        this.seedCost = seedCost;
-        this.harvestValue = harvestValue;
-        this.growthTime = growthTime;
-        this.waterNeed = waterNeed;
-        this.fertilizerNeed = fertilizerNeed;
-        this.harvestEmoji = harvestEmoji;
-        // Default initial state
-        this.stage = Stage.SEED;
-        this.daysGrown = 0;
-        this.waterLevel = 0;
-        this.fertilizerLevel = 0;
-        this.health = 100;
-        this.isPestInfected = false;
+    // Fixed attributes (Stats) of each crop type (Wheat, Corn, etc.), shared by all plants of the type
+    private final PlantType type;
+
+    // Attributes that change over time (State) live in a FarmGrid slot
+    // A new plant reads as a fresh seed (the getters below) and only gets a private one-cell grid if something
+    // changes it. Planting copies its state into a farm slot; the planted crop is then read through views of
+    // that slot, which keep their last state once the slot is vacated
+    private FarmGrid grid;
+    private int index;
+
+    public Plant(PlantType type) {
+        if (type == null) throw new IllegalArgumentException("Unknown crop type");
+        this.type = type;
+    }
+
+    protected Plant(PlantType type, FarmGrid grid, int index) {
+        // A view of the plant held in a grid slot (see FarmGrid.plantAt)
+        this.type = type;
+        this.grid = grid;
+        this.index = index;
+    }
+
+    private FarmGrid slot() {
+        // The grid holding this plant's state, giving an unplanted plant its own
+        if (grid == null) {
+            FarmGrid own = new FarmGrid(1, 1);
+            own.seed(0, this);
+            grid = own;
+            index = 0;
+        }
+        return grid;
+    }
+
+    protected final void keepState() {
+        // Move the state this plant reads into a grid of its own, so it no longer follows its old slot
+        FarmGrid own = new FarmGrid(1, 1);
+        own.plant(0, this);
+        grid = own;
+        index = 0;
     }
 
     public void water(int amount) {
         // Maximum storage limit is 10 units of water
-        waterLevel = Math.min(waterLevel + amount, 10);
+        slot().water(index, amount);
     }
 
     public void fertilize(int amount) {
-        fertilizerLevel = Math.min(fertilizerLevel + amount, 10);
+        slot().fertilize(index, amount);
     }
 
     public void infectWithPest() {
         // Infect the plant (due to a random event from GameState)
-        this.isPestInfected = true;
+        slot().infect(index);
     }
 
     public void treatPest() {
         // Remove pests and restore 20 health points (up to a maximum of 100)
-        this.isPestInfected = false;
-        this.health = Math.min(100, health + 20);
+        slot().treatPest(index);
     }
     
     public void adjustHealth(int amount) {
         // Ensure health always stays within the range [0, 100]
-        this.health = Math.min(100, Math.max(0, this.health + amount));
+        slot().adjustHealth(index, amount);
     }
     
-    public int pestDamage() {
-		return 15; 
-	}
-    
     public boolean updateDaily() {
-        if (stage == Stage.HARVEST || stage == Stage.EMPTY) {
-            return true; 
-        }
-
-        boolean hasEnoughWater = waterLevel >= waterNeed;
-        boolean hasEnoughFertilizer = fertilizerLevel >= fertilizerNeed;
-
-        waterLevel = Math.max(0, waterLevel - waterNeed);
-        fertilizerLevel = Math.max(0, fertilizerLevel - fertilizerNeed);
-
-        if (!hasEnoughWater || !hasEnoughFertilizer) {
-            health -= 20;
-        } else {
-            health = Math.min(100, health + 5);
-        }
-
-        if (isPestInfected) {
-            health -= pestDamage();
-        }
-
-        if (stage.canGrow() && hasEnoughWater && hasEnoughFertilizer) {
-            daysGrown++;
-            
-            if (daysGrown >= growthTime && stage == Stage.SEED) {
-                stage = Stage.SEEDLING;
-            } else if (daysGrown >= growthTime * 2 && stage == Stage.SEEDLING) {
-                stage = Stage.MATURE;
-            } else if (daysGrown >= growthTime * 3 && stage == Stage.MATURE) {
-                stage = Stage.HARVEST;
-            }
-        }
-        
-        if (health <= 0) {
-			stage = Stage.EMPTY;
-			return false; 
-		}
-        
-        return true;
+        return slot().grow(index);
     }
 
     
-    public String getDisplayName() { return displayName; }
-    public int getSeedCost() { return seedCost; }
-    public int getHarvestValue() { return harvestValue; }
-
-    public Stage getStage() { return stage; }
+    public PlantType getType() { return type; }
+    public String getDisplayName() { return type.getName(); }
+    public int getSeedCost() { return type.getSeedCost(); }
+    public int getHarvestValue() { return type.getHarvestValue(); }
+    public int getGrowthTime() { return type.getGrowthTime(); }
+    public int getWaterNeed() { return type.getWaterNeed(); }
+    public int getFertilizerNeed() { return type.getFertilizerNeed(); }
+    public int getPestDamage() { return type.getPestDamage(); }
+
+    // Default initial state until the plant has a slot
+    public Stage getStage() { return grid == null ? Stage.SEED : grid.getStage(index); }
     
-    public int getHealth() { return health; }
-    public boolean isPestInfected() { return isPestInfected; }
+    public int getDaysGrown() { return grid == null ? 0 : grid.getDaysGrown(index); }
+    public int getWaterLevel() { return grid == null ? 0 : grid.getWaterLevel(index); }
+    public int getFertilizerLevel() { return grid == null ? 0 : grid.getFertilizerLevel(index); }
+    public int getHealth() { return grid == null ? 100 : grid.getHealth(index); }
+    public boolean isPestInfected() { return grid != null && grid.isInfected(index); }
 
     public String getDisplayEmoji() {
         // Get the image to display on the Grid
-        if (stage == Stage.HARVEST) return harvestEmoji;
+        Stage stage = getStage();
+        if (stage == Stage.HARVEST) return type.getHarvestEmoji();
         return stage.getDefaultEmoji();
     }
 
     public String getInfo() {
         return String.format("%s - %s\nDays: %d | Water: %d | Fertilizer: %d | HP: %d%s",
-            displayName, stage.getDisplayName(), daysGrown, waterLevel, fertilizerLevel, health,
-            isPestInfected ? " [🐛 PEST]" : "");
+            type.getName(), getStage().getDisplayName(), getDaysGrown(), getWaterLevel(), getFertilizerLevel(),
+            getHealth(), isPestInfected() ? " [🐛 PEST]" : "");
     }
 }
 
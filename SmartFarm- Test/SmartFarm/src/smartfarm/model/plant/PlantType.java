@@ -0,0 +1,160 @@
+// Class PlantType: The fixed stats of one crop type, stored once and shared by every plant of that type
+// Types are loaded from crops.csv (next to this class, or the file named by -Dsmartfarm.crops) when the
+// game starts; the four standard crops are built in as a fallback. A type is identified by a small id
+// (its line in the file), which is what the FarmGrid stores per cell
+package smartfarm.model.plant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public final class PlantType {
+    public static final int MAX_TYPES = Byte.MAX_VALUE;     // The grid keeps the id in a byte
+    public static final int MAX_GROWTH_TIME = Short.MAX_VALUE / 3;  // Days to harvest (3x) must fit the grid's short
+
+    private static final String DEFAULTS =
+            "Wheat,5,50,1,2,2,15,🌾\n"
+            + "Corn,10,80,2,3,3,20,🌽\n"
+            + "Tomato,15,120,3,4,3,10,🍅\n"
+            + "Potato,8,60,1,2,2,8,🥔\n";
+
+    private static final PlantType[] TYPES;
+    private static final Map<String, PlantType> BY_NAME = new HashMap<>();
+
+    static {
+        List<PlantType> types = load();
+        TYPES = types.toArray(new PlantType[0]);
+        for (PlantType type : TYPES) BY_NAME.put(key(type.name), type);
+    }
+
+    private final int id;
+    private final String name;
+    private final int seedCost;
+    private final int harvestValue;
+    private final int growthTime;
+    private final int waterNeed;
+    private final int fertilizerNeed;
+    private final int pestDamage;
+    private final String harvestEmoji;
+
+    private PlantType(int id, String name, int seedCost, int harvestValue, int growthTime, int waterNeed,
+                      int fertilizerNeed, int pestDamage, String harvestEmoji) {
+        this.id = id;
+        this.name = name;
+        this.seedCost = seedCost;
+        this.harvestValue = harvestValue;
+        this.growthTime = growthTime;
+        this.waterNeed = waterNeed;
+        this.fertilizerNeed = fertilizerNeed;
+        this.pestDamage = pestDamage;
+        this.harvestEmoji = harvestEmoji;
+    }
+
+    public static PlantType byId(int id) { return TYPES[id]; }
+
+    public static PlantType byName(String name) {
+        // Case-insensitive; null when there is no such crop
+        return name == null ? null : BY_NAME.get(key(name));
+    }
+
+    public static PlantType[] values() { return TYPES.clone(); }
+    public static int count() { return TYPES.length; }
+
+    public Plant newPlant() {
+        // A freshly sown plant of this type
+        return new Plant(this);
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static List<PlantType> load() {
+        String file = System.getProperty("smartfarm.crops");
+        try {
+            if (file != null) {
+                try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                    return parse(reader, file);
+                }
+            }
+            InputStream in = PlantType.class.getResourceAsStream("crops.csv");
+            if (in != null) {
+                try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                    return parse(reader, "crops.csv");
+                }
+            }
+            return parse(new StringReader(DEFAULTS), "built-in crops");
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read crop types: " + e.getMessage(), e);
+        }
+    }
+
+    private static List<PlantType> parse(Reader source, String origin) throws IOException {
+        // One crop per line: name, seed cost, harvest value, growth time, water need, fertilizer need,
+        // pest damage, harvest emoji. Blank lines and lines starting with # are skipped
+        List<PlantType> types = new ArrayList<>();
+        Map<String, Integer> seen = new HashMap<>();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String where = origin + " line " + lineNo;
+            String[] f = line.split(",");
+            if (f.length != 8) throw new IllegalStateException(where + ": expected 8 fields, found " + f.length);
+            String name = f[0].strip();
+            if (name.isEmpty()) throw new IllegalStateException(where + ": crop name is empty");
+            if (seen.put(key(name), lineNo) != null) throw new IllegalStateException(where + ": duplicate crop " + name);
+            if (types.size() == MAX_TYPES) throw new IllegalStateException(where + ": more than " + MAX_TYPES + " crops");
+            int seedCost = number(f[1], where, 0);
+            int harvestValue = number(f[2], where, 0);
+            int growthTime = number(f[3], where, 1);
+            if (growthTime > MAX_GROWTH_TIME) {
+                throw new IllegalStateException(where + ": growth time " + growthTime + " is above " + MAX_GROWTH_TIME);
+            }
+            int waterNeed = number(f[4], where, 0);
+            int fertilizerNeed = number(f[5], where, 0);
+            int pestDamage = number(f[6], where, 0);
+            types.add(new PlantType(types.size(), name, seedCost, harvestValue, growthTime, waterNeed,
+                    fertilizerNeed, pestDamage, f[7].strip()));
+        }
+        if (types.isEmpty()) throw new IllegalStateException(origin + ": no crops defined");
+        return types;
+    }
+
+    private static int number(String field, String where, int min) {
+        try {
+            int value = Integer.parseInt(field.strip());
+            if (value < min) throw new IllegalStateException(where + ": " + value + " is below " + min);
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(where + ": not a number: " + field.strip());
+        }
+    }
+
+    public int getId() { return id; }
+    public String getName() { return name; }
+    public int getSeedCost() { return seedCost; }
+    public int getHarvestValue() { return harvestValue; }
+    public int getGrowthTime() { return growthTime; }
+    public int getWaterNeed() { return waterNeed; }
+    public int getFertilizerNeed() { return fertilizerNeed; }
+    public int getPestDamage() { return pestDamage; }
+    public String getHarvestEmoji() { return harvestEmoji; }
+
+    @Override
+    public String toString() { return name; }
+}
@@ -2,6 +2,6 @@ package smartfarm.model.plant;
 
 public class Wheat extends Plant {
 	public Wheat() {
-		super("Wheat", 5, 50, 1, 2, 2, "🌾");
+		super(PlantType.byName("Wheat"));
 	}
 }
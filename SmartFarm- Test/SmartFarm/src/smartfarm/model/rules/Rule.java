@@ -0,0 +1,122 @@
+// Class Rule: One standing order for the farm, written as text and parsed once
+//   <action> when <condition> [and <condition>...] [for <crop>]
+// action: water | fertilize | treat | harvest
+// condition: infected | ready | <metric> <op> <number | waterNeed | fertilizerNeed>
+// metric: waterLevel | fertilizerLevel | health | soil | daysGrown, op: < <= > >= = !=
+// e.g. "water when waterLevel < waterNeed", "treat when infected", "fertilize when soil < 40 for Tomato"
+package smartfarm.model.rules;
+
+import smartfarm.exception.GameException;
+import smartfarm.model.BulkAction;
+import smartfarm.model.plant.PlantType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public final class Rule {
+    // Condition codes, shared with the compiled RulePlan
+    static final int INFECTED = 0, READY = 1, WATER = 2, FERTILIZER = 3, HEALTH = 4, SOIL = 5, DAYS = 6;
+    static final int METRIC_COUNT = 7;
+    static final int LT = 0, LE = 1, GT = 2, GE = 3, EQ = 4, NE = 5;
+    static final int CONSTANT = 0, WATER_NEED = 1, FERTILIZER_NEED = 2;
+
+    private static final String[] METRICS = {"infected", "ready", "waterlevel", "fertilizerlevel", "health", "soil",
+            "daysgrown"};
+    private static final String[] OPS = {"<", "<=", ">", ">=", "=", "!="};
+
+    private final String text;
+    private final BulkAction action;
+    private final PlantType type;       // null for every crop
+    final int[] metric, op, operand, value;
+
+    private Rule(String text, BulkAction action, PlantType type, int[] metric, int[] op, int[] operand, int[] value) {
+        this.text = text;
+        this.action = action;
+        this.type = type;
+        this.metric = metric;
+        this.op = op;
+        this.operand = operand;
+        this.value = value;
+    }
+
+    public static Rule parse(String text) throws GameException {
+        String[] words = text.trim().split("\\s+");
+        int w = 0;
+        BulkAction action = action(words[w++].toLowerCase(Locale.ROOT), text);
+        if (w >= words.length || !words[w++].equalsIgnoreCase("when")) throw error(text, "expected 'when' after the action");
+
+        List<int[]> conditions = new ArrayList<>();
+        PlantType type = null;
+        while (true) {
+            if (w >= words.length) throw error(text, "expected a condition");
+            int m = indexOf(METRICS, words[w++].toLowerCase(Locale.ROOT));
+            if (m < 0) throw error(text, "unknown condition '" + words[w - 1] + "'");
+            if (m == INFECTED || m == READY) {
+                conditions.add(new int[] {m, NE, CONSTANT, 0});
+            } else {
+                if (w + 1 >= words.length) throw error(text, "expected a comparison after " + words[w - 1]);
+                int o = indexOf(OPS, words[w++]);
+                if (o < 0) throw error(text, "unknown comparison '" + words[w - 1] + "'");
+                String rhs = words[w++];
+                if (rhs.equalsIgnoreCase("waterNeed")) {
+                    conditions.add(new int[] {m, o, WATER_NEED, 0});
+                } else if (rhs.equalsIgnoreCase("fertilizerNeed")) {
+                    conditions.add(new int[] {m, o, FERTILIZER_NEED, 0});
+                } else {
+                    try {
+                        conditions.add(new int[] {m, o, CONSTANT, Integer.parseInt(rhs)});
+                    } catch (NumberFormatException e) {
+                        throw error(text, "'" + rhs + "' is not a number or a need");
+                    }
+                }
+            }
+            if (w == words.length) break;
+            String next = words[w++];
+            if (next.equalsIgnoreCase("and")) continue;
+            if (next.equalsIgnoreCase("for") && w == words.length - 1) {
+                type = PlantType.byName(words[w++]);
+                if (type == null) throw error(text, "unknown crop '" + words[w - 1] + "'");
+                break;
+            }
+            throw error(text, "unexpected '" + next + "'");
+        }
+
+        int n = conditions.size();
+        int[] metric = new int[n], op = new int[n], operand = new int[n], value = new int[n];
+        for (int c = 0; c < n; c++) {
+            int[] cond = conditions.get(c);
+            metric[c] = cond[0];
+            op[c] = cond[1];
+            operand[c] = cond[2];
+            value[c] = cond[3];
+        }
+        return new Rule(text.trim(), action, type, metric, op, operand, value);
+    }
+
+    private static BulkAction action(String word, String text) throws GameException {
+        switch (word) {
+            case "water": return BulkAction.WATER;
+            case "fertilize": return BulkAction.FERTILIZE;
+            case "treat": return BulkAction.TREAT_PEST;
+            case "harvest": return BulkAction.HARVEST;
+            default: throw error(text, "unknown action '" + word + "'");
+        }
+    }
+
+    private static int indexOf(String[] names, String word) {
+        for (int k = 0; k < names.length; k++) if (names[k].equals(word)) return k;
+        return -1;
+    }
+
+    private static GameException error(String text, String problem) {
+        return new GameException("Rule \"" + text.trim() + "\": " + problem);
+    }
+
+    public String getText() { return text; }
+    public BulkAction getAction() { return action; }
+    public PlantType getType() { return type; }
+
+    @Override
+    public String toString() { return text; }
+}
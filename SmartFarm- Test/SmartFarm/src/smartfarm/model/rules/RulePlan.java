@@ -0,0 +1,190 @@
+// Class RulePlan: A list of rules compiled into flat arrays and run in one pass over the planted cells
+// GameState.advanceDay runs the plan before the tick, the same moment a player's own actions land. Each cell
+// goes through the rules in order, so a later rule sees what an earlier one did (a harvested cell is done).
+// Stock is reserved once per run and a rule is skipped for the cells left over when it runs out
+package smartfarm.model.rules;
+
+import smartfarm.exception.GameException;
+import smartfarm.model.BulkAction;
+import smartfarm.model.FarmGrid;
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+import smartfarm.util.Constants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class RulePlan {
+    public static final RulePlan EMPTY = new RulePlan(new ArrayList<>());
+
+    private static final int WATER = BulkAction.WATER.ordinal();
+    private static final int FERTILIZE = BulkAction.FERTILIZE.ordinal();
+    private static final int TREAT = BulkAction.TREAT_PEST.ordinal();
+    private static final int HARVEST = BulkAction.HARVEST.ordinal();
+
+    private final List<Rule> rules;
+    private final int typeCount = PlantType.count();
+
+    // Rule r: its action, crop filter (type id, or -1) and conditions [first[r], first[r + 1]). What the action
+    // itself needs (an infected plant to treat, a ripe one to harvest) is compiled in as a leading condition
+    private final int[] action, type, first;
+
+    // Condition c reads metric[c] and holds when (lo <= value && value <= hi) != negate[c]. The bounds are
+    // resolved per crop type ([c * typeCount + t]), so comparing against a need costs no more than a constant
+    private final int[] metric;
+    private final boolean[] negate;
+    private final int[] lo, hi;
+
+    public RulePlan(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        int n = rules.size(), total = 0;
+        for (Rule rule : rules) total += rule.metric.length + (implied(rule.getAction()) >= 0 ? 1 : 0);
+        action = new int[n];
+        type = new int[n];
+        first = new int[n + 1];
+        metric = new int[total];
+        negate = new boolean[total];
+        lo = new int[total * typeCount];
+        hi = new int[total * typeCount];
+        int c = 0;
+        for (int r = 0; r < n; r++) {
+            Rule rule = rules.get(r);
+            action[r] = rule.getAction().ordinal();
+            type[r] = rule.getType() == null ? -1 : rule.getType().getId();
+            first[r] = c;
+            int flag = implied(rule.getAction());
+            if (flag >= 0) compile(c++, flag, Rule.NE, Rule.CONSTANT, 0);
+            for (int k = 0; k < rule.metric.length; k++) {
+                compile(c++, rule.metric[k], rule.op[k], rule.operand[k], rule.value[k]);
+            }
+        }
+        first[n] = c;
+    }
+
+    private static int implied(BulkAction action) {
+        if (action == BulkAction.TREAT_PEST) return Rule.INFECTED;
+        if (action == BulkAction.HARVEST) return Rule.READY;
+        return -1;
+    }
+
+    private void compile(int c, int m, int o, int operand, int constant) {
+        metric[c] = m;
+        negate[c] = o == Rule.NE;
+        for (int t = 0; t < typeCount; t++) {
+            PlantType plantType = PlantType.byId(t);
+            long k = operand == Rule.WATER_NEED ? plantType.getWaterNeed()
+                    : operand == Rule.FERTILIZER_NEED ? plantType.getFertilizerNeed() : constant;
+            // Every comparison as an inclusive range (!= as the negated ==)
+            long low = Integer.MIN_VALUE, high = Integer.MAX_VALUE;
+            switch (o) {
+                case Rule.LT: high = k - 1; break;
+                case Rule.LE: high = k; break;
+                case Rule.GT: low = k + 1; break;
+                case Rule.GE: low = k; break;
+                default: low = k; high = k; break;
+            }
+            lo[c * typeCount + t] = (int) Math.max(Integer.MIN_VALUE, low);
+            hi[c * typeCount + t] = (int) Math.min(Integer.MAX_VALUE, high);
+        }
+    }
+
+    public static RulePlan parse(String text) throws GameException {
+        // One rule per line; blank lines and lines starting with # are skipped
+        List<Rule> rules = new ArrayList<>();
+        for (String line : text.split("\\R")) {
+            line = line.strip();
+            if (!line.isEmpty() && !line.startsWith("#")) rules.add(Rule.parse(line));
+        }
+        return new RulePlan(rules);
+    }
+
+    public List<Rule> getRules() { return rules; }
+    public boolean isEmpty() { return rules.isEmpty(); }
+
+    public RuleReport run(FarmGrid grid, int waterStock, int fertilizerStock, int pesticideStock) {
+        RuleReport report = new RuleReport();
+        // Only the rules that can fire today: none to treat without pests, none to harvest before anything is
+        // ripe, none for a crop type that is not planted
+        int[] live = new int[action.length];
+        int liveCount = 0, used = 0;
+        for (int r = 0; r < action.length; r++) {
+            if (action[r] == TREAT && grid.getInfectedCount() == 0) continue;
+            if (action[r] == HARVEST && grid.getStageCount(Plant.Stage.HARVEST) == 0) continue;
+            if (type[r] >= 0 && grid.getCropCount(type[r]) == 0) continue;
+            live[liveCount++] = r;
+            for (int c = first[r]; c < first[r + 1]; c++) used |= 1 << metric[c];
+        }
+        if (liveCount == 0) return report;
+
+        // Uses the stock pays for
+        int[] budget = new int[BulkAction.values().length];
+        budget[WATER] = waterStock / Constants.WATER_AMOUNT_PER_USE;
+        budget[FERTILIZE] = fertilizerStock / Constants.FERTILIZER_AMOUNT_PER_USE;
+        budget[TREAT] = pesticideStock;
+        budget[HARVEST] = Integer.MAX_VALUE;
+        int[] done = report.done, missed = report.missed;
+        int[] value = new int[Rule.METRIC_COUNT];
+
+        // A mostly planted farm is scanned slot by slot, which is cheaper than going through the active index.
+        // A sparse one walks the index backwards: a harvest swaps the last (already visited) slot into its place
+        boolean dense = grid.getActiveCount() * 2 >= grid.size();
+        int end = dense ? grid.size() : grid.getActiveCount();
+        for (int n = 0; n < end; n++) {
+            int i = dense ? n : grid.getActiveSlot(end - 1 - n);
+            if (!grid.hasCrop(i)) continue;
+            grid.getHealth(i);      // Settles an event-driven plant, which may turn out to have died
+            if (grid.isEmpty(i)) continue;
+            int t = grid.getTypeId(i);
+            read(used, grid, i, value);
+            for (int l = 0; l < liveCount; l++) {
+                int r = live[l];
+                if (type[r] >= 0 && type[r] != t) continue;
+                if (!matches(r, t, value)) continue;
+                int a = action[r];
+                if (done[a] == budget[a]) {
+                    missed[a]++;
+                    continue;
+                }
+                done[a]++;
+                if (a == HARVEST) {
+                    report.earned += grid.harvest(i);
+                    break;
+                }
+                if (a == WATER) {
+                    grid.water(i, Constants.WATER_AMOUNT_PER_USE);
+                } else if (a == FERTILIZE) {
+                    grid.fertilize(i, Constants.FERTILIZER_AMOUNT_PER_USE);
+                    grid.improveSoil(i, 5);
+                } else {
+                    grid.treatPest(i);
+                }
+                read(used, grid, i, value);     // Later rules see the change
+            }
+        }
+        report.waterUsed = done[WATER] * Constants.WATER_AMOUNT_PER_USE;
+        report.fertilizerUsed = done[FERTILIZE] * Constants.FERTILIZER_AMOUNT_PER_USE;
+        report.pesticideUsed = done[TREAT];
+        return report;
+    }
+
+    private boolean matches(int r, int t, int[] value) {
+        for (int c = first[r]; c < first[r + 1]; c++) {
+            int v = value[metric[c]];
+            int k = c * typeCount + t;
+            if ((v >= lo[k] && v <= hi[k]) == negate[c]) return false;
+        }
+        return true;
+    }
+
+    private static void read(int used, FarmGrid grid, int i, int[] value) {
+        // The metrics the live rules look at, once per cell
+        if ((used & 1 << Rule.INFECTED) != 0) value[Rule.INFECTED] = grid.isInfected(i) ? 1 : 0;
+        if ((used & 1 << Rule.READY) != 0) value[Rule.READY] = grid.getStage(i) == Plant.Stage.HARVEST ? 1 : 0;
+        if ((used & 1 << Rule.WATER) != 0) value[Rule.WATER] = grid.getWaterLevel(i);
+        if ((used & 1 << Rule.FERTILIZER) != 0) value[Rule.FERTILIZER] = grid.getFertilizerLevel(i);
+        if ((used & 1 << Rule.HEALTH) != 0) value[Rule.HEALTH] = grid.getHealth(i);
+        if ((used & 1 << Rule.SOIL) != 0) value[Rule.SOIL] = grid.getSoil(i);
+        if ((used & 1 << Rule.DAYS) != 0) value[Rule.DAYS] = grid.getDaysGrown(i);
+    }
+}
@@ -0,0 +1,39 @@
+// Class RuleReport: What the automation rules did on one day
+package smartfarm.model.rules;
+
+import smartfarm.model.BulkAction;
+
+import java.util.Locale;
+
+public class RuleReport {
+    final int[] done = new int[BulkAction.values().length];     // Cells per action, indexed by ordinal
+    final int[] missed = new int[BulkAction.values().length];   // Cells an action skipped for lack of stock
+    int earned;
+    int waterUsed, fertilizerUsed, pesticideUsed;
+
+    public int getDone(BulkAction action) { return done[action.ordinal()]; }
+    public int getMissed(BulkAction action) { return missed[action.ordinal()]; }
+    public int getEarned() { return earned; }
+    public int getWaterUsed() { return waterUsed; }
+    public int getFertilizerUsed() { return fertilizerUsed; }
+    public int getPesticideUsed() { return pesticideUsed; }
+
+    public boolean isEmpty() {
+        for (int a = 0; a < done.length; a++) if (done[a] > 0 || missed[a] > 0) return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (BulkAction action : BulkAction.values()) {
+            int a = action.ordinal();
+            if (done[a] == 0 && missed[a] == 0) continue;
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(action.getDone().toLowerCase(Locale.ROOT)).append(' ').append(done[a]);
+            if (missed[a] > 0) sb.append(" (").append(missed[a]).append(" short of stock)");
+        }
+        if (earned > 0) sb.append(" (+$").append(earned).append(')');
+        return sb.length() > 0 ? sb.toString() : "nothing to do";
+    }
+}
@@ -1,7 +1,7 @@
 package smartfarm.model.weather;
 
 public class Cloudy extends Weather {
-    public Cloudy() {
-        super("Cloudy", 0, 0, 0); 
+    Cloudy() {
+        super(WeatherEngine.CLOUDY_ID, "Cloudy", 0, 0, 0); 
     }
 }
\ No newline at end of file
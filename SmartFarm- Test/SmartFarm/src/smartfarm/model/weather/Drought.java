@@ -1,8 +1,8 @@
 package smartfarm.model.weather;
 
 public class Drought extends Weather {
-	public Drought() {
-		super("Drought", -3, -2, -10);
+	Drought() {
+		super(WeatherEngine.DROUGHT_ID, "Drought", -3, -2, -10);
 	}
 
 }
@@ -1,8 +1,8 @@
 package smartfarm.model.weather;
 
 public class Rainy extends Weather {
-	public Rainy() {
-		super("Rainy", 5, 0, -1);
+	Rainy() {
+		super(WeatherEngine.RAINY_ID, "Rainy", 5, 0, -1);
 	}
 
 }
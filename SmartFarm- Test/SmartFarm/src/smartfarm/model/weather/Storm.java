@@ -1,8 +1,8 @@
 package smartfarm.model.weather;
 
 public class Storm extends Weather {
-	public Storm() {
-		super("Storm", 3, -5, -10);
+	Storm() {
+		super(WeatherEngine.STORM_ID, "Storm", 3, -5, -10);
 	}
 
 }
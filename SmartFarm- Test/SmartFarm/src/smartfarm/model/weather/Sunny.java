@@ -2,8 +2,8 @@ package smartfarm.model.weather;
 
 public class Sunny extends Weather {
 	
-	public Sunny() {
-		super("Sunny", -1, 0, 5);
+	Sunny() {
+		super(WeatherEngine.SUNNY_ID, "Sunny", -1, 0, 5);
 	}
 
 }
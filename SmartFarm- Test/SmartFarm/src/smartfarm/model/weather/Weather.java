@@ -1,16 +1,21 @@
 // Abstract class defining the common structure for weather types in the game
 // Each specific weather type (Sunny, Rainy, Storm, etc.) inherits this class and has its own impact parameters
+// Weather states are immutable flyweights: one instance per type, held by WeatherEngine
 package smartfarm.model.weather;
 
+import smartfarm.model.FarmGrid;
+import smartfarm.model.WeatherKernel;
 import smartfarm.model.plant.Plant;
 
 public abstract class Weather {
-    private String name;
-    private int waterEffect;
-    private int fertilizerEffect;
-    private int healthEffect;
+    private final int id;                   // Row/column of this state in the transition matrix
+    private final String name;
+    private final int waterEffect;
+    private final int fertilizerEffect;
+    private final int healthEffect;
 
-    public Weather(String name, int waterEffect, int fertilizerEffect, int healthEffect) {
+    Weather(int id, String name, int waterEffect, int fertilizerEffect, int healthEffect) {
+        this.id = id;
         this.name = name;
         this.waterEffect = waterEffect;
         this.fertilizerEffect = fertilizerEffect;
@@ -24,6 +29,16 @@ public abstract class Weather {
         if (fertilizerEffect != 0) plant.fertilize(fertilizerEffect);
         if (healthEffect != 0) plant.adjustHealth(healthEffect);
     }
+
+    public void applyEffect(FarmGrid grid) {
+        // Same effect on every planted cell of a grid, in bulk (vectorised when the Vector API is available)
+        grid.applyWeather(waterEffect, fertilizerEffect, healthEffect, WeatherKernel.best());
+    }
+
     // Get the weather name to display on the FarmFrame status bar (UI)
     public String getName() { return name; }
+    public int getId() { return id; }
+    public int getWaterEffect() { return waterEffect; }
+    public int getFertilizerEffect() { return fertilizerEffect; }
+    public int getHealthEffect() { return healthEffect; }
 }
\ No newline at end of file
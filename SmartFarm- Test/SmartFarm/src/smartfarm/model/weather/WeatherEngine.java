@@ -0,0 +1,167 @@
+// Class WeatherEngine: Table-driven weather as a Markov chain
+// Holds the single instance of each weather state and the transition matrix as data. Each day the weather
+// changes with probability WEATHER_CHANGE_PROBABILITY, and a change follows the CHANGE table (which may pick
+// the same weather again), so tomorrow's weather is row `today` of DAILY = (1 - c) * I + c * CHANGE.
+// Rows are sampled in O(1) with Vose's alias method; forecasts raise DAILY to the n-th power
+package smartfarm.model.weather;
+
+import smartfarm.util.Constants;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+
+public final class WeatherEngine {
+    static final int SUNNY_ID = 0, RAINY_ID = 1, CLOUDY_ID = 2, DROUGHT_ID = 3, STORM_ID = 4;
+
+    public static final Weather SUNNY = new Sunny();
+    public static final Weather RAINY = new Rainy();
+    public static final Weather CLOUDY = new Cloudy();
+    public static final Weather DROUGHT = new Drought();
+    public static final Weather STORM = new Storm();
+
+    private static final Weather[] STATES = { SUNNY, RAINY, CLOUDY, DROUGHT, STORM };
+
+    // Where the weather goes when it changes (rows: from, columns: to, in STATES order)
+    private static final double[][] CHANGE = {
+        //  Sunny  Rainy  Cloudy Drought Storm
+        {   0.0,   0.0,   0.9,   0.1,    0.0 },  // Sunny
+        {   0.0,   0.5,   0.5,   0.0,    0.0 },  // Rainy
+        {   0.4,   0.6,   0.0,   0.0,    0.0 },  // Cloudy
+        {   0.6,   0.0,   0.0,   0.4,    0.0 },  // Drought
+        {   0.0,   1.0,   0.0,   0.0,    0.0 },  // Storm: usually weakens into normal rain
+    };
+
+    private static final double[][] DAILY = daily(Constants.WEATHER_CHANGE_PROBABILITY);
+    private static final AliasTable[] DAILY_ALIAS = aliasTables(DAILY);
+    private static final AliasTable[] CHANGE_ALIAS = aliasTables(CHANGE);
+
+    private WeatherEngine() {
+    }
+
+    public static Weather[] getStates() { return STATES.clone(); }
+    public static Weather getState(int id) { return STATES[id]; }
+    public static double getDailyProbability(Weather from, Weather to) { return DAILY[from.getId()][to.getId()]; }
+
+    public static Weather next(Weather today, SplittableRandom random) {
+        // Tomorrow's weather (possibly the same as today)
+        return STATES[DAILY_ALIAS[today.getId()].sample(random)];
+    }
+
+    public static Weather change(Weather today, SplittableRandom random) {
+        // The weather after a change event
+        return STATES[CHANGE_ALIAS[today.getId()].sample(random)];
+    }
+
+    public static double[] forecast(Weather today, int days) {
+        // Probability of each state (STATES order) `days` days from now: row `today` of DAILY^days
+        if (days < 0) throw new IllegalArgumentException("Forecast days must not be negative");
+        double[][] power = power(DAILY, days);
+        return power[today.getId()].clone();
+    }
+
+    public static double[] forecast(double[] today, int days) {
+        // The same for a mix of states (e.g. the share of a farm's zones in each): today * DAILY^days
+        if (days < 0) throw new IllegalArgumentException("Forecast days must not be negative");
+        double[][] power = power(DAILY, days);
+        int n = STATES.length;
+        double[] result = new double[n];
+        for (int i = 0; i < n; i++) {
+            if (today[i] == 0) continue;
+            for (int j = 0; j < n; j++) result[j] += today[i] * power[i][j];
+        }
+        return result;
+    }
+
+    private static double[][] daily(double changeProbability) {
+        int n = STATES.length;
+        double[][] m = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) m[i][j] = changeProbability * CHANGE[i][j];
+            m[i][i] += 1 - changeProbability;
+        }
+        return m;
+    }
+
+    private static double[][] power(double[][] m, int e) {
+        // Exponentiation by squaring: O(k^3 log e) for k states
+        int n = m.length;
+        double[][] result = new double[n][n];
+        for (int i = 0; i < n; i++) result[i][i] = 1;
+        double[][] base = m;
+        while (e > 0) {
+            if ((e & 1) != 0) result = multiply(result, base);
+            e >>= 1;
+            if (e > 0) base = multiply(base, base);
+        }
+        return result;
+    }
+
+    private static double[][] multiply(double[][] a, double[][] b) {
+        int n = a.length;
+        double[][] c = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < n; k++) {
+                double aik = a[i][k];
+                if (aik == 0) continue;
+                for (int j = 0; j < n; j++) c[i][j] += aik * b[k][j];
+            }
+        }
+        return c;
+    }
+
+    private static AliasTable[] aliasTables(double[][] m) {
+        AliasTable[] tables = new AliasTable[m.length];
+        for (int i = 0; i < m.length; i++) tables[i] = new AliasTable(m[i]);
+        return tables;
+    }
+
+    private static final class AliasTable {
+        // Vose's alias method: column c keeps itself with probability keep[c], otherwise yields alias[c]
+        private final double[] keep;
+        private final int[] alias;
+
+        AliasTable(double[] weights) {
+            int n = weights.length;
+            keep = new double[n];
+            alias = new int[n];
+            double total = 0;
+            for (double w : weights) total += w;
+
+            double[] scaled = new double[n];
+            ArrayDeque<Integer> small = new ArrayDeque<>(), large = new ArrayDeque<>();
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / total;
+                if (scaled[i] < 1) small.push(i);
+                else large.push(i);
+            }
+            while (!small.isEmpty() && !large.isEmpty()) {
+                int s = small.pop(), l = large.pop();
+                keep[s] = scaled[s];
+                alias[s] = l;
+                scaled[l] -= 1 - scaled[s];
+                if (scaled[l] < 1) small.push(l);
+                else large.push(l);
+            }
+            // Whatever is left is 1 up to rounding (an impossible state must stay impossible)
+            int likeliest = 0;
+            for (int i = 1; i < n; i++) if (weights[i] > weights[likeliest]) likeliest = i;
+            while (!large.isEmpty()) {
+                int l = large.pop();
+                keep[l] = 1;
+                alias[l] = l;
+            }
+            while (!small.isEmpty()) {
+                int s = small.pop();
+                keep[s] = weights[s] > 0 ? 1 : 0;
+                alias[s] = weights[s] > 0 ? s : likeliest;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            // One draw: the integer part picks the column, the fraction decides keep or alias
+            double u = random.nextDouble() * keep.length;
+            int column = (int) u;
+            return u - column < keep[column] ? column : alias[column];
+        }
+    }
+}
@@ -0,0 +1,97 @@
+// Class CarePolicy: A simple greedy player
+// Every day: harvest what is ready, treat infected crops, top up water and fertilizer where a crop would
+// be short of its daily need after today's weather, and replant empty cells while money allows. Resources are
+// restocked from the shop when they run low. With a rotation of several crops, each cell sows the next crop
+// of the rotation every time it is replanted. Actions go through GameState's non-throwing action API, which
+// applies the same rules as the UI without the cost of exceptions
+package smartfarm.sim;
+
+import smartfarm.model.Farm;
+import smartfarm.model.FarmGrid;
+import smartfarm.model.GameState;
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.weather.Weather;
+import smartfarm.util.Constants;
+
+public class CarePolicy implements Policy {
+    private static final int MONEY_RESERVE = 50;   // Keep some money back for resources
+
+    private final PlantType[] rotation;
+    private final int cycleCost;                    // Water and fertilizer a crop uses from seed to harvest (the dearest one)
+    private int[] sown;                             // Plantings per cell so far, for the rotation
+
+    public CarePolicy(PlantType... rotation) {
+        if (rotation.length == 0) throw new IllegalArgumentException("A care policy needs at least one crop");
+        this.rotation = rotation.clone();
+        int cost = 0;
+        for (PlantType seed : rotation) {
+            cost = Math.max(cost, 3 * seed.getGrowthTime() * (seed.getWaterNeed() * Constants.WATER_PRICE
+                    + seed.getFertilizerNeed() * Constants.FERTILIZER_PRICE));
+        }
+        this.cycleCost = cost;
+    }
+
+    @Override
+    public String getName() { return "care"; }
+
+    @Override
+    public void act(GameState game) {
+        Farm farm = game.getFarm();
+        FarmGrid grid = farm.getGrid();
+        if (sown == null || sown.length != grid.size()) sown = new int[grid.size()];
+        restock(game);
+
+        for (int row = 0; row < farm.getRows(); row++) {
+            for (int col = 0; col < farm.getCols(); col++) {
+                int i = grid.index(row, col);
+                if (!grid.isEmpty(i) && grid.getStage(i) == Plant.Stage.HARVEST) game.tryHarvest(row, col);
+                if (grid.isEmpty(i)) {
+                    // Replant straight away, including cells harvested just now
+                    // Only sow what the money can also look after
+                    PlantType seed = rotation[sown[i] % rotation.length];
+                    int upkeep = cycleCost * (farm.getTotalCrops() + 1);
+                    if (grid.getSoil(i) >= 20 && game.getMoney() >= seed.getSeedCost() + MONEY_RESERVE + upkeep
+                            && game.tryPlant(row, col, seed).isOk()) {
+                        sown[i]++;
+                    }
+                    continue;
+                }
+                tend(game, row, col, i);
+            }
+        }
+    }
+
+    protected void tend(GameState game, int row, int col, int i) {
+        // Daily care of a growing crop; a refused action (e.g. out of stock) is simply skipped
+        Farm farm = game.getFarm();
+        FarmGrid grid = farm.getGrid();
+        if (grid.isInfected(i)) game.tryTreatPest(row, col);
+        Weather weather = farm.getWeatherAt(row, col);   // Acts before the plants take their need
+        if (grid.getWaterLevel(i) + weather.getWaterEffect() < grid.getWaterNeed(i)) game.tryWater(row, col);
+        if (grid.getFertilizerLevel(i) + weather.getFertilizerEffect() < grid.getFertilizerNeed(i)) {
+            game.tryFertilize(row, col);
+        }
+    }
+
+    private void restock(GameState game) {
+        // Enough for one round of care on every crop currently planted
+        int cells = Math.max(1, game.getFarm().getTotalCrops());
+        if (game.getWaterStock() < cells * Constants.WATER_AMOUNT_PER_USE) {
+            buy(game, "WATER", cells * Constants.WATER_AMOUNT_PER_USE, Constants.WATER_PRICE);
+        }
+        if (game.getFertilizerStock() < cells * Constants.FERTILIZER_AMOUNT_PER_USE) {
+            buy(game, "FERTILIZER", cells * Constants.FERTILIZER_AMOUNT_PER_USE, Constants.FERTILIZER_PRICE);
+        }
+        if (game.getPesticideStock() < 5) {
+            buy(game, "PESTICIDE", 5, Constants.PESTICIDE_PRICE);
+        }
+    }
+
+    private void buy(GameState game, String type, int amount, int price) {
+        // Buy as much of the wanted amount as the money above the reserve pays for
+        int affordable = Math.max(0, game.getMoney() - MONEY_RESERVE) / price;
+        int quantity = Math.min(amount, affordable);
+        if (quantity > 0) game.tryBuyResource(type, quantity, quantity * price);
+    }
+}
@@ -0,0 +1,106 @@
+// Class FarmMove: One day's worth of actions, as the MCTS player chooses them
+// Every move first harvests what is ripe, treats infected crops and tops up water and fertilizer where a crop
+// would fall short of today's need; the choice is what to buy from the shop and which crop to sow in the empty
+// cells (row by row, while the money lasts). Moves go through the GameState action API
+package smartfarm.sim;
+
+import smartfarm.model.BulkTarget;
+import smartfarm.model.Farm;
+import smartfarm.model.FarmGrid;
+import smartfarm.model.GameState;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.weather.Weather;
+import smartfarm.util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class FarmMove {
+    public enum Purchase { NONE, WATER, FERTILIZER, PESTICIDE }
+
+    private static final int MONEY_RESERVE = 50;    // Never spend below this
+    private static final int STOCK_DAYS = 3;        // A purchase covers this many days of care for the planted cells
+
+    private static final List<FarmMove> ALL = new ArrayList<>();
+
+    static {
+        PlantType[] types = PlantType.values();
+        for (Purchase purchase : Purchase.values()) {
+            ALL.add(new FarmMove(null, purchase));
+            for (PlantType type : types) ALL.add(new FarmMove(type, purchase));
+        }
+    }
+
+    private final PlantType sow;        // null: sow nothing
+    private final Purchase purchase;
+
+    private FarmMove(PlantType sow, Purchase purchase) {
+        this.sow = sow;
+        this.purchase = purchase;
+    }
+
+    public static List<FarmMove> all() { return ALL; }
+
+    public static int indexOf(PlantType sow, Purchase purchase) {
+        // Position in all(): one block per purchase, "sow nothing" first in each
+        return purchase.ordinal() * (PlantType.count() + 1) + (sow == null ? 0 : sow.getId() + 1);
+    }
+
+    public void apply(GameState game) {
+        Farm farm = game.getFarm();
+        FarmGrid grid = farm.getGrid();
+        game.harvestAll(BulkTarget.all());
+        if (farm.getInfectedCount() > 0) game.treatAllPests(BulkTarget.all());
+        buy(game, grid.getActiveCount());
+
+        for (int row = 0; row < farm.getRows(); row++) {
+            for (int col = 0; col < farm.getCols(); col++) {
+                int i = grid.index(row, col);
+                if (grid.isEmpty(i)) {
+                    if (sow != null && grid.getSoil(i) >= 20 && game.getMoney() >= sow.getSeedCost() + MONEY_RESERVE) {
+                        game.tryPlant(row, col, sow);
+                    }
+                    continue;
+                }
+                Weather weather = farm.getWeatherAt(row, col);
+                if (grid.getWaterLevel(i) + weather.getWaterEffect() < grid.getWaterNeed(i)) game.tryWater(row, col);
+                if (grid.getFertilizerLevel(i) + weather.getFertilizerEffect() < grid.getFertilizerNeed(i)) {
+                    game.tryFertilize(row, col);
+                }
+            }
+        }
+    }
+
+    private void buy(GameState game, int planted) {
+        int cells = Math.max(1, planted);
+        switch (purchase) {
+            case WATER:
+                buy(game, "WATER", cells * Constants.WATER_AMOUNT_PER_USE * STOCK_DAYS, Constants.WATER_PRICE);
+                break;
+            case FERTILIZER:
+                buy(game, "FERTILIZER", cells * Constants.FERTILIZER_AMOUNT_PER_USE * STOCK_DAYS,
+                        Constants.FERTILIZER_PRICE);
+                break;
+            case PESTICIDE:
+                buy(game, "PESTICIDE", Math.max(5, game.getFarm().getInfectedCount()), Constants.PESTICIDE_PRICE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void buy(GameState game, String type, int amount, int price) {
+        // As much of the amount as the money above the reserve pays for
+        int quantity = Math.min(amount, Math.max(0, game.getMoney() - MONEY_RESERVE) / price);
+        if (quantity > 0) game.tryBuyResource(type, quantity, quantity * price);
+    }
+
+    public PlantType getSow() { return sow; }
+    public Purchase getPurchase() { return purchase; }
+
+    @Override
+    public String toString() {
+        String sowing = sow != null ? "sow " + sow.getName() : "sow nothing";
+        return purchase == Purchase.NONE ? sowing : sowing + ", buy " + purchase.name().toLowerCase();
+    }
+}
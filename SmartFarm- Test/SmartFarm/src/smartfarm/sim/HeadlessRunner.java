@@ -0,0 +1,345 @@
+// Class HeadlessRunner: Command-line batch simulation, without Swing
+// Builds a GameState directly, lets a policy play it for a number of days and prints throughput and
+// final stats. Nothing here (or in the model) loads AWT, so it runs with -Djava.awt.headless=true
+//
+// Usage: java smartfarm.sim.HeadlessRunner [--rows N] [--cols N] [--days N] [--policy idle|care|schedule|mcts]
+//            [--crop NAME] [--plant-all] [--event-driven] [--parallelism N]
+//            [--report-every N] [--seed N] [--weather-tile N] [--rule TEXT]... [--think-ms N] [--iterations N]
+//            [--load FILE] [--save FILE] [--save-every N] [--autosave] [--journal] [--mapped FILE]
+// --crop takes any crop type from the registry (crops.csv). --plant-all sows every cell for free (full
+// water and fertilizer) before the first day, to measure the tick on a full farm. --seed replays a run
+// exactly (the seed used is printed either way). --weather-tile splits the farm into NxN weather zones.
+// --rule adds a standing order (see Rule) that the game runs itself each day, on top of the policy.
+// --think-ms and --iterations are the MCTS player's budget per day (iterations alone replay exactly).
+// --load resumes a saved game (its size, seed, zones and rules; --rule replaces the rules). --save writes the
+// game at the end, and every N days with --save-every; saves after the first only write what changed.
+// --autosave writes the --save-every saves on a background thread while the game plays on (see AutoSave),
+// and reports the pause each one cost the game and the write throughput.
+// --journal records every action in a journal next to the --save file (FILE.journal), starting from a save
+// of the game as it begins; --load replays the journal of the file it loads, if it follows that save.
+// --mapped keeps the cells of a new farm in a memory-mapped file instead of on the heap, flushed at the end
+package smartfarm.sim;
+
+import smartfarm.exception.GameException;
+import smartfarm.model.AutoSave;
+import smartfarm.model.DayReport;
+import smartfarm.model.FarmGrid;
+import smartfarm.model.GameRandom;
+import smartfarm.model.GameState;
+import smartfarm.model.Journal;
+import smartfarm.model.SaveFile;
+import smartfarm.model.SaveReport;
+import smartfarm.model.plant.PlantType;
+import smartfarm.model.rules.Rule;
+import smartfarm.model.rules.RulePlan;
+import smartfarm.util.Constants;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class HeadlessRunner {
+    private int rows = Constants.DEFAULT_FARM_ROWS;
+    private int cols = Constants.DEFAULT_FARM_COLS;
+    private int days = 365;
+    private String policyName = "care";
+    private String cropName = "Wheat";
+    private boolean plantAll;
+    private boolean eventDriven;
+    private int parallelism = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+    private int reportEvery;
+    private long seed = GameRandom.newSeed();
+    private int weatherTile;                // 0: one weather for the whole farm
+    private final List<Rule> rules = new ArrayList<>();
+    private int thinkMillis = 20;
+    private int iterations;
+    private String loadPath;
+    private String savePath;
+    private int saveEvery;
+    private String mappedPath;
+    private boolean journaled;
+    private boolean autoSaved;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        HeadlessRunner runner = new HeadlessRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: HeadlessRunner [--rows N] [--cols N] [--days N] [--policy idle|care|schedule|mcts]"
+                    + " [--crop " + String.join("|", cropNames()) + "] [--plant-all] [--event-driven] [--parallelism N]"
+                    + " [--report-every N] [--seed N] [--weather-tile N] [--rule TEXT]... [--think-ms N] [--iterations N]"
+                    + " [--load FILE] [--save FILE] [--save-every N] [--autosave] [--journal] [--mapped FILE]");
+            System.exit(2);
+        }
+        runner.run();
+    }
+
+    private void parse(String[] args) {
+        for (int a = 0; a < args.length; a++) {
+            String arg = args[a];
+            switch (arg) {
+                case "--rows": rows = intArg(args, ++a, arg); break;
+                case "--cols": cols = intArg(args, ++a, arg); break;
+                case "--days": days = intArg(args, ++a, arg); break;
+                case "--policy": policyName = stringArg(args, ++a, arg); break;
+                case "--crop": cropName = stringArg(args, ++a, arg); break;
+                case "--plant-all": plantAll = true; break;
+                case "--event-driven": eventDriven = true; break;
+                case "--parallelism": parallelism = intArg(args, ++a, arg); break;
+                case "--report-every": reportEvery = intArg(args, ++a, arg); break;
+                case "--seed": seed = longArg(args, ++a, arg); break;
+                case "--weather-tile": weatherTile = intArg(args, ++a, arg); break;
+                case "--rule": rules.add(ruleArg(args, ++a, arg)); break;
+                case "--think-ms": thinkMillis = intArg(args, ++a, arg); break;
+                case "--iterations": iterations = intArg(args, ++a, arg); break;
+                case "--load": loadPath = stringArg(args, ++a, arg); break;
+                case "--save": savePath = stringArg(args, ++a, arg); break;
+                case "--save-every": saveEvery = intArg(args, ++a, arg); break;
+                case "--mapped": mappedPath = stringArg(args, ++a, arg); break;
+                case "--journal": journaled = true; break;
+                case "--autosave": autoSaved = true; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (rows < 1 || cols < 1 || days < 1 || parallelism < 1 || weatherTile < 0 || saveEvery < 0) {
+            throw new IllegalArgumentException("Sizes, days and parallelism must be at least 1, tiles not negative");
+        }
+        if (saveEvery > 0 && savePath == null) throw new IllegalArgumentException("--save-every needs --save");
+        if (autoSaved && saveEvery == 0) throw new IllegalArgumentException("--autosave needs --save-every");
+        if (journaled && savePath == null) throw new IllegalArgumentException("--journal needs --save");
+        if (mappedPath != null && loadPath != null) throw new IllegalArgumentException("--mapped starts a new farm, not with --load");
+    }
+
+    private static int intArg(String[] args, int a, String option) {
+        try {
+            return Integer.parseInt(stringArg(args, a, option).replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number");
+        }
+    }
+
+    private static long longArg(String[] args, int a, String option) {
+        try {
+            return Long.parseLong(stringArg(args, a, option).replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number");
+        }
+    }
+
+    private static Rule ruleArg(String[] args, int a, String option) {
+        try {
+            return Rule.parse(stringArg(args, a, option));
+        } catch (GameException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    private static String stringArg(String[] args, int a, String option) {
+        if (a >= args.length) throw new IllegalArgumentException(option + " expects a value");
+        return args[a];
+    }
+
+    private Policy createPolicy() {
+        switch (policyName) {
+            case "idle": return new IdlePolicy();
+            case "care": return new CarePolicy(cropType());
+            case "schedule": return new SchedulePolicy(cropType());
+            case "mcts": return new MctsPolicy(iterations > 0 ? 0 : thinkMillis, iterations, seed);
+            default: throw new IllegalArgumentException("Unknown policy: " + policyName);
+        }
+    }
+
+    private PlantType cropType() {
+        PlantType type = PlantType.byName(cropName);
+        if (type == null) throw new IllegalArgumentException("Unknown crop: " + cropName);
+        return type;
+    }
+
+    private static String[] cropNames() {
+        PlantType[] types = PlantType.values();
+        String[] names = new String[types.length];
+        for (int t = 0; t < types.length; t++) names[t] = types[t].getName();
+        return names;
+    }
+
+    private void run() {
+        Policy policy;
+        PlantType crop;
+        try {
+            policy = createPolicy();
+            crop = cropType();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        GameState game;
+        SaveFile saveFile = savePath != null ? new SaveFile(Path.of(savePath)) : null;
+        if (loadPath != null) {
+            try {
+                // Saving back to the file it came from continues with incremental saves
+                SaveFile source = new SaveFile(Path.of(loadPath));
+                long t0 = System.nanoTime();
+                game = source.load();
+                System.out.printf("Loaded %s in %.1f ms%n", loadPath, (System.nanoTime() - t0) / 1e6);
+                if (saveFile != null && Path.of(loadPath).equals(Path.of(savePath))) saveFile = source;
+
+                // The actions made after that save, replayed from its journal; it stays open only to go on with
+                t0 = System.nanoTime();
+                Journal journal = Journal.resume(source, game);
+                if (journal.getRecovered() > 0) {
+                    System.out.printf("Recovered %d actions from %s in %.1f ms (now day %d)%n", journal.getRecovered(),
+                            journal.getPath(), (System.nanoTime() - t0) / 1e6, game.getDay());
+                }
+                if (!journaled || saveFile != source) journal.close();
+            } catch (GameException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+            FarmGrid grid = game.getFarm().getGrid();
+            rows = grid.getRows();
+            cols = grid.getCols();
+            seed = game.getSeed();
+            eventDriven |= game.getFarm().isEventDriven();
+            game.getFarm().setParallelism(parallelism);
+            if (!rules.isEmpty()) game.setRules(new RulePlan(rules));
+            rules.clear();
+            rules.addAll(game.getRules().getRules());
+        } else {
+            try {
+                game = mappedPath != null ? new GameState(rows, cols, seed, Path.of(mappedPath))
+                        : new GameState(rows, cols, seed);
+            } catch (GameException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+            game.getFarm().setParallelism(parallelism);
+            if (weatherTile > 0) game.setWeatherZones(weatherTile, weatherTile);
+            if (plantAll) {
+                FarmGrid grid = game.getFarm().getGrid();
+                for (int i = 0; i < grid.size(); i++) {
+                    grid.plant(i, crop.newPlant());
+                    grid.water(i, 10);
+                    grid.fertilize(i, 10);
+                }
+            }
+            game.setRules(new RulePlan(rules));
+        }
+        game.getFarm().setEventDriven(eventDriven);
+        if (journaled && game.getJournal() == null) {
+            // The journal needs a save to start from
+            SaveReport saved = save(saveFile, game);
+            System.out.println("Journal base: " + saved);
+            startJournal(saveFile, game);
+        }
+
+        System.out.printf("Farm %dx%d | %d days | policy %s | %s tick | parallelism %d | weather zones %d | storage %s"
+                        + " | seed %d%n", rows, cols, days, policy.getName(), eventDriven ? "event-driven" : "daily",
+                parallelism, game.getFarm().getWeatherZones().getCount(), game.getFarm().getStorageName(), seed);
+        for (Rule rule : rules) System.out.println("Rule: " + rule);
+
+        long policyNanos = 0, tickNanos = 0, saveNanos = 0;
+        int saves = 0;
+        AutoSave autoSave = autoSaved ? new AutoSave(saveFile, game, saveEvery, 0) : null;
+        long plantedCellDays = 0;
+        int daysRun = 0;
+        long start = System.nanoTime();
+        for (int d = 0; d < days; d++) {
+            long t0 = System.nanoTime();
+            policy.act(game);
+            long t1 = System.nanoTime();
+            DayReport report = game.advanceDay();
+            long t2 = System.nanoTime();
+            policyNanos += t1 - t0;
+            tickNanos += t2 - t1;
+            plantedCellDays += report.getCropsAlive();
+            daysRun++;
+
+            if (reportEvery > 0 && daysRun % reportEvery == 0) System.out.println(report);
+            if (autoSave != null && d < days - 1) {
+                // Only the snapshot is taken here; the save is written while the next days run
+                long t3 = System.nanoTime();
+                autoSave.poll();
+                saveNanos += System.nanoTime() - t3;
+            } else if (saveEvery > 0 && daysRun % saveEvery == 0 && d < days - 1) {
+                SaveReport saved = save(saveFile, game);
+                saveNanos += saved.getNanos();
+                saves++;
+            }
+            if (game.isGameOver()) {
+                System.out.println("Game over on day " + game.getDay());
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start - saveNanos;
+        if (autoSave != null) {
+            autoSave.close();
+            saves += autoSave.getSaves();
+            System.out.println("Autosave: " + autoSave);
+            if (autoSave.getLastFailure() != null) {
+                System.err.println(autoSave.getLastFailure().getMessage());
+                System.exit(1);
+            }
+        }
+        if (saveFile != null) {
+            SaveReport saved = save(saveFile, game);
+            saveNanos += saved.getNanos();
+            saves++;
+            System.out.println(saved);
+            System.out.printf("Saves: %d to %s, %.1f ms in total%n", saves, savePath, saveNanos / 1e6);
+        }
+        Journal journal = game.getJournal();
+        if (journal != null) {
+            long appended = journal.getAppended();
+            try {
+                journal.close();
+            } catch (GameException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            System.out.printf("Journal: %d actions recorded to %s%n", appended, journal.getPath());
+        }
+
+        long cells = (long) rows * cols;
+        double seconds = elapsed / 1e9;
+        double tickSeconds = tickNanos / 1e9;
+        System.out.printf("Elapsed: %.3f s (tick %.3f s incl. rules, policy %.3f s)%n", seconds, tickSeconds,
+                policyNanos / 1e9);
+        System.out.printf("Throughput: %.1f days/s | %.3g cells/s | %.3g planted cells/s (tick only)%n",
+                daysRun / seconds, cells * daysRun / seconds, tickSeconds > 0 ? plantedCellDays / tickSeconds : 0.0);
+        if (policy instanceof MctsPolicy) System.out.println(((MctsPolicy) policy).getSearchStats());
+        System.out.println("Final: " + game.getStats());
+        System.out.printf("Infected: %d | Soil total: %d%n", game.getFarm().getInfectedCount(),
+                game.getFarm().getSoilQualityTotal());
+        if (mappedPath != null) {
+            long t0 = System.nanoTime();
+            game.getFarm().force();
+            System.out.printf("Flushed %s in %.1f ms%n", mappedPath, (System.nanoTime() - t0) / 1e6);
+        }
+        game.getFarm().close();
+    }
+
+    private static void startJournal(SaveFile saveFile, GameState game) {
+        try {
+            Journal.start(saveFile, game);
+        } catch (GameException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static SaveReport save(SaveFile saveFile, GameState game) {
+        try {
+            return saveFile.save(game);
+        } catch (GameException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+}
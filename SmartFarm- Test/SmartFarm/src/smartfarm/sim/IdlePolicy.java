@@ -0,0 +1,13 @@
+// Class IdlePolicy: A player who never does anything (pure tick throughput)
+package smartfarm.sim;
+
+import smartfarm.model.GameState;
+
+public class IdlePolicy implements Policy {
+    @Override
+    public String getName() { return "idle"; }
+
+    @Override
+    public void act(GameState game) {
+    }
+}
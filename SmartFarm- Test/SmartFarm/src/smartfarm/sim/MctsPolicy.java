@@ -0,0 +1,205 @@
+// Class MctsPolicy: An AI player that chooses each day's FarmMove by Monte Carlo tree search
+// Every iteration forks the game with a fresh seed (another possible future of weather and pests), walks
+// down the tree picking moves by UCB1, adds the first position it has not seen, then plays on with a cheap
+// greedy rollout to the horizon and scores the change in the farm's worth. Nodes live in a transposition table
+// keyed by GameState.stateHash, so positions reached by different paths, and positions searched on earlier
+// days, share their statistics. A decision stops at the time budget or the iteration budget, whichever is set
+// (an iteration budget alone makes the player reproducible from its seed)
+package smartfarm.sim;
+
+import smartfarm.model.FarmGrid;
+import smartfarm.model.GameState;
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.PlantType;
+import smartfarm.util.Constants;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class MctsPolicy implements Policy {
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final double ROLLOUT_RANDOM_MOVES = 0.25;   // Share of rollout days played with a random move
+    private static final double STOCK_VALUE = 0.5;
+    private static final int TABLE_SIZE_LOG2 = 18;
+
+    private final long thinkNanos;          // 0: no time limit
+    private final int maxIterations;        // 0: no iteration limit
+    private final int treeDays;             // Deepest the tree grows below the root
+    private final int horizonDays;          // Days played per iteration, tree and rollout together
+    private final SplittableRandom random;
+    private final TranspositionTable table = new TranspositionTable(TABLE_SIZE_LOG2);
+    private final List<FarmMove> moves = FarmMove.all();
+    private final PlantType rolloutCrop;
+
+    // Rewards seen so far, to scale UCB1 into [0, 1]
+    private double lowReward = Double.POSITIVE_INFINITY, highReward = Double.NEGATIVE_INFINITY;
+
+    // Totals for benchmarking
+    private long decisions, iterations, searchNanos;
+
+    static final class Node {
+        int visits;
+        int[] moveVisits;
+        double[] moveReward;    // Sum of rewards after each move
+    }
+
+    public MctsPolicy(long thinkMillis, int maxIterations, long seed) {
+        if (thinkMillis <= 0 && maxIterations <= 0) throw new IllegalArgumentException("MCTS needs a time or iteration budget");
+        this.thinkNanos = Math.max(0, thinkMillis) * 1_000_000;
+        this.maxIterations = Math.max(0, maxIterations);
+        this.treeDays = 6;
+        this.horizonDays = 30;
+        this.random = new SplittableRandom(seed);
+        // Rollouts sow the crop with the best profit per day of growing
+        PlantType best = null;
+        for (PlantType type : PlantType.values()) {
+            if (best == null || profitPerDay(type) > profitPerDay(best)) best = type;
+        }
+        this.rolloutCrop = best;
+    }
+
+    private static double profitPerDay(PlantType type) {
+        return (type.getHarvestValue() - type.getSeedCost()) / (3.0 * type.getGrowthTime());
+    }
+
+    @Override
+    public String getName() { return "mcts"; }
+
+    @Override
+    public void act(GameState game) {
+        decide(game).apply(game);
+    }
+
+    public FarmMove decide(GameState game) {
+        long start = System.nanoTime();
+        Node root = table.get(game.stateHash());
+        double base = worth(game);
+        int n = 0;
+        do {
+            iterate(game, root, base);
+            n++;
+        } while ((maxIterations == 0 || n < maxIterations) && (thinkNanos == 0 || System.nanoTime() - start < thinkNanos));
+        decisions++;
+        iterations += n;
+        searchNanos += System.nanoTime() - start;
+
+        // The most visited move is the most trusted one
+        int best = 0;
+        for (int m = 1; m < moves.size(); m++) {
+            if (root.moveVisits[m] > root.moveVisits[best]
+                    || (root.moveVisits[m] == root.moveVisits[best] && mean(root, m) > mean(root, best))) {
+                best = m;
+            }
+        }
+        return moves.get(best);
+    }
+
+    private void iterate(GameState game, Node root, double base) {
+        GameState sim = game.fork(random.nextLong());
+        Node[] pathNodes = new Node[treeDays];
+        int[] pathMoves = new int[treeDays];
+        int depth = 0;
+        Node node = root;
+        while (true) {
+            int m = select(node);
+            pathNodes[depth] = node;
+            pathMoves[depth++] = m;
+            moves.get(m).apply(sim);
+            sim.advanceDay();
+            if (depth == treeDays || sim.isGameOver()) break;
+            long hash = sim.stateHash();
+            boolean seen = table.contains(hash);
+            node = table.get(hash);
+            if (!seen) break;       // A new position: judge it by a rollout
+        }
+
+        for (int d = depth; d < horizonDays && !sim.isGameOver(); d++) {
+            rolloutMove(sim).apply(sim);
+            sim.advanceDay();
+        }
+        double reward = worth(sim) - base;
+        lowReward = Math.min(lowReward, reward);
+        highReward = Math.max(highReward, reward);
+
+        for (int k = 0; k < depth; k++) {
+            Node n = pathNodes[k];
+            n.visits++;
+            n.moveVisits[pathMoves[k]]++;
+            n.moveReward[pathMoves[k]] += reward;
+        }
+    }
+
+    private int select(Node node) {
+        // Untried moves first, then UCB1 on rewards scaled to [0, 1]
+        if (node.moveVisits == null) {
+            node.moveVisits = new int[moves.size()];
+            node.moveReward = new double[moves.size()];
+        }
+        int untried = -1, tried = 0;
+        for (int m = 0; m < moves.size(); m++) {
+            if (node.moveVisits[m] == 0) {
+                // Pick among the untried moves at random, so a short search does not favour the first ones
+                if (random.nextInt(++tried) == 0) untried = m;
+            }
+        }
+        if (untried >= 0) return untried;
+
+        double range = highReward > lowReward ? highReward - lowReward : 1;
+        double logVisits = Math.log(node.visits);
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int m = 0; m < moves.size(); m++) {
+            double score = (mean(node, m) - lowReward) / range + EXPLORATION * Math.sqrt(logVisits / node.moveVisits[m]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = m;
+            }
+        }
+        return best;
+    }
+
+    private static double mean(Node node, int m) {
+        return node.moveVisits[m] > 0 ? node.moveReward[m] / node.moveVisits[m] : Double.NEGATIVE_INFINITY;
+    }
+
+    private FarmMove rolloutMove(GameState game) {
+        // Greedy default policy with some random days: sow the best crop and restock whatever runs low
+        if (random.nextDouble() < ROLLOUT_RANDOM_MOVES) return moves.get(random.nextInt(moves.size()));
+        int cells = Math.max(1, game.getFarm().getGrid().getActiveCount());
+        FarmMove.Purchase purchase = FarmMove.Purchase.NONE;
+        if (game.getWaterStock() < cells * Constants.WATER_AMOUNT_PER_USE) {
+            purchase = FarmMove.Purchase.WATER;
+        } else if (game.getFertilizerStock() < cells * Constants.FERTILIZER_AMOUNT_PER_USE) {
+            purchase = FarmMove.Purchase.FERTILIZER;
+        } else if (game.getPesticideStock() < game.getFarm().getInfectedCount()) {
+            purchase = FarmMove.Purchase.PESTICIDE;
+        }
+        return moves.get(FarmMove.indexOf(rolloutCrop, purchase));
+    }
+
+    static double worth(GameState game) {
+        // Money, plus the stock at half the shop price (it cannot be sold back, so hoarding must not pay), plus
+        // each crop valued from its seed cost (just sown) up to its harvest value (ripe)
+        double worth = game.getMoney() + STOCK_VALUE * (game.getWaterStock() * Constants.WATER_PRICE
+                + game.getFertilizerStock() * Constants.FERTILIZER_PRICE
+                + game.getPesticideStock() * Constants.PESTICIDE_PRICE);
+        FarmGrid grid = game.getFarm().getGrid();
+        int ripe = Plant.Stage.HARVEST.ordinal(), seed = Plant.Stage.SEED.ordinal();
+        for (int k = 0; k < grid.getActiveCount(); k++) {
+            int i = grid.getActiveSlot(k);
+            if (grid.isEmpty(i)) continue;
+            PlantType type = grid.getType(i);
+            double grown = (grid.getStage(i).ordinal() - seed) / (double) (ripe - seed);
+            worth += type.getSeedCost() + (type.getHarvestValue() - type.getSeedCost()) * grown;
+        }
+        return worth;
+    }
+
+    public String getSearchStats() {
+        double seconds = searchNanos / 1e9;
+        return String.format("MCTS: %d decisions | %d iterations (%.0f/decision, %.0f/s) | table %d nodes, %.1f%% hits",
+                decisions, iterations, decisions > 0 ? (double) iterations / decisions : 0.0,
+                seconds > 0 ? iterations / seconds : 0.0, table.size(),
+                table.getLookups() > 0 ? 100.0 * table.getHits() / table.getLookups() : 0.0);
+    }
+}
@@ -0,0 +1,11 @@
+// Interface Policy: Decides the player's actions for a headless game
+// Called once per day, before the day is advanced
+package smartfarm.sim;
+
+import smartfarm.model.GameState;
+
+public interface Policy {
+    String getName();
+
+    void act(GameState game);
+}
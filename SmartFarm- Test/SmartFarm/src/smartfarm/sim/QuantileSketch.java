@@ -0,0 +1,174 @@
+// Class QuantileSketch: Approximate quantiles of a stream in bounded memory (a merging t-digest)
+// Values are buffered and, when the buffer fills, merged into a sorted list of weighted centroids. The size
+// limit of a centroid follows the arcsine scale function, so centroids stay small near the tails and the
+// extreme quantiles (the ones risk questions ask for) stay accurate. About 2x compression centroids are kept
+// whatever the stream length. Two sketches merge by folding one's centroids into the other
+package smartfarm.sim;
+
+import java.util.Arrays;
+
+public class QuantileSketch {
+    private final double compression;
+
+    // Centroids, sorted by mean
+    private double[] mean;
+    private double[] weight;
+    private int centroids;
+    private double centroidWeight;
+
+    // Values not merged yet
+    private final double[] bufferMean;
+    private final double[] bufferWeight;
+    private int buffered;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(100);
+    }
+
+    public QuantileSketch(double compression) {
+        if (compression < 10) throw new IllegalArgumentException("Compression must be at least 10");
+        this.compression = compression;
+        int capacity = (int) Math.ceil(2 * compression) + 10;
+        this.mean = new double[capacity];
+        this.weight = new double[capacity];
+        this.bufferMean = new double[5 * capacity];
+        this.bufferWeight = new double[5 * capacity];
+    }
+
+    public void add(double x) {
+        add(x, 1);
+        count++;
+    }
+
+    private void add(double x, double w) {
+        if (buffered == bufferMean.length) compress();
+        bufferMean[buffered] = x;
+        bufferWeight[buffered] = w;
+        buffered++;
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    public void merge(QuantileSketch other) {
+        for (int c = 0; c < other.centroids; c++) add(other.mean[c], other.weight[c]);
+        for (int b = 0; b < other.buffered; b++) add(other.bufferMean[b], other.bufferWeight[b]);
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void compress() {
+        if (buffered == 0) return;
+        sort(bufferMean, bufferWeight, 0, buffered - 1);
+        double total = centroidWeight;
+        for (int b = 0; b < buffered; b++) total += bufferWeight[b];
+
+        // Walk the old centroids and the sorted buffer in order, growing the current centroid while the
+        // scale function allows it
+        double[] newMean = new double[mean.length];
+        double[] newWeight = new double[mean.length];
+        int n = 0, c = 0, b = 0;
+        double before = 0;          // Weight of the centroids already closed
+        double curMean = 0, curWeight = 0;
+        while (c < centroids || b < buffered) {
+            double m, w;
+            if (b == buffered || (c < centroids && mean[c] <= bufferMean[b])) {
+                m = mean[c];
+                w = weight[c++];
+            } else {
+                m = bufferMean[b];
+                w = bufferWeight[b++];
+            }
+            if (curWeight > 0 && scale((before + curWeight + w) / total) - scale(before / total) <= 1) {
+                curWeight += w;
+                curMean += (m - curMean) * w / curWeight;
+                continue;
+            }
+            if (curWeight > 0) {
+                if (n == newMean.length) {
+                    newMean = Arrays.copyOf(newMean, n * 2);
+                    newWeight = Arrays.copyOf(newWeight, n * 2);
+                }
+                newMean[n] = curMean;
+                newWeight[n++] = curWeight;
+                before += curWeight;
+            }
+            curMean = m;
+            curWeight = w;
+        }
+        if (n == newMean.length) {
+            newMean = Arrays.copyOf(newMean, n + 1);
+            newWeight = Arrays.copyOf(newWeight, n + 1);
+        }
+        newMean[n] = curMean;
+        newWeight[n++] = curWeight;
+
+        mean = newMean;
+        weight = newWeight;
+        centroids = n;
+        centroidWeight = total;
+        buffered = 0;
+    }
+
+    private double scale(double q) {
+        // k1 scale function: a centroid may span at most one unit of k
+        return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1, Math.max(0, q)) - 1);
+    }
+
+    private static void sort(double[] keys, double[] values, int lo, int hi) {
+        // Quicksort of the buffer by value, carrying the weights along
+        while (lo < hi) {
+            double pivot = keys[(lo + hi) >>> 1];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (keys[i] < pivot) i++;
+                while (keys[j] > pivot) j--;
+                if (i <= j) {
+                    double k = keys[i]; keys[i] = keys[j]; keys[j] = k;
+                    double v = values[i]; values[i] = values[j]; values[j] = v;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller half, loop on the larger
+            if (j - lo < hi - i) {
+                sort(keys, values, lo, j);
+                lo = i;
+            } else {
+                sort(keys, values, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    public double quantile(double q) {
+        // Interpolates between centroid centres; the ends reach out to the exact min and max
+        if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        compress();
+        if (centroids == 0) return Double.NaN;
+        if (centroids == 1) return mean[0];
+        double target = q * centroidWeight;
+        if (target < weight[0] / 2) {
+            return min + (mean[0] - min) * target / (weight[0] / 2);
+        }
+        double centre = weight[0] / 2;      // Cumulative weight at the centre of centroid c
+        for (int c = 0; c < centroids - 1; c++) {
+            double next = centre + (weight[c] + weight[c + 1]) / 2;
+            if (target <= next) {
+                return mean[c] + (mean[c + 1] - mean[c]) * (target - centre) / (next - centre);
+            }
+            centre = next;
+        }
+        double tail = weight[centroids - 1] / 2;
+        return mean[centroids - 1] + (max - mean[centroids - 1]) * Math.min(1, (target - centre) / tail);
+    }
+
+    public long getCount() { return count; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+    public int getCentroidCount() { compress(); return centroids; }
+}
@@ -0,0 +1,48 @@
+// Class RunningStats: Count, mean, variance, min and max of a stream of values in constant memory
+// Uses Welford's update, and Chan et al.'s pairwise formula to merge the stats of two partial streams, so
+// parallel workers can each keep their own and combine them at the end
+package smartfarm.sim;
+
+public class RunningStats {
+    private long count;
+    private double mean;
+    private double m2;          // Sum of squared distances from the mean
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double x) {
+        count++;
+        double delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    public void merge(RunningStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return count > 0 ? mean : Double.NaN; }
+    public double getVariance() { return count > 1 ? m2 / (count - 1) : 0; }
+    public double getStdDev() { return Math.sqrt(getVariance()); }
+    public double getStdError() { return count > 0 ? Math.sqrt(getVariance() / count) : Double.NaN; }
+    public double getMin() { return min; }
+    public double getMax() { return max; }
+}
@@ -0,0 +1,32 @@
+// Class SchedulePolicy: The CarePolicy player, but caring for each crop as its CareSchedule advises
+// Harvesting, replanting and restocking are unchanged, so a run against --policy care measures what the
+// solved schedule gains (or loses) over the simple top-up rule
+package smartfarm.sim;
+
+import smartfarm.model.Farm;
+import smartfarm.model.FarmGrid;
+import smartfarm.model.GameState;
+import smartfarm.model.plant.CareSchedule;
+import smartfarm.model.plant.PlantType;
+
+public class SchedulePolicy extends CarePolicy {
+
+    public SchedulePolicy(PlantType... rotation) {
+        super(rotation);
+    }
+
+    @Override
+    public String getName() { return "schedule"; }
+
+    @Override
+    protected void tend(GameState game, int row, int col, int i) {
+        Farm farm = game.getFarm();
+        FarmGrid grid = farm.getGrid();
+        CareSchedule schedule = CareSchedule.of(grid.getType(i), grid.getSoil(i));
+        int action = schedule.getAction(grid.getDaysGrown(i), grid.getWaterLevel(i), grid.getFertilizerLevel(i),
+                grid.getHealth(i), grid.isInfected(i), farm.getWeatherAt(row, col));
+        if ((action & CareSchedule.TREAT) != 0) game.tryTreatPest(row, col);
+        if ((action & CareSchedule.WATER) != 0) game.tryWater(row, col);
+        if ((action & CareSchedule.FERTILIZE) != 0) game.tryFertilize(row, col);
+    }
+}
@@ -0,0 +1,144 @@
+// Class StorageBenchmark: Daily tick on the heap grid against the memory-mapped grid
+// Plays the same seeded farm twice, once with its cells on the heap and once in a mapped file, checks that
+// both end in the same state and reports the tick time per day, the heap each farm holds and how long the
+// mapped farm takes to force its file. Before each round every cell is replanted or topped up (untimed), so
+// the rounds tick a farm at the given density rather than one dying of drought
+//
+// Usage: java --enable-preview smartfarm.sim.StorageBenchmark [--rows N] [--cols N] [--density 0..1]
+//            [--days N] [--rounds N] [--file PATH]
+package smartfarm.sim;
+
+import smartfarm.exception.GameException;
+import smartfarm.model.FarmGrid;
+import smartfarm.model.GameState;
+import smartfarm.model.plant.PlantType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+public class StorageBenchmark {
+    private static final int WARMUP_ROUNDS = 2;
+    private static final long SEED = 42;
+
+    private int rows = 2000;
+    private int cols = 2000;
+    private double density = 0.9;
+    private int days = 5;
+    private int rounds = 5;
+    private String file;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        StorageBenchmark benchmark = new StorageBenchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: StorageBenchmark [--rows N] [--cols N] [--density 0..1] [--days N] [--rounds N]"
+                    + " [--file PATH]");
+            System.exit(2);
+        }
+        try {
+            benchmark.run();
+        } catch (GameException | IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int a = 0; a < args.length; a++) {
+            String arg = args[a];
+            if (a + 1 >= args.length) throw new IllegalArgumentException(arg + " expects a value");
+            try {
+                switch (arg) {
+                    case "--rows": rows = Integer.parseInt(args[++a]); break;
+                    case "--cols": cols = Integer.parseInt(args[++a]); break;
+                    case "--density": density = Double.parseDouble(args[++a]); break;
+                    case "--days": days = Integer.parseInt(args[++a]); break;
+                    case "--rounds": rounds = Integer.parseInt(args[++a]); break;
+                    case "--file": file = args[++a]; break;
+                    default: throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(arg + " expects a number");
+            }
+        }
+        if (rows < 1 || cols < 1 || days < 1 || rounds < 1 || density < 0 || density > 1) {
+            throw new IllegalArgumentException("Sizes, days and rounds must be at least 1, density in [0, 1]");
+        }
+    }
+
+    private void run() throws GameException, IOException {
+        Path path = file != null ? Path.of(file) : Files.createTempFile("smartfarm", ".cells");
+        System.out.printf("Farm %dx%d | density %.2f | %d rounds of %d days | mapped file %s%n", rows, cols, density,
+                rounds, days, path);
+
+        long before = usedHeap();
+        GameState heap = new GameState(rows, cols, SEED);
+        long heapBytes = usedHeap() - before;
+        before = usedHeap();
+        GameState mapped = new GameState(rows, cols, SEED, path);
+        long mappedBytes = usedHeap() - before;
+        for (GameState game : new GameState[] {heap, mapped}) game.getFarm().setParallelism(1);
+
+        try {
+            long heapNanos = 0, mappedNanos = 0, forceNanos = 0;
+            for (int r = 0; r < WARMUP_ROUNDS + rounds; r++) {
+                prepare(heap, r);
+                prepare(mapped, r);
+                long t0 = System.nanoTime();
+                for (int d = 0; d < days; d++) heap.advanceDay();
+                long t1 = System.nanoTime();
+                for (int d = 0; d < days; d++) mapped.advanceDay();
+                long t2 = System.nanoTime();
+                mapped.getFarm().force();
+                long t3 = System.nanoTime();
+                if (r < WARMUP_ROUNDS) continue;
+                heapNanos += t1 - t0;
+                mappedNanos += t2 - t1;
+                forceNanos += t3 - t2;
+            }
+            if (heap.stateHash() != mapped.stateHash()) {
+                throw new IllegalStateException("The mapped farm ended in a different state from the heap farm");
+            }
+
+            int dayCount = rounds * days;
+            report("heap", heapNanos, dayCount, heapBytes, heapNanos);
+            report("mapped", mappedNanos, dayCount, mappedBytes, heapNanos);
+            System.out.printf("force: %.1f ms per round | file %,d bytes%n", forceNanos / 1e6 / rounds, Files.size(path));
+        } finally {
+            mapped.getFarm().close();
+            if (file == null) Files.deleteIfExists(path);
+        }
+    }
+
+    private void prepare(GameState game, int round) {
+        // Same cells planted and topped up on both farms
+        FarmGrid grid = game.getFarm().getGrid();
+        SplittableRandom random = new SplittableRandom(round);
+        PlantType[] types = PlantType.values();
+        for (int i = 0; i < grid.size(); i++) {
+            if (random.nextDouble() >= density) continue;
+            PlantType type = types[random.nextInt(types.length)];
+            if (grid.isEmpty(i)) grid.plant(i, type.newPlant());
+            grid.water(i, 10);
+            grid.fertilize(i, 10);
+            grid.improveSoil(i, 10);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void report(String name, long nanos, int dayCount, long heapBytes, long baselineNanos) {
+        double cells = (double) rows * cols * dayCount / (nanos / 1e9);
+        System.out.printf("%-7s %9.2f ms per day | %.3g cells/s | %.2fx | heap %,d MB%n", name,
+                nanos / 1e6 / dayCount, cells, (double) baselineNanos / nanos, heapBytes >> 20);
+    }
+}
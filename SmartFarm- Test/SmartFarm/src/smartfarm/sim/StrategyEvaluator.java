@@ -0,0 +1,191 @@
+// Class StrategyEvaluator: Monte Carlo comparison of crop plans
+// Plays many independently seeded headless games per plan with the CarePolicy and reports the profit
+// distribution: mean (with its standard error), spread, quantiles, the chance of a loss and of going broke.
+// Games run in parallel on a fork/join pool; each worker streams its results into its own accumulators
+// (RunningStats and a QuantileSketch), which are merged up the task tree, so memory does not grow with the
+// number of games. Game g of every plan uses the same seed, so plans are compared on the same weather and
+// pest luck, and the results do not depend on the number of threads
+//
+// Usage: java smartfarm.sim.StrategyEvaluator [--plan CROP[/CROP...]]... [--games N] [--days N]
+//            [--rows N] [--cols N] [--threads N] [--seed N]
+// A plan is one crop (Tomato) or a rotation that each cell follows when replanted (Potato/Wheat).
+// Without --plan every single crop in the registry is evaluated
+package smartfarm.sim;
+
+import smartfarm.model.GameRandom;
+import smartfarm.model.GameState;
+import smartfarm.model.plant.PlantType;
+import smartfarm.util.Constants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class StrategyEvaluator {
+    private static final int GAMES_PER_TASK = 8;
+    private static final int START_MONEY = new GameState(1, 1, 0).getMoney();
+
+    private final List<PlantType[]> plans = new ArrayList<>();
+    private int games = 10_000;
+    private int days = 100;
+    private int rows = Constants.DEFAULT_FARM_ROWS;
+    private int cols = Constants.DEFAULT_FARM_COLS;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = GameRandom.newSeed();
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        StrategyEvaluator evaluator = new StrategyEvaluator();
+        try {
+            evaluator.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: StrategyEvaluator [--plan CROP[/CROP...]]... [--games N] [--days N]"
+                    + " [--rows N] [--cols N] [--threads N] [--seed N]");
+            System.exit(2);
+        }
+        evaluator.run();
+    }
+
+    private void parse(String[] args) {
+        for (int a = 0; a < args.length; a++) {
+            String arg = args[a];
+            switch (arg) {
+                case "--plan": plans.add(plan(value(args, ++a, arg))); break;
+                case "--games": games = intArg(args, ++a, arg); break;
+                case "--days": days = intArg(args, ++a, arg); break;
+                case "--rows": rows = intArg(args, ++a, arg); break;
+                case "--cols": cols = intArg(args, ++a, arg); break;
+                case "--threads": threads = intArg(args, ++a, arg); break;
+                case "--seed": seed = Long.parseLong(value(args, ++a, arg).replace("_", "")); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (games < 1 || days < 1 || rows < 1 || cols < 1 || threads < 1) {
+            throw new IllegalArgumentException("Games, days, sizes and threads must be at least 1");
+        }
+        if (plans.isEmpty()) {
+            for (PlantType type : PlantType.values()) plans.add(new PlantType[] {type});
+        }
+    }
+
+    private static PlantType[] plan(String text) {
+        String[] names = text.split("[/,]");
+        PlantType[] rotation = new PlantType[names.length];
+        for (int n = 0; n < names.length; n++) {
+            rotation[n] = PlantType.byName(names[n]);
+            if (rotation[n] == null) throw new IllegalArgumentException("Unknown crop: " + names[n].trim());
+        }
+        return rotation;
+    }
+
+    private static int intArg(String[] args, int a, String option) {
+        try {
+            return Integer.parseInt(value(args, a, option).replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number");
+        }
+    }
+
+    private static String value(String[] args, int a, String option) {
+        if (a >= args.length) throw new IllegalArgumentException(option + " expects a value");
+        return args[a];
+    }
+
+    private static String name(PlantType[] plan) {
+        StringBuilder sb = new StringBuilder();
+        for (PlantType type : plan) sb.append(sb.length() > 0 ? "/" : "").append(type.getName());
+        return sb.toString();
+    }
+
+    private void run() {
+        System.out.printf("%d games x %d days per plan | farm %dx%d | %d threads | seed %d%n",
+                games, days, rows, cols, threads, seed);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (PlantType[] plan : plans) {
+                long start = System.nanoTime();
+                Outcome outcome = pool.invoke(new GameTask(plan, 0, games));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                print(name(plan), outcome, seconds);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void print(String plan, Outcome outcome, double seconds) {
+        RunningStats profit = outcome.profit;
+        QuantileSketch quantiles = outcome.quantiles;
+        System.out.printf("%nPlan %s: %.0f games/s (%.2f s)%n", plan, profit.getCount() / seconds, seconds);
+        System.out.printf("  Profit: mean $%.1f (+/- %.1f) | sd $%.1f | min $%.0f | max $%.0f%n",
+                profit.getMean(), 1.96 * profit.getStdError(), profit.getStdDev(), profit.getMin(), profit.getMax());
+        System.out.printf("  Quantiles: p1 $%.0f | p5 $%.0f | p25 $%.0f | p50 $%.0f | p75 $%.0f | p95 $%.0f | p99 $%.0f%n",
+                quantiles.quantile(0.01), quantiles.quantile(0.05), quantiles.quantile(0.25),
+                quantiles.quantile(0.5), quantiles.quantile(0.75), quantiles.quantile(0.95),
+                quantiles.quantile(0.99));
+        System.out.printf("  Loss: %.2f%% | Game over: %.2f%%%n",
+                100.0 * outcome.losses / profit.getCount(), 100.0 * outcome.gameOvers / profit.getCount());
+    }
+
+    private GameState play(PlantType[] plan, long gameSeed) {
+        // One headless game, played until the last day or game over
+        GameState game = new GameState(rows, cols, gameSeed);
+        game.getFarm().setParallelism(1);       // The games themselves are the parallel work
+        Policy policy = new CarePolicy(plan);
+        for (int d = 0; d < days && !game.isGameOver(); d++) {
+            policy.act(game);
+            game.advanceDay();
+        }
+        return game;
+    }
+
+    // Accumulators for a range of games, merged pairwise up the task tree
+    private static class Outcome {
+        final RunningStats profit = new RunningStats();
+        final QuantileSketch quantiles = new QuantileSketch();
+        long losses;
+        long gameOvers;
+
+        void merge(Outcome other) {
+            profit.merge(other.profit);
+            quantiles.merge(other.quantiles);
+            losses += other.losses;
+            gameOvers += other.gameOvers;
+        }
+    }
+
+    private class GameTask extends RecursiveTask<Outcome> {
+        private final PlantType[] plan;
+        private final int fromGame, toGame;
+
+        GameTask(PlantType[] plan, int fromGame, int toGame) {
+            this.plan = plan;
+            this.fromGame = fromGame;
+            this.toGame = toGame;
+        }
+
+        @Override
+        protected Outcome compute() {
+            if (toGame - fromGame > GAMES_PER_TASK) {
+                int mid = (fromGame + toGame) >>> 1;
+                GameTask right = new GameTask(plan, mid, toGame);
+                right.fork();
+                Outcome outcome = new GameTask(plan, fromGame, mid).compute();
+                outcome.merge(right.join());
+                return outcome;
+            }
+            Outcome outcome = new Outcome();
+            for (int g = fromGame; g < toGame; g++) {
+                GameState game = play(plan, GameRandom.stripe(seed, g).nextLong());
+                int profit = game.getMoney() - START_MONEY;
+                outcome.profit.add(profit);
+                outcome.quantiles.add(profit);
+                if (profit < 0) outcome.losses++;
+                if (game.isGameOver()) outcome.gameOvers++;
+            }
+            return outcome;
+        }
+    }
+}
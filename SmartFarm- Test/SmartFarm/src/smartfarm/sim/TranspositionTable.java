@@ -0,0 +1,62 @@
+// Class TranspositionTable: Search nodes keyed by GameState.stateHash, so a position reached along different
+// paths (or again on a later day's search) is searched once. Open addressing on primitive long keys; when it
+// fills up it is simply cleared, since the search rebuilds what it needs
+package smartfarm.sim;
+
+import java.util.Arrays;
+
+final class TranspositionTable {
+    private final long[] keys;
+    private final MctsPolicy.Node[] nodes;
+    private final int mask;
+    private final int limit;
+    private int size;
+    private long lookups, hits;
+
+    TranspositionTable(int capacityPowerOfTwo) {
+        int capacity = 1 << capacityPowerOfTwo;
+        this.keys = new long[capacity];
+        this.nodes = new MctsPolicy.Node[capacity];
+        this.mask = capacity - 1;
+        this.limit = capacity / 4 * 3;
+    }
+
+    MctsPolicy.Node get(long key) {
+        // The node for this position, created on first sight
+        lookups++;
+        int slot = (int) (key ^ key >>> 32) & mask;
+        while (nodes[slot] != null) {
+            if (keys[slot] == key) {
+                hits++;
+                return nodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size == limit) {
+            clear();
+            return get(key);
+        }
+        keys[slot] = key;
+        nodes[slot] = new MctsPolicy.Node();
+        size++;
+        return nodes[slot];
+    }
+
+    boolean contains(long key) {
+        int slot = (int) (key ^ key >>> 32) & mask;
+        while (nodes[slot] != null) {
+            if (keys[slot] == key) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    void clear() {
+        Arrays.fill(nodes, null);
+        size = 0;
+    }
+
+    int size() { return size; }
+    long getLookups() { return lookups; }
+    long getHits() { return hits; }
+}
@@ -0,0 +1,147 @@
+// Class WeatherBenchmark: Per-plant Weather.applyEffect against the bulk weather kernels
+// Plants a farm at the given density with random levels, checks that every path gives the same levels and
+// then times rounds of each weather state. Run with --add-modules jdk.incubator.vector to include the
+// vector kernel
+//
+// Usage: java --add-modules jdk.incubator.vector smartfarm.sim.WeatherBenchmark [--rows N] [--cols N]
+//            [--density 0..1] [--rounds N]
+package smartfarm.sim;
+
+import smartfarm.model.FarmGrid;
+import smartfarm.model.WeatherKernel;
+import smartfarm.model.plant.Plant;
+import smartfarm.model.plant.Wheat;
+import smartfarm.model.weather.Weather;
+import smartfarm.model.weather.WeatherEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class WeatherBenchmark {
+    private static final int WARMUP_ROUNDS = 3;
+
+    private int rows = 1000;
+    private int cols = 1000;
+    private double density = 0.9;
+    private int rounds = 10;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        WeatherBenchmark benchmark = new WeatherBenchmark();
+        try {
+            benchmark.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: WeatherBenchmark [--rows N] [--cols N] [--density 0..1] [--rounds N]");
+            System.exit(2);
+        }
+        benchmark.run();
+    }
+
+    private void parse(String[] args) {
+        for (int a = 0; a < args.length; a++) {
+            String arg = args[a];
+            if (a + 1 >= args.length) throw new IllegalArgumentException(arg + " expects a value");
+            try {
+                switch (arg) {
+                    case "--rows": rows = Integer.parseInt(args[++a]); break;
+                    case "--cols": cols = Integer.parseInt(args[++a]); break;
+                    case "--density": density = Double.parseDouble(args[++a]); break;
+                    case "--rounds": rounds = Integer.parseInt(args[++a]); break;
+                    default: throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(arg + " expects a number");
+            }
+        }
+        if (rows < 1 || cols < 1 || rounds < 1 || density < 0 || density > 1) {
+            throw new IllegalArgumentException("Sizes and rounds must be at least 1, density in [0, 1]");
+        }
+    }
+
+    private void run() {
+        WeatherKernel vector = WeatherKernel.vector();
+        System.out.printf("Farm %dx%d | density %.2f | %d rounds of %d weathers | vector kernel: %s%n", rows, cols,
+                density, rounds, WeatherEngine.getStates().length, vector != null ? vector.getName() : "unavailable");
+
+        FarmGrid perPlant = createGrid(), scalar = createGrid(), vectorised = createGrid();
+        List<Plant> plants = new ArrayList<>();
+        for (int i = 0; i < perPlant.size(); i++) {
+            Plant plant = perPlant.plantAt(i);
+            if (plant != null) plants.add(plant);
+        }
+
+        // One round of every weather on each path, then the levels must agree
+        Weather[] states = WeatherEngine.getStates();
+        applyPerPlant(plants, states);
+        applyBulk(scalar, WeatherKernel.scalar(), states);
+        if (vector != null) applyBulk(vectorised, vector, states);
+        check(perPlant, scalar, "scalar");
+        if (vector != null) check(perPlant, vectorised, vector.getName());
+
+        long perPlantNanos = 0, scalarNanos = 0, vectorNanos = 0;
+        for (int r = 0; r < WARMUP_ROUNDS + rounds; r++) {
+            long t0 = System.nanoTime();
+            applyPerPlant(plants, states);
+            long t1 = System.nanoTime();
+            applyBulk(scalar, WeatherKernel.scalar(), states);
+            long t2 = System.nanoTime();
+            if (vector != null) applyBulk(vectorised, vector, states);
+            long t3 = System.nanoTime();
+            if (r < WARMUP_ROUNDS) continue;
+            perPlantNanos += t1 - t0;
+            scalarNanos += t2 - t1;
+            vectorNanos += t3 - t2;
+        }
+
+        int applications = rounds * states.length;
+        report("per-plant", perPlantNanos, applications, perPlantNanos);
+        report("scalar", scalarNanos, applications, perPlantNanos);
+        if (vector != null) report(vector.getName(), vectorNanos, applications, perPlantNanos);
+    }
+
+    private FarmGrid createGrid() {
+        // Same seed for every grid, so all paths start from identical levels
+        SplittableRandom random = new SplittableRandom(42);
+        FarmGrid grid = new FarmGrid(rows, cols);
+        for (int i = 0; i < grid.size(); i++) {
+            if (random.nextDouble() >= density) continue;
+            grid.plant(i, new Wheat());
+            grid.water(i, random.nextInt(11));
+            grid.fertilize(i, random.nextInt(11));
+            grid.adjustHealth(i, -random.nextInt(100));
+        }
+        return grid;
+    }
+
+    private static void applyPerPlant(List<Plant> plants, Weather[] states) {
+        for (Weather weather : states) {
+            for (Plant plant : plants) weather.applyEffect(plant);
+        }
+    }
+
+    private static void applyBulk(FarmGrid grid, WeatherKernel kernel, Weather[] states) {
+        for (Weather weather : states) {
+            grid.applyWeather(weather.getWaterEffect(), weather.getFertilizerEffect(), weather.getHealthEffect(), kernel);
+        }
+    }
+
+    private static void check(FarmGrid expected, FarmGrid actual, String name) {
+        for (int i = 0; i < expected.size(); i++) {
+            if (!expected.hasCrop(i)) continue;
+            if (expected.getWaterLevel(i) != actual.getWaterLevel(i)
+                    || expected.getFertilizerLevel(i) != actual.getFertilizerLevel(i)
+                    || expected.getHealth(i) != actual.getHealth(i)) {
+                throw new IllegalStateException(name + " kernel differs from the per-plant path at cell " + i);
+            }
+        }
+    }
+
+    private void report(String name, long nanos, int applications, long baselineNanos) {
+        double perApplication = nanos / 1e6 / applications;
+        double cells = (double) rows * cols * applications / (nanos / 1e9);
+        System.out.printf("%-12s %9.3f ms per weather | %.3g cells/s | %.1fx%n", name, perApplication, cells,
+                (double) baselineNanos / nanos);
+    }
+}
@@ -16,6 +16,22 @@ public class Constants {
     public static final double PEST_ATTACK_PROBABILITY = 0.2; 
     public static final double WEATHER_CHANGE_PROBABILITY = 0.3; 
     
+    // Parallel daily tick
+    public static final int PARALLEL_TICK_THRESHOLD = 250_000; // Farms with fewer planted cells tick on one thread
+    public static final int TICK_STRIPE_SIZE = 16_384;         // Planted cells per fork/join leaf
+    public static final int WEATHER_ZONE_GRAIN = 1_024;        // Zones per fork/join leaf when the weather advances
+
+    // Skip N days
+    public static final int MAX_SKIP_DAYS = 10_000;
+    public static final int EVENT_DRIVEN_SKIP_DAYS = 30;       // Longer skips use the event-driven tick
+
+    // Autosave, once the game has been saved (see AutoSave)
+    public static final int AUTOSAVE_DAYS = 7;
+    public static final int AUTOSAVE_SECONDS = 120;
+
+    // Statistics history (see History): days kept before the oldest are overwritten
+    public static final int HISTORY_DAYS = 1 << 18;
+    
     // UI
     public static final int CELL_SIZE = 80;  
     public static final String WINDOW_TITLE = "Smart Farm Simulator";
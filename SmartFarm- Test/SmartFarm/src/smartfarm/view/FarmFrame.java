@@ -5,14 +5,20 @@ import smartfarm.controller.FarmController;
 import smartfarm.exception.GameException;
 import smartfarm.model.*;
 import smartfarm.model.plant.*;
+import smartfarm.model.rules.Rule;
 import smartfarm.model.weather.Weather;
+import smartfarm.model.weather.WeatherEngine;
 import smartfarm.util.Constants;
 
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
 
 public class FarmFrame extends JFrame {
     
@@ -21,6 +27,9 @@ public class FarmFrame extends JFrame {
     // Store the position of the currently selected land cell
     private int selectedRow = -1;
     private int selectedCol = -1;
+    // Other corner of the selected area (Shift+click), the selected cell itself when there is no area
+    private int anchorRow = -1;
+    private int anchorCol = -1;
 
     // UI Components
     private JLabel lblStats;
@@ -31,13 +40,22 @@ public class FarmFrame extends JFrame {
     private JLabel lblResources;
     private JLabel lblMessage;
     
-    private JButton btnPlant, btnWater, btnFertilize, btnHarvest, btnTreatPest;
+    private JButton btnPlant, btnWater, btnFertilize, btnHarvest, btnTreatPest, btnBulk, btnRules;
     private JButton btnBuyWater, btnBuyFertilizer, btnBuyPesticide;
-    private JButton btnNextDay, btnHelp, btnBackToMenu;
+    private JButton btnNextDay, btnSkipDays, btnSave, btnHelp, btnBackToMenu;
+    private Timer autoSaveTimer;    // Lets the autosave run by the clock while the player thinks
+    private HistoryChart historyChart;
+    private JComboBox<String> seriesBox;
 
     public FarmFrame() {
-        this.gameState = new GameState(Constants.DEFAULT_FARM_ROWS, Constants.DEFAULT_FARM_COLS);
+        this(new GameState(Constants.DEFAULT_FARM_ROWS, Constants.DEFAULT_FARM_COLS), null);
+    }
+
+    public FarmFrame(GameState gameState, SaveFile saveFile) {
+        // A loaded game keeps its save file, so saving it again only writes what changed
+        this.gameState = gameState;
         this.controller = new FarmController(gameState, this);
+        controller.setSaveFile(saveFile);
         
         initComponents();
         setupLayout();
@@ -47,7 +65,7 @@ public class FarmFrame extends JFrame {
 
     private void initComponents() {
         // Set up window properties, create labels, build the land grid (gridPanel), and create buttons
-        setTitle("Smart Farm - Farm Management");
+        setTitle("Smart Farm - Farm Management (seed " + gameState.getSeed() + ")");
         setSize(1100, 750);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
@@ -78,6 +96,13 @@ public class FarmFrame extends JFrame {
         lblResources = new JLabel("<html>Water: 100<br>Fertilizer: 60<br>Pesticide: 20</html>");
         lblResources.setFont(new Font("Arial", Font.PLAIN, 12));
         
+        // Chart of the days played so far, one series at a time (the weather series is not a quantity)
+        historyChart = new HistoryChart(gameState.getHistory());
+        seriesBox = new JComboBox<>();
+        for (int s = 0; s < gameState.getHistory().getSeriesCount(); s++) {
+            if (s != History.WEATHER) seriesBox.addItem(History.getName(s));
+        }
+
         lblMessage = new JLabel("<html>Welcome to Smart Farm!<br>Start farming now.</html>");
         lblMessage.setFont(new Font("Arial", Font.PLAIN, 12));
         
@@ -87,6 +112,8 @@ public class FarmFrame extends JFrame {
         btnFertilize = createActionButton("Fertilize", new Color(255, 152, 0));
         btnHarvest = createActionButton("Harvest", new Color(76, 175, 80));
         btnTreatPest = createActionButton("Treat Pest", new Color(244, 67, 54));
+        btnBulk = createActionButton("Bulk Action...", new Color(0, 150, 136));
+        btnRules = createActionButton("Rules...", new Color(0, 121, 107));
         
         // Purchase button
         btnBuyWater = createActionButton("Buy Water x10 ($10)", new Color(0, 188, 212));
@@ -95,7 +122,9 @@ public class FarmFrame extends JFrame {
         
         btnNextDay = createActionButton("Next Day", new Color(156, 39, 176));
         btnNextDay.setFont(new Font("Arial", Font.PLAIN, 12));
+        btnSkipDays = createActionButton("Skip N Days", new Color(123, 31, 162));
         
+        btnSave = createActionButton("Save Game", new Color(69, 90, 100));
         btnHelp = createActionButton("Help", new Color(33, 150, 243));
         btnBackToMenu = createActionButton("Back to Menu", new Color(96, 125, 139));
     }
@@ -129,7 +158,7 @@ public class FarmFrame extends JFrame {
                 cellBtn.setBorder(new LineBorder(new Color(93, 64, 55), 2));
                 cellBtn.setFocusPainted(false);
                 cellBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
-                cellBtn.addActionListener(e -> selectCell(r, c));
+                cellBtn.addActionListener(e -> selectCell(r, c, (e.getModifiers() & ActionEvent.SHIFT_MASK) != 0));
                 cellButtons[r][c] = cellBtn;
                 gridPanel.add(cellBtn);
             }
@@ -148,6 +177,16 @@ public class FarmFrame extends JFrame {
         JPanel centerPanel = new JPanel(new BorderLayout());
         centerPanel.setBackground(new Color(232, 245, 233));
         centerPanel.add(gridPanel, BorderLayout.CENTER);
+        JPanel chartPanel = new JPanel(new BorderLayout(0, 5));
+        chartPanel.setOpaque(false);
+        chartPanel.setBorder(BorderFactory.createEmptyBorder(0, 10, 10, 10));
+        JPanel chartHeader = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        chartHeader.setOpaque(false);
+        chartHeader.add(createSectionLabel("History:"));
+        chartHeader.add(seriesBox);
+        chartPanel.add(chartHeader, BorderLayout.NORTH);
+        chartPanel.add(historyChart, BorderLayout.CENTER);
+        centerPanel.add(chartPanel, BorderLayout.SOUTH);
         
         //right
         JPanel rightPanel = new JPanel();
@@ -187,6 +226,8 @@ public class FarmFrame extends JFrame {
         addButtonToPanel(panel, btnFertilize);
         addButtonToPanel(panel, btnHarvest);
         addButtonToPanel(panel, btnTreatPest);
+        addButtonToPanel(panel, btnBulk);
+        addButtonToPanel(panel, btnRules);
         panel.add(Box.createRigidArea(new Dimension(0, 15)));
         panel.add(new JSeparator());
         panel.add(Box.createRigidArea(new Dimension(0, 15)));
@@ -201,7 +242,9 @@ public class FarmFrame extends JFrame {
         panel.add(createSectionLabel("Time:"));
         panel.add(Box.createRigidArea(new Dimension(0, 5)));
         addButtonToPanel(panel, btnNextDay);
+        addButtonToPanel(panel, btnSkipDays);
         panel.add(Box.createRigidArea(new Dimension(0, 15)));
+        addButtonToPanel(panel, btnSave);
         addButtonToPanel(panel, btnHelp);
         panel.add(Box.createRigidArea(new Dimension(0, 5)));
         addButtonToPanel(panel, btnBackToMenu);
@@ -249,18 +292,36 @@ public class FarmFrame extends JFrame {
     private void setupListeners() {
         // Function to set up ActionListeners (click events) for all buttons
         btnPlant.addActionListener(e -> handlePlant());
+        // Closing the window exits the game: finish the save in progress and commit the journal first
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                autoSaveTimer.stop();
+                controller.closeSaves();
+            }
+        });
+        autoSaveTimer = new Timer(1000, e -> controller.pollAutoSave());
+        autoSaveTimer.start();
         
         btnWater.addActionListener(e -> controller.waterCrop(selectedRow, selectedCol));
         btnFertilize.addActionListener(e -> controller.fertilizeCrop(selectedRow, selectedCol));
         btnHarvest.addActionListener(e -> controller.harvestCrop(selectedRow, selectedCol));
         btnTreatPest.addActionListener(e -> controller.treatPest(selectedRow, selectedCol));
+        btnBulk.addActionListener(e -> handleBulk());
+        btnRules.addActionListener(e -> handleRules());
         
         btnBuyWater.addActionListener(e -> controller.buyResource("WATER", 10));
         btnBuyFertilizer.addActionListener(e -> controller.buyResource("FERTILIZER", 10));
         btnBuyPesticide.addActionListener(e -> controller.buyResource("PESTICIDE", 5));
         
         btnNextDay.addActionListener(e -> controller.advanceToNextDay());
+        btnSkipDays.addActionListener(e -> handleSkipDays());
         
+        btnSave.addActionListener(e -> controller.saveGame());
+        seriesBox.addActionListener(e -> {
+            int s = seriesBox.getSelectedIndex();
+            historyChart.setSeries(s < History.WEATHER ? s : s + 1);
+        });
         btnHelp.addActionListener(e -> showHelpDialog());
         
         btnBackToMenu.addActionListener(e -> controller.backToMenu());
@@ -270,37 +331,121 @@ public class FarmFrame extends JFrame {
         // Function to handle the logic when the "Plant" button is clicked
         if (!checkSelection()) return;
         
-        String[] options = {
-            "Wheat - $5 (Profit: +$45)",
-            "Corn - $10 (Profit: +$70)",
-            "Tomato - $15 (Profit: +$105)",
-            "Potato - $8 (Profit: +$52)"
-        };
+        // One option per crop type in the registry
+        PlantType[] types = PlantType.values();
+        String[] options = new String[types.length];
+        for (int t = 0; t < types.length; t++) {
+            options[t] = types[t].getName() + " - $" + types[t].getSeedCost()
+                    + " (Profit: +$" + (types[t].getHarvestValue() - types[t].getSeedCost()) + ")";
+        }
         
         String selected = (String) JOptionPane.showInputDialog(this, "Choose crop to plant:", "Plant Crop",
             JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
         
         if (selected != null) {
-            controller.plantCrop(selectedRow, selectedCol, selected);
+            int t = Arrays.asList(options).indexOf(selected);
+            controller.plantCrop(selectedRow, selectedCol, types[t].getName());
+        }
+    }
+
+    private void handleBulk() {
+        // Pick an action and the cells it covers: the selected area, the whole farm or every crop of one type
+        BulkAction[] actions = BulkAction.values();
+        String[] actionNames = new String[actions.length];
+        for (int a = 0; a < actions.length; a++) actionNames[a] = actions[a].getName();
+
+        PlantType[] types = PlantType.values();
+        boolean hasArea = selectedRow >= 0 && selectedCol >= 0;
+        String[] scopes = new String[types.length + (hasArea ? 2 : 1)];
+        int s = 0;
+        if (hasArea) {
+            scopes[s++] = "Selected area [" + Math.min(anchorRow, selectedRow) + "," + Math.min(anchorCol, selectedCol)
+                    + "] - [" + Math.max(anchorRow, selectedRow) + "," + Math.max(anchorCol, selectedCol) + "]";
+        }
+        scopes[s++] = "Whole farm";
+        for (PlantType type : types) scopes[s++] = "All " + type.getName();
+
+        JComboBox<String> actionBox = new JComboBox<>(actionNames);
+        JComboBox<String> scopeBox = new JComboBox<>(scopes);
+        JPanel panel = new JPanel(new GridLayout(0, 1, 0, 5));
+        panel.add(new JLabel("Action:"));
+        panel.add(actionBox);
+        panel.add(new JLabel("Cells (Shift+click a second cell to select an area):"));
+        panel.add(scopeBox);
+        int choice = JOptionPane.showConfirmDialog(this, panel, "Bulk Action", JOptionPane.OK_CANCEL_OPTION,
+            JOptionPane.QUESTION_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) return;
+
+        int scope = scopeBox.getSelectedIndex() - (hasArea ? 1 : 0);
+        BulkTarget target;
+        if (scope < 0) {
+            target = BulkTarget.area(anchorRow, anchorCol, selectedRow, selectedCol);
+        } else if (scope == 0) {
+            target = BulkTarget.all();
+        } else {
+            target = BulkTarget.ofType(types[scope - 1]);
+        }
+        controller.bulkAction(actions[actionBox.getSelectedIndex()], target);
+    }
+
+    private void handleRules() {
+        // Edit the standing orders the farm runs by itself at the start of every day, one per line
+        StringBuilder current = new StringBuilder();
+        for (Rule rule : gameState.getRules().getRules()) current.append(rule).append("\n");
+        if (current.length() == 0) {
+            current.append("# e.g.\n# harvest when ready\n# treat when infected\n")
+                   .append("# water when waterLevel < waterNeed\n# fertilize when soil < 40 for Tomato\n");
+        }
+        JTextArea txtRules = new JTextArea(current.toString(), 10, 40);
+        txtRules.setFont(new Font("Monospaced", Font.PLAIN, 13));
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.add(new JLabel("<html>&lt;water|fertilize|treat|harvest&gt; when &lt;condition&gt; [and ...] [for &lt;crop&gt;]<br>"
+            + "Conditions: infected, ready, waterLevel/fertilizerLevel/health/soil/daysGrown &lt; &lt;= &gt; &gt;= = != "
+            + "a number, waterNeed or fertilizerNeed</html>"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(txtRules), BorderLayout.CENTER);
+        while (JOptionPane.showConfirmDialog(this, panel, "Automation Rules", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+            if (controller.setRules(txtRules.getText())) return;
+        }
+    }
+
+    private void handleSkipDays() {
+        // Ask how many days to fast-forward
+        String input = JOptionPane.showInputDialog(this, "How many days to skip?", "7");
+        if (input != null) {
+            controller.skipDays(input);
         }
     }
 
-    private void selectCell(int row, int col) {
+    private void selectCell(int row, int col, boolean extend) {
         // Function to handle when the user clicks on a land cell in the grid
+        // Shift+click keeps the previous corner and selects the area between the two cells
+        if (!extend || selectedRow < 0) {
+            anchorRow = row;
+            anchorCol = col;
+        }
         selectedRow = row;
         selectedCol = col;
         highlightSelectedCell();
         updateCellInfo();
-        setMessage("Selected cell [" + row + "," + col + "]");
+        if (anchorRow == row && anchorCol == col) {
+            setMessage("Selected cell [" + row + "," + col + "]");
+        } else {
+            setMessage("Selected area [" + anchorRow + "," + anchorCol + "] - [" + row + "," + col + "]");
+        }
     }
 
     private void highlightSelectedCell() {
         Farm farm = gameState.getFarm();
+        int top = Math.min(anchorRow, selectedRow), bottom = Math.max(anchorRow, selectedRow);
+        int left = Math.min(anchorCol, selectedCol), right = Math.max(anchorCol, selectedCol);
         try {
             for (int r = 0; r < farm.getRows(); r++) {
                 for (int c = 0; c < farm.getCols(); c++) {
                     if (r == selectedRow && c == selectedCol) {
                         cellButtons[r][c].setBorder(new LineBorder(Color.YELLOW, 4));
+                    } else if (r >= top && r <= bottom && c >= left && c <= right) {
+                        cellButtons[r][c].setBorder(new LineBorder(Color.ORANGE, 3));
                     } else {
                         cellButtons[r][c].setBorder(new LineBorder(new Color(93, 64, 55), 2));
                     }
@@ -323,12 +468,33 @@ public class FarmFrame extends JFrame {
         if (selectedRow >= 0 && selectedCol >= 0) {
             try {
                 String info = gameState.getFarm().getCell(selectedRow, selectedCol).getInfo();
+                String advice = careAdvice(selectedRow, selectedCol);
+                if (advice != null) info += "\nAdvice: " + advice;
                 lblCellInfo.setText("<html>" + info.replace("\n", "<br>") + "</html>");
             } catch (GameException e) {
             }
         }
     }
 
+    private String careAdvice(int row, int col) {
+        // Today's best care for the crop in the cell, read from its solved CareSchedule
+        Farm farm = gameState.getFarm();
+        FarmGrid grid = farm.getGrid();
+        int i = grid.index(row, col);
+        if (grid.isEmpty(i)) return null;
+        CareSchedule schedule = CareSchedule.ifReady(grid.getType(i), grid.getSoil(i));
+        if (schedule == null) return "working it out...";
+        int action = schedule.getAction(grid.getDaysGrown(i), grid.getWaterLevel(i), grid.getFertilizerLevel(i),
+                grid.getHealth(i), grid.isInfected(i), farm.getWeatherAt(row, col));
+        return CareSchedule.describe(action);
+    }
+
+    @Override
+    public void dispose() {
+        autoSaveTimer.stop();
+        super.dispose();
+    }
+
     public void setMessage(String msg) {
         lblMessage.setText("<html>" + msg.replace("\n", "<br>") + "</html>");
     }
@@ -337,15 +503,41 @@ public class FarmFrame extends JFrame {
         JOptionPane.showMessageDialog(this, message, title, JOptionPane.ERROR_MESSAGE);
     }
 
+    public java.io.File chooseSaveFile() {
+        // Where to save the game the first time it is saved; null when cancelled
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new java.io.File("farm.sav"));
+        return chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION ? chooser.getSelectedFile() : null;
+    }
+
+
+    private String buildForecast(Farm farm) {
+        // Weather odds for the next days (share of the farm when it has zones), straight from the transition matrix
+        int[] horizons = {1, 3, 7, 30};
+        Weather[] states = WeatherEngine.getStates();
+        StringBuilder sb = new StringBuilder("<html><b>Forecast</b><table><tr><td></td>");
+        for (int days : horizons) sb.append("<td>").append(days == 1 ? "Tomorrow" : days + " days").append("</td>");
+        sb.append("</tr>");
+        double[][] odds = new double[horizons.length][];
+        for (int h = 0; h < horizons.length; h++) odds[h] = farm.getWeatherForecast(horizons[h]);
+        for (Weather state : states) {
+            sb.append("<tr><td>").append(state.getName()).append("</td>");
+            for (double[] row : odds) sb.append(String.format("<td>%.0f%%</td>", row[state.getId()] * 100));
+            sb.append("</tr>");
+        }
+        return sb.append("</table></html>").toString();
+    }
 
     public void refreshUI() {
         Farm farm = gameState.getFarm();
         
         lblStats.setText(gameState.getStats());
 
-        // Update the weather
+        // Update the weather (the prevailing one when the farm has several weather zones)
         Weather weather = farm.getCurrentWeather();
-        lblWeather.setText(weather != null ? weather.getName() : "Sunny");
+        int zones = farm.getWeatherZones().getCount();
+        lblWeather.setText((weather != null ? weather.getName() : "Sunny") + (zones > 1 ? " (" + zones + " zones)" : ""));
+        lblWeather.setToolTipText(buildForecast(farm));
 
         // Update the resource inventory
         lblResources.setText(String.format("<html>Water: %d<br>Fertilizer: %d<br>Pesticide: %d</html>",
@@ -368,6 +560,7 @@ public class FarmFrame extends JFrame {
         } catch (GameException e) {}
         
         if (selectedRow >= 0 && selectedCol >= 0) highlightSelectedCell();
+        historyChart.repaint();
     }
     
     private void showHelpDialog() {
@@ -398,8 +591,16 @@ public class FarmFrame extends JFrame {
                 "   - Fertilize: Provide nutrients\n" +
                 "   - Harvest: Collect money when crops are ripe\n" +
                 "   - Treat Pest: Cure pest infections\n" +
+                "   - Bulk Action: Water, fertilize, treat or harvest a whole area,\n" +
+                "     the whole farm or every crop of one type at once\n" +
+                "     (Shift+click a second cell to select an area)\n" +
+                "   - Rules: Standing orders the farm carries out by itself every day,\n" +
+                "     e.g. 'water when waterLevel < waterNeed' or 'harvest when ready'\n" +
+                "   - Advice: The cell info shows the best care for the selected crop today,\n" +
+                "     worked out from its state, the soil and the weather odds\n" +
                 "3. Click 'Next Day' to advance time\n" +
-                "4. Buy additional resources when needed\n\n" +
+                "4. Buy additional resources when needed\n" +
+                "5. Click 'Save Game' to keep your farm; 'Load Game' in the main menu continues it\n\n" +
                 
                 "===============================================\n\n" +
                 
@@ -0,0 +1,80 @@
+// Chart of one series of the game's History over every day kept
+// Each pixel column is one run of days drawn as a vertical bar from the run's min to its max (History.decimate),
+// joined to its neighbours, so spikes survive however many days share a pixel and a repaint costs the same
+// after a hundred days or a million. The buffers are reused from one repaint to the next
+package smartfarm.view;
+
+import smartfarm.model.History;
+
+import javax.swing.*;
+import java.awt.*;
+
+public class HistoryChart extends JPanel {
+    private static final int MARGIN = 8;
+    private static final Color LINE = new Color(46, 125, 50);
+    private static final Color AXIS = new Color(160, 160, 160);
+
+    private final History history;
+    private int series = History.MONEY;
+    private long[] min = new long[0], max = new long[0];
+
+    public HistoryChart(History history) {
+        this.history = history;
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(0, 150));
+        setFont(new Font("Arial", Font.PLAIN, 11));
+    }
+
+    public void setSeries(int series) {
+        this.series = series;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        FontMetrics fm = g.getFontMetrics();
+        int top = MARGIN + fm.getHeight(), bottom = getHeight() - MARGIN;
+        int left = MARGIN, width = getWidth() - 2 * MARGIN;
+        if (history == null || history.isEmpty() || width < 2 || bottom - top < 2) {
+            g.setColor(AXIS);
+            g.drawString("No days played yet", left, MARGIN + fm.getAscent());
+            return;
+        }
+        if (min.length < width) {
+            min = new long[width];
+            max = new long[width];
+        }
+        int first = history.getFirstDay(), last = history.getLastDay();
+        int runs = history.decimate(series, first, last, width, min, max);
+
+        long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+        for (int b = 0; b < runs; b++) {
+            lo = Math.min(lo, min[b]);
+            hi = Math.max(hi, max[b]);
+        }
+        double scale = (double) (bottom - top) / Math.max(1, hi - lo);
+
+        g.setColor(AXIS);
+        g.drawLine(left, bottom, left + width, bottom);
+        g.drawString(String.format("%s  |  days %d-%d  |  now %,d  |  range %,d to %,d", History.getName(series),
+                first, last, history.get(series, last), lo, hi), left, MARGIN + fm.getAscent());
+
+        g.setColor(LINE);
+        for (int b = 0; b < runs; b++) {
+            // Spread the runs over the width when there are fewer days than pixels
+            int x = left + (int) ((long) b * width / runs), x2 = left + (int) ((long) (b + 1) * width / runs) - 1;
+            int yMax = y(max[b], lo, scale, bottom), yMin = y(min[b], lo, scale, bottom);
+            g.fillRect(x, yMax, x2 - x + 1, yMin - yMax + 1);
+            if (b > 0) {
+                // Join the previous run's range to this one's
+                g.drawLine(x, y(Math.max(max[b], min[b - 1]), lo, scale, bottom), x,
+                        y(Math.min(min[b], max[b - 1]), lo, scale, bottom));
+            }
+        }
+    }
+
+    private static int y(long value, long lo, double scale, int bottom) {
+        return bottom - (int) ((value - lo) * scale);
+    }
+}
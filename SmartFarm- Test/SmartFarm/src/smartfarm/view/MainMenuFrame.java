@@ -10,6 +10,7 @@ public class MainMenuFrame extends JFrame {
     
     private MenuController controller;
     private JButton btnStart;
+    private JButton btnLoad;
     private JButton btnHelp;
     private JButton btnQuit;
 
@@ -23,16 +24,18 @@ public class MainMenuFrame extends JFrame {
 
     private void initComponents() {
         setTitle("Smart Farm Simulator");
-        setSize(600, 500);
+        setSize(600, 560);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         setResizable(false);
         
         btnStart = createStyledButton("Start Farming", new Color(76, 175, 80));
+        btnLoad = createStyledButton("Load Game", new Color(0, 150, 136));
         btnHelp = createStyledButton("Help", new Color(33, 150, 243));
         btnQuit = createStyledButton("Quit", new Color(244, 67, 54));
         
         btnStart.setFont(new Font("Arial", Font.BOLD, 18));
+        btnLoad.setFont(new Font("Arial", Font.BOLD, 18));
         btnHelp.setFont(new Font("Arial", Font.BOLD, 18));
         btnQuit.setFont(new Font("Arial", Font.BOLD, 18));
     }
@@ -86,6 +89,7 @@ public class MainMenuFrame extends JFrame {
         
         // Center-align the buttons
         btnStart.setAlignmentX(Component.CENTER_ALIGNMENT);
+        btnLoad.setAlignmentX(Component.CENTER_ALIGNMENT);
         btnHelp.setAlignmentX(Component.CENTER_ALIGNMENT);
         btnQuit.setAlignmentX(Component.CENTER_ALIGNMENT);
         
@@ -96,6 +100,8 @@ public class MainMenuFrame extends JFrame {
         mainPanel.add(Box.createRigidArea(new Dimension(0, 50)));
         mainPanel.add(btnStart);
         mainPanel.add(Box.createRigidArea(new Dimension(0, 15)));
+        mainPanel.add(btnLoad);
+        mainPanel.add(Box.createRigidArea(new Dimension(0, 15)));
         mainPanel.add(btnHelp);
         mainPanel.add(Box.createRigidArea(new Dimension(0, 15)));
         mainPanel.add(btnQuit);
@@ -109,6 +115,7 @@ public class MainMenuFrame extends JFrame {
     private void setupListeners() {
         // Method to assign actions (ActionListener) to the buttons
         btnStart.addActionListener(e -> controller.startNewGame());
+        btnLoad.addActionListener(e -> controller.loadGame());
         btnHelp.addActionListener(e -> controller.openHelp());
         btnQuit.addActionListener(e -> controller.quitGame());
     }